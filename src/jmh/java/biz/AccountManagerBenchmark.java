@@ -0,0 +1,48 @@
+package biz;
+
+import exchange.CurrencyExchange;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput with and without a currency conversion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountManagerBenchmark {
+
+    AccountManager accountManager;
+    User user;
+
+    @Setup
+    public void setUp() throws Exception {
+        InMemoryDAO dao = new InMemoryDAO();
+        user = dao.addUser(1, "Adam", 1, "Admin");
+        dao.addAccount(1, user, 1e12, "pln");
+        dao.addAccount(2, user, 1e12, "pln");
+        dao.addAccount(3, user, 1e12, "usd");
+        BankHistory history = new BankHistory(dao);
+        CurrencyExchange exchange = new CurrencyExchange();
+        exchange.infitFromFile("src/test/resources/test_rates.json");
+        accountManager = new AccountManager(dao, history, new AuthenticationManager(dao, history), exchange);
+    }
+
+    @Benchmark
+    public boolean sameCurrency() throws Exception {
+        return accountManager.internalPayment(user, 1.0, "benchmark", 1, 2);
+    }
+
+    @Benchmark
+    public boolean crossCurrency() throws Exception {
+        return accountManager.internalPayment(user, 1.0, "benchmark", 3, 2);
+    }
+}
@@ -0,0 +1,209 @@
+package biz;
+
+import db.chain.ChainRecord;
+import db.dao.DAO;
+import model.Account;
+import model.Operation;
+import model.Password;
+import model.PaymentKey;
+import model.Permission;
+import model.Role;
+import model.StandingOrder;
+import model.User;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * DAO kept in memory, so benchmarks measure the business layer and not SQLite.
+ */
+public class InMemoryDAO implements DAO {
+    final Map<String, User> users = new ConcurrentHashMap<>();
+    final Map<Integer, Password> passwords = new ConcurrentHashMap<>();
+    final Map<Integer, Account> accounts = new ConcurrentHashMap<>();
+    final List<Permission> permissions = new ArrayList<>();
+    final AtomicLong loggedOperations = new AtomicLong();
+
+    public User addUser(int id, String name, int roleId, String roleName) {
+        Role role = new Role();
+        role.setId(roleId);
+        role.setName(roleName);
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setRole(role);
+        users.put(name, user);
+        return user;
+    }
+
+    public Account addAccount(int id, User owner, double ammount, String currency) {
+        Account account = new Account();
+        account.setId(id);
+        account.setOwner(owner);
+        account.setAmmount(ammount);
+        account.setCurrency(currency);
+        accounts.put(id, account);
+        return account;
+    }
+
+    public void setPassword(User user, String hash) {
+        Password password = new Password();
+        password.setUserId(user.getId());
+        password.setPasswd(hash);
+        passwords.put(user.getId(), password);
+    }
+
+    @Override
+    public User findUserByName(String userName) {
+        return users.get(userName);
+    }
+
+    @Override
+    public List<String> findAllUserNames() {
+        return new ArrayList<>(users.keySet());
+    }
+
+    @Override
+    public User createUser(String userName, Role role, String passwd) {
+        User user = addUser(users.size() + 1, userName, role.getId(), role.getName());
+        setPassword(user, passwd);
+        return user;
+    }
+
+    @Override
+    public List<Permission> findPermissions() {
+        return permissions;
+    }
+
+    @Override
+    public Password findPasswordForUser(User user) {
+        return passwords.get(user.getId());
+    }
+
+    @Override
+    public Account findAccountById(int accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public List<Account> findAccountsByOwner(User owner) {
+        List<Account> result = new ArrayList<>();
+        for (Account account : accounts.values()) {
+            if (account.getOwner().getId() == owner.getId()) result.add(account);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Operation> findRecentOperations(int accountId, int limit) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean updateAccountState(Account account) {
+        return accounts.containsKey(account.getId());
+    }
+
+    @Override
+    public boolean setUserPassword(User user, String passwd, String oldPass) {
+        Password password = passwords.get(user.getId());
+        if (password == null || !password.getPasswd().equals(oldPass)) return false;
+        password.setPasswd(passwd);
+        return true;
+    }
+
+    @Override
+    public List<StandingOrder> findActiveStandingOrders() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public StandingOrder createStandingOrder(StandingOrder order) {
+        return order;
+    }
+
+    @Override
+    public void updateStandingOrders(List<StandingOrder> orders) {
+    }
+
+    @Override
+    public PaymentKey findPaymentKey(String key) {
+        return null;
+    }
+
+    @Override
+    public void insertPaymentKey(String key, String request, String result, long created) {
+    }
+
+    @Override
+    public void updatePaymentKey(String key, String result) {
+    }
+
+    @Override
+    public int deletePaymentKeys(long createdBefore) {
+        return 0;
+    }
+
+    @Override
+    public void deletePaymentKey(String key) {
+    }
+
+    @Override
+    public void updateAccountStates(List<Account> accounts) {
+        for (Account account : accounts) updateAccountState(account);
+    }
+
+    @Override
+    public synchronized int[] fanOut(Withdraw debit, List<PaymentIn> credits) {
+        Account source = accounts.get(debit.getAccount().getId());
+        if (source == null || source.getAmmount() < debit.getAmmount()) return null;
+        int[] missing = new int[credits.size()];
+        int count = 0;
+        for (int i = 0; i < credits.size(); i++) {
+            if (!accounts.containsKey(credits.get(i).getAccount().getId())) missing[count++] = i;
+        }
+        if (count > 0) return Arrays.copyOf(missing, count);
+        source.outcome(debit.getAmmount());
+        for (PaymentIn credit : credits) accounts.get(credit.getAccount().getId()).income(credit.getAmmount());
+        loggedOperations.addAndGet(credits.size() + 1);
+        return missing;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void logOperation(Operation operation, boolean success) {
+        loggedOperations.incrementAndGet();
+    }
+
+    @Override
+    public void scanHistory(Consumer<ChainRecord> consumer) {
+    }
+
+    @Override
+    public void scanPostings(PostingHandler handler) {
+    }
+
+    @Override
+    public void scanBalances(BalanceHandler handler) {
+        for (Account account : accounts.values()) handler.accept(account.getId(), account.getAmmount());
+    }
+
+    @Override
+    public int findMaxAccountId() {
+        return accounts.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    @Override
+    public void scanStatementRows(int fromAccountId, int toAccountId, StatementRowHandler handler) {
+    }
+}
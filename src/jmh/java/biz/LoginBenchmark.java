@@ -0,0 +1,59 @@
+package biz;
+
+import biz.password.PasswordEngine;
+import biz.password.Pbkdf2PasswordHasher;
+import biz.password.Sha256PasswordHasher;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logins per second at each PBKDF2 cost, against the legacy SHA-256 hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoginBenchmark {
+
+    @Param({"10000", "100000", "210000", "600000"})
+    int cost;
+
+    AuthenticationManager pbkdf2;
+    AuthenticationManager legacy;
+
+    @Setup
+    public void setUp() {
+        pbkdf2 = manager(new Pbkdf2PasswordHasher(cost).hash("Adam".toCharArray()));
+        legacy = manager(new Sha256PasswordHasher().hash("Adam".toCharArray()));
+    }
+
+    private AuthenticationManager manager(String hash) {
+        InMemoryDAO dao = new InMemoryDAO() {
+            @Override
+            public boolean setUserPassword(User user, String passwd, String oldPass) {
+                return false; // keep the legacy hash so every login verifies it
+            }
+        };
+        User user = dao.addUser(1, "Adam", 1, "Klient");
+        dao.setPassword(user, hash);
+        return new AuthenticationManager(dao, new BankHistory(dao), PasswordEngine.withCost(cost));
+    }
+
+    @Benchmark
+    public User pbkdf2Login() throws Exception {
+        return pbkdf2.logIn("Adam", "Adam".toCharArray());
+    }
+
+    @Benchmark
+    public User legacyLoginWithRehash() throws Exception {
+        return legacy.logIn("Adam", "Adam".toCharArray());
+    }
+}
@@ -0,0 +1,89 @@
+package biz;
+
+import exchange.CurrencyExchange;
+import exchange.ExchangeResult;
+import model.User;
+import model.exceptions.OperationIsNotAllowedException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the rejection paths: unauthorized withdrawals and unknown currency pairs,
+ * compared with the successful path and with a freshly built exception.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RejectionBenchmark {
+
+    AccountManager accountManager;
+    CurrencyExchange exchange;
+    User owner;
+    User attacker;
+
+    @Setup
+    public void setUp() throws Exception {
+        InMemoryDAO dao = new InMemoryDAO();
+        owner = dao.addUser(1, "Adam", 1, "Klient");
+        attacker = dao.addUser(2, "Ewa", 1, "Klient");
+        dao.addAccount(1, owner, 1e12, "pln");
+        BankHistory history = new BankHistory(dao);
+        exchange = new CurrencyExchange();
+        exchange.infitFromFile("src/test/resources/test_rates.json");
+        accountManager = new AccountManager(dao, history, new AuthenticationManager(dao, history), exchange);
+    }
+
+    @Benchmark
+    public boolean authorizedPaymentOut() throws Exception {
+        return accountManager.paymentOut(owner, 0.01, "benchmark", 1);
+    }
+
+    @Benchmark
+    public boolean rejectedPaymentOutThrowing() throws Exception {
+        try {
+            return accountManager.paymentOut(attacker, 0.01, "benchmark", 1);
+        } catch (OperationIsNotAllowedException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public PaymentResult rejectedTryPaymentOut() throws Exception {
+        return accountManager.tryPaymentOut(attacker, 0.01, "benchmark", 1);
+    }
+
+    @Benchmark
+    public Exception freshExceptionWithStackTrace() {
+        try {
+            throw new OperationIsNotAllowedException("Unauthorized operation");
+        } catch (OperationIsNotAllowedException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public double knownPairExchange() throws Exception {
+        return exchange.exchange("usd", "pln", 100);
+    }
+
+    @Benchmark
+    public double unknownPairThrowing() {
+        try {
+            return exchange.exchange("yen", "pln", 100);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public ExchangeResult unknownPairTryExchange() {
+        return exchange.tryExchange("yen", "pln", 100);
+    }
+}
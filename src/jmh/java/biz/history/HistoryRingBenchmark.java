@@ -0,0 +1,86 @@
+package biz.history;
+
+import model.Operation;
+import model.operations.LogIn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Four producers publishing history events to one consumer: the ring buffer
+ * against a LinkedBlockingQueue of the same capacity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class HistoryRingBenchmark {
+
+    static final int CAPACITY = 4096;
+
+    final Operation operation = new LogIn(null, "benchmark");
+    HistoryRingBuffer ring;
+    LinkedBlockingQueue<Event> queue;
+    Thread queueConsumer;
+    volatile long consumed;
+
+    @Setup
+    public void setUp() {
+        ring = new HistoryRingBuffer(CAPACITY, CAPACITY);
+        ring.start((event, endOfBatch) -> consumed++);
+        queue = new LinkedBlockingQueue<>(CAPACITY);
+        queueConsumer = new Thread(() -> {
+            List<Event> batch = new ArrayList<>(CAPACITY);
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, CAPACITY - 1);
+                    consumed += batch.size();
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                // done
+            }
+        });
+        queueConsumer.setDaemon(true);
+        queueConsumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        ring.stop();
+        queueConsumer.interrupt();
+        queueConsumer.join();
+    }
+
+    @Benchmark
+    public void ringBuffer() {
+        ring.publish(operation, true);
+    }
+
+    @Benchmark
+    public void linkedBlockingQueue() throws InterruptedException {
+        queue.put(new Event(operation, true));
+    }
+
+    static class Event {
+        final Operation operation;
+        final boolean success;
+
+        Event(Operation operation, boolean success) {
+            this.operation = operation;
+            this.success = success;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package biz.hot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Eight threads crediting one account: a single atomic balance against the
+ * sharded one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class ShardedBalanceBenchmark {
+
+    AtomicLong single;
+    ShardedBalance sharded;
+
+    @Setup
+    public void setUp() {
+        single = new AtomicLong();
+        sharded = new ShardedBalance(Runtime.getRuntime().availableProcessors() * 2, 0);
+    }
+
+    @Benchmark
+    public long singleCredit() {
+        return single.addAndGet(100);
+    }
+
+    @Benchmark
+    public void shardedCredit() {
+        sharded.credit(100);
+    }
+}
@@ -0,0 +1,69 @@
+package exchange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CurrencyExchangeBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    CurrencyExchange exchange;
+    double[] values;
+    double[] result;
+    long[] minorUnits;
+    String[] currencies;
+
+    @Setup
+    public void setUp() throws Exception {
+        exchange = new CurrencyExchange();
+        exchange.infitFromFile("src/test/resources/test_rates.json");
+        Random random = new Random(42);
+        String[] known = {"usd", "eur", "pln"};
+        values = new double[size];
+        result = new double[size];
+        minorUnits = new long[size];
+        currencies = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextDouble() * 10000;
+            minorUnits[i] = (long) (values[i] * 100);
+            currencies[i] = known[random.nextInt(known.length)];
+        }
+    }
+
+    @Benchmark
+    public double[] perValue() throws Exception {
+        for (int i = 0; i < values.length; i++) {
+            result[i] = exchange.exchange("usd", "pln", values[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double[] batch() throws Exception {
+        exchange.exchange("usd", "pln", values, result);
+        return result;
+    }
+
+    @Benchmark
+    public long[] batchMinorUnits() throws Exception {
+        return exchange.exchange("usd", "pln", minorUnits);
+    }
+
+    @Benchmark
+    public double[] column() throws Exception {
+        return exchange.exchange(currencies, values, "pln");
+    }
+}
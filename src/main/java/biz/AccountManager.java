@@ -1,8 +1,27 @@
 package biz;
 
+import biz.batch.PayrollLine;
+import biz.batch.PayrollResult;
+import biz.batch.Transfer;
+import biz.batch.TransferWaves;
+import biz.cache.Prefetcher;
+import biz.cache.ReadCache;
+import biz.engine.Command;
+import biz.engine.CommandEngine;
+import biz.hot.HotAccount;
+import biz.hot.HotAccounts;
+import biz.idempotency.IdempotencyKeys;
+import biz.schedule.StandingOrderEngine;
+import biz.session.Session;
+import biz.session.SessionRegistry;
+import biz.session.TokenClaims;
+import biz.velocity.VelocityGuard;
+import biz.velocity.VelocityLimits;
 import db.dao.DAO;
 import db.dao.impl.DAOImpl;
 import db.dao.impl.SQLiteDB;
+import exchange.CurrencyExchange;
+import exchange.ExchangeResult;
 import model.Account;
 import model.Operation;
 import model.User;
@@ -11,76 +30,610 @@ import model.exceptions.UserUnnkownOrBadPasswordException;
 import model.operations.PaymentIn;
 import model.operations.Withdraw;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class AccountManager {
+    private static final double USER_FILTER_FPP = 0.01;
+    private static final String RATES_FILE = "./rates.json";
+    private static final int RECENT_OPERATIONS = 20;
+    private static final int HISTORY_RING_CAPACITY = 4096;
+    private static final long PREFETCH_DEADLINE_MILLIS = 2000;
+    private static final int HOT_ACCOUNT_SLOTS = Runtime.getRuntime().availableProcessors() * 2;
+    private static final long HOT_ACCOUNT_FLUSH_MILLIS = 1000;
+    private static final int IDEMPOTENCY_KEYS = 100_000;
+    private static final long IDEMPOTENCY_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final int USER_ROLE_ID = 1;
+    private static final VelocityLimits USER_VELOCITY_LIMITS = new VelocityLimits(10, 10_000, 60, 50_000);
+    private static final VelocityLimits USER_PAYROLL_LIMITS = new VelocityLimits(2, 100_000, 10, 500_000);
     private DAO dao;
     BankHistory history;
     AuthenticationManager auth;
     InterestOperator interestOperator;
+    CurrencyExchange exchange;
+    SessionRegistry sessions = new SessionRegistry();
+    ReadCache cache = new ReadCache();
+    Prefetcher prefetcher = null;
+    VelocityGuard velocity = new VelocityGuard();
+    VelocityGuard payrollVelocity = new VelocityGuard();
+    HotAccounts hotAccounts = null;
+    StandingOrderEngine standingOrders = null;
+    IdempotencyKeys idempotencyKeys = null;
+    CommandEngine engine = null;
     User loggedUser=null;
 
+    public AccountManager() {
+        sessions.onExpiry(session -> forget(session.getUser()));
+    }
+
+    AccountManager(DAO dao, BankHistory history, AuthenticationManager auth, CurrencyExchange exchange) {
+        this();
+        this.dao = dao;
+        this.history = history;
+        this.auth = auth;
+        this.exchange = exchange;
+    }
+
     public boolean paymentIn(User user, double ammount,
                    String description, int accountId) throws SQLException {
-        Account account = dao.findAccountById(accountId);
+        if (engine != null) return await(submitPaymentIn(user, ammount, description, accountId)) == PaymentResult.SUCCESS;
+        Account account = findAccount(accountId);
         Operation operation = new PaymentIn(user, ammount,description, account);
         boolean success = account.income(ammount);
         if (success)
-            success = dao.updateAccountState(account);
+            success = store(account);
         history.logOperation(operation, success);
+        cache.invalidate(account);
         return success;
     }
 
     public boolean paymentOut(User user, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
-        Account account = dao.findAccountById(accountId);
+        return unwrap(tryPaymentOut(user, ammount, description, accountId));
+    }
+
+    /**
+     * Like {@link #paymentOut} but returns a rejection instead of throwing it.
+     */
+    public PaymentResult tryPaymentOut(User user, double ammount, String description, int accountId) throws SQLException {
+        return withdraw(user, null, ammount, description, accountId);
+    }
+
+    private PaymentResult withdraw(User user, TokenClaims claims, double ammount, String description, int accountId) throws SQLException {
+        Account account = findAccount(accountId);
         Operation operation = new Withdraw(user, ammount,description, account);
-        boolean success = auth.canInvokeOperation(operation,user );
-        if (!success){
-            history.logUnauthorizedOperation(operation, success);
-            throw new OperationIsNotAllowedException("Unauthorized operation");
-        }
-        success = account.outcome(ammount);
-        success = dao.updateAccountState(account);
+        PaymentResult rejection = authorizeWithdraw(operation, user, claims, accountId, ammount);
+        if (rejection != null) return rejection;
+        if (engine != null) return await(submitDebit(Command.paymentOut(user, ammount, description, accountId), user, accountId, ammount));
+        boolean success = account.outcome(ammount);
+        if (!success) velocity.release(user, accountId, ammount);
+        success = store(account);
         history.logOperation(operation, success);
-        return success;
+        cache.invalidate(account);
+        return PaymentResult.of(success);
+    }
+
+    // logs and returns the rejection, null when the withdrawal may go on
+    private PaymentResult authorizeWithdraw(Operation operation, User user, TokenClaims claims, int accountId, double ammount) throws SQLException {
+        boolean allowed = claims != null
+                ? auth.canTokenInvokeOperation(operation, claims)
+                : auth.canInvokeOperation(operation,user );
+        if (!allowed){
+            history.logUnauthorizedOperation(operation, allowed);
+            return PaymentResult.UNAUTHORIZED;
+        }
+        if (!velocity.tryAcquire(user, accountId, ammount)) {
+            history.logOperation(operation, false);
+            return PaymentResult.VELOCITY_LIMIT;
+        }
+        return null;
     }
 
     public boolean internalPayment(User user, double ammount, String description, int sourceAccountId, int destAccountId) throws OperationIsNotAllowedException, SQLException {
-        Account sourceAccount = dao.findAccountById(sourceAccountId);
-        Account destAccount = dao.findAccountById(destAccountId);
-        Operation withdraw = new Withdraw(user, ammount,description, sourceAccount);
-        Operation payment = new PaymentIn(user, ammount,description, destAccount);
-        boolean success = auth.canInvokeOperation(withdraw,user );
-        if (!success){
-            history.logUnauthorizedOperation(withdraw, success);
-            throw new OperationIsNotAllowedException("Unauthorized operation");
-        }
-        success = sourceAccount.outcome(ammount);
-        success = success && destAccount.income(ammount);
+        return unwrap(tryInternalPayment(user, ammount, description, sourceAccountId, destAccountId));
+    }
+
+    /**
+     * Like {@link #internalPayment} but returns a rejection instead of throwing it.
+     */
+    public PaymentResult tryInternalPayment(User user, double ammount, String description, int sourceAccountId, int destAccountId) throws SQLException {
+        if (engine != null) return await(submitInternalPayment(user, ammount, description, sourceAccountId, destAccountId));
+        Account sourceAccount = findAccount(sourceAccountId);
+        Account destAccount = findAccount(destAccountId);
+        PreparedTransfer transfer = prepareTransfer(user, ammount, description, sourceAccount, destAccount, sourceAccountId);
+        if (transfer.rejection != null) return reject(transfer);
+        boolean success = transfer.applied;
         if (success) {
-            success = dao.updateAccountState(sourceAccount);
-            if (success) dao.updateAccountState(destAccount);
+            success = store(sourceAccount);
+            if (success) store(destAccount);
         }
-        history.logOperation(withdraw, success);
-        history.logOperation(payment, success);
-        return success;
+        complete(transfer, success);
+        return PaymentResult.of(success);
+    }
+
+    /**
+     * Runs a batch of internal payments. Transfers that share no account run
+     * in parallel waves, transfers that do keep their order. Every account is
+     * read once for the whole batch and the balances changed by a wave are
+     * written in one transaction. A database error stops the batch after the
+     * waves already written.
+     *
+     * @return the result of every transfer, in submission order
+     */
+    public List<PaymentResult> internalPayments(List<Transfer> transfers) throws SQLException {
+        if (engine != null) {
+            List<CompletableFuture<PaymentResult>> submitted = new ArrayList<>(transfers.size());
+            for (Transfer transfer : transfers) {
+                submitted.add(submitInternalPayment(transfer.getUser(), transfer.getAmmount(), transfer.getDescription(),
+                        transfer.getSourceAccountId(), transfer.getDestAccountId()));
+            }
+            List<PaymentResult> results = new ArrayList<>(transfers.size());
+            for (CompletableFuture<PaymentResult> result : submitted) results.add(await(result));
+            return results;
+        }
+        Map<Integer, Account> accounts = new HashMap<>();
+        for (Transfer transfer : transfers) {
+            for (int accountId : new int[]{transfer.getSourceAccountId(), transfer.getDestAccountId()}) {
+                if (!accounts.containsKey(accountId)) accounts.put(accountId, findAccount(accountId));
+            }
+        }
+        PaymentResult[] results = new PaymentResult[transfers.size()];
+        for (int[] wave : TransferWaves.plan(transfers)) {
+            PreparedTransfer[] prepared = new PreparedTransfer[wave.length];
+            IntStream.range(0, wave.length).parallel().forEach(i -> {
+                Transfer transfer = transfers.get(wave[i]);
+                Account source = accounts.get(transfer.getSourceAccountId());
+                Account dest = accounts.get(transfer.getDestAccountId());
+                if (source == null || dest == null) return;
+                prepared[i] = prepareTransfer(transfer.getUser(), transfer.getAmmount(), transfer.getDescription(),
+                        source, dest, transfer.getSourceAccountId());
+            });
+            List<Account> changed = new ArrayList<>();
+            for (PreparedTransfer transfer : prepared) {
+                if (transfer == null || transfer.rejection != null || !transfer.applied) continue;
+                // transfers within a wave share no account, only a transfer to itself repeats one
+                addStored(changed, transfer.withdraw.getAccount());
+                if (transfer.payment.getAccount() != transfer.withdraw.getAccount()) {
+                    addStored(changed, transfer.payment.getAccount());
+                }
+            }
+            dao.updateAccountStates(changed);
+            // the wave is written, so all of it is logged before a failed log stops the batch
+            SQLException failure = null;
+            for (int i = 0; i < wave.length; i++) {
+                PreparedTransfer transfer = prepared[i];
+                if (transfer == null) {
+                    results[wave[i]] = PaymentResult.FAILURE;
+                    continue;
+                }
+                results[wave[i]] = transfer.rejection != null ? transfer.rejection : PaymentResult.of(transfer.applied);
+                try {
+                    if (transfer.rejection != null) reject(transfer);
+                    else complete(transfer, transfer.applied);
+                } catch (SQLException e) {
+                    if (failure == null) failure = e;
+                    else failure.addSuppressed(e);
+                }
+            }
+            if (failure != null) throw failure;
+        }
+        return Arrays.asList(results);
+    }
+
+    // checks and applies a transfer to the accounts in memory, without writing or logging anything
+    private PreparedTransfer prepareTransfer(User user, double ammount, String description, Account sourceAccount, Account destAccount, int sourceAccountId) {
+        double rate = 1;
+        boolean converted = true;
+        if (!sameCurrency(sourceAccount, destAccount)) {
+            double exchangeRate = exchangeRate(sourceAccount.getCurrency(), destAccount.getCurrency());
+            converted = !Double.isNaN(exchangeRate);
+            if (converted) rate = exchangeRate;
+        }
+        Withdraw withdraw = new Withdraw(user, ammount,description, sourceAccount);
+        PaymentIn payment = new PaymentIn(user, ammount*rate,description, destAccount);
+        withdraw.setRate(rate);
+        payment.setRate(rate);
+        if (!auth.canInvokeOperation(withdraw,user )) {
+            return new PreparedTransfer(withdraw, payment, PaymentResult.UNAUTHORIZED, false);
+        }
+        if (!velocity.tryAcquire(user, sourceAccountId, ammount)) {
+            return new PreparedTransfer(withdraw, payment, PaymentResult.VELOCITY_LIMIT, false);
+        }
+        boolean applied = converted && sourceAccount.outcome(ammount);
+        applied = applied && destAccount.income(payment.getAmmount());
+        if (!applied) velocity.release(user, sourceAccountId, ammount);
+        return new PreparedTransfer(withdraw, payment, null, applied);
+    }
+
+    private PaymentResult reject(PreparedTransfer transfer) throws SQLException {
+        if (transfer.rejection == PaymentResult.UNAUTHORIZED) {
+            history.logUnauthorizedOperation(transfer.withdraw, false);
+        } else {
+            history.logOperation(transfer.withdraw, false);
+        }
+        return transfer.rejection;
+    }
+
+    private void complete(PreparedTransfer transfer, boolean success) throws SQLException {
+        cache.invalidate(transfer.withdraw.getAccount());
+        cache.invalidate(transfer.payment.getAccount());
+        history.logOperation(transfer.withdraw, success);
+        history.logOperation(transfer.payment, success);
+    }
+
+    private static void addStored(List<Account> changed, Account account) {
+        if (!(account instanceof HotAccount)) changed.add(account);
+    }
+
+    private static class PreparedTransfer {
+        final Withdraw withdraw;
+        final PaymentIn payment;
+        final PaymentResult.Rejected rejection;
+        final boolean applied;
+
+        PreparedTransfer(Withdraw withdraw, PaymentIn payment, PaymentResult.Rejected rejection, boolean applied) {
+            this.withdraw = withdraw;
+            this.payment = payment;
+            this.rejection = rejection;
+            this.applied = applied;
+        }
+    }
+
+    /**
+     * Pays every line from one source account. The total is authorized and
+     * checked against the balance once, then the source is debited and all
+     * destinations credited in one transaction. Either every line is paid or
+     * none; invalid lines are reported in the result. Hot accounts cannot take
+     * part, their balance is not in the database, and neither can the command
+     * engine.
+     * <p>
+     * Line amounts are rounded to whole cents, the same for the debit and the
+     * credits. A payroll is counted against its own velocity limits, not the
+     * per-payment ones, which a single run would exceed.
+     */
+    public PayrollResult payroll(User user, int sourceAccountId, String description, List<PayrollLine> lines) throws SQLException {
+        if (engine != null) throw new IllegalStateException("Payroll is not available while the command engine runs");
+        Map<Integer, String> errors = new TreeMap<>();
+        long[] cents = new long[lines.size()];
+        long totalCents = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            PayrollLine line = lines.get(i);
+            if (!(line.getAmmount() >= 0.01) || Double.isInfinite(line.getAmmount())) {
+                errors.put(i, "Amount must be at least 0.01");
+            } else if (line.getDestAccountId() == sourceAccountId) {
+                errors.put(i, "Destination is the source account");
+            } else if (findHotAccount(line.getDestAccountId()) != null) {
+                errors.put(i, "Destination is a hot account");
+            } else {
+                cents[i] = Math.round(line.getAmmount() * 100);
+                totalCents += cents[i];
+            }
+        }
+        if (!errors.isEmpty()) return PayrollResult.invalid(errors);
+        if (lines.isEmpty()) return PayrollResult.of(PaymentResult.SUCCESS);
+        Account source = findAccount(sourceAccountId);
+        if (source == null || source instanceof HotAccount) return PayrollResult.of(PaymentResult.FAILURE);
+        double total = totalCents / 100.0;
+        Withdraw debit = new Withdraw(user, total, description, source);
+        if (!auth.canInvokeOperation(debit, user)) {
+            history.logUnauthorizedOperation(debit, false);
+            return PayrollResult.of(PaymentResult.UNAUTHORIZED);
+        }
+        if (!payrollVelocity.tryAcquire(user, sourceAccountId, total)) {
+            history.logOperation(debit, false);
+            return PayrollResult.of(PaymentResult.VELOCITY_LIMIT);
+        }
+        List<PaymentIn> credits = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            PayrollLine line = lines.get(i);
+            Account dest = new Account();
+            dest.setId(line.getDestAccountId());
+            credits.add(new PaymentIn(user, cents[i] / 100.0, line.getDescription(), dest));
+        }
+        int[] rejected = dao.fanOut(debit, credits);
+        if (rejected == null) {
+            payrollVelocity.release(user, sourceAccountId, total);
+            history.logOperation(debit, false);
+            return PayrollResult.of(PaymentResult.FAILURE);
+        }
+        if (rejected.length > 0) {
+            payrollVelocity.release(user, sourceAccountId, total);
+            for (int i : rejected) errors.put(i, "Unknown account or other currency than the source");
+            return PayrollResult.invalid(errors);
+        }
+        history.logWritten(Collections.singletonList(debit));
+        history.logWritten(credits);
+        cache.invalidate(source);
+        // the owners of the destinations were never read
+        Set<Integer> destinations = new HashSet<>();
+        for (PayrollLine line : lines) destinations.add(line.getDestAccountId());
+        cache.evictAccounts(destinations);
+        return PayrollResult.of(PaymentResult.SUCCESS);
+    }
+
+    /**
+     * Switches to engine mode: payments, internal payments and interest are
+     * then applied by the engine on its own balances. The Account table only
+     * follows at every engine snapshot. Hot accounts are demoted, because the
+     * engine has a single writer anyway.
+     */
+    public void startEngine(CommandEngine engine) throws SQLException, IOException {
+        if (hotAccounts != null) {
+            hotAccounts.stop();
+            hotAccounts = null;
+        }
+        engine.start(dao, history);
+        this.engine = engine;
+    }
+
+    public void stopEngine() throws InterruptedException, IOException {
+        CommandEngine stopped = engine;
+        engine = null;
+        if (stopped != null) stopped.stop();
+    }
+
+    /**
+     * Stops everything that still logs operations - hot accounts, standing
+     * orders and the command engine - and only then drains the history ring,
+     * so no event is queued after the drain.
+     */
+    void shutdown() {
+        try {
+            if (hotAccounts != null) hotAccounts.stop();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        if (standingOrders != null) standingOrders.stop();
+        try {
+            stopEngine();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            history.stopAsync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public CompletableFuture<PaymentResult> submitPaymentIn(User user, double ammount, String description, int accountId) {
+        return engine().submit(Command.paymentIn(user, ammount, description, accountId));
+    }
+
+    /**
+     * Authorizes the withdrawal here and leaves the balance to the engine.
+     */
+    public CompletableFuture<PaymentResult> submitPaymentOut(User user, double ammount, String description, int accountId) throws SQLException {
+        Operation operation = new Withdraw(user, ammount, description, findAccount(accountId));
+        PaymentResult rejection = authorizeWithdraw(operation, user, null, accountId, ammount);
+        if (rejection != null) return CompletableFuture.completedFuture(rejection);
+        return submitDebit(Command.paymentOut(user, ammount, description, accountId), user, accountId, ammount);
+    }
+
+    /**
+     * Authorizes the transfer and fixes its exchange rate here, so replaying it gives the same result.
+     */
+    public CompletableFuture<PaymentResult> submitInternalPayment(User user, double ammount, String description, int sourceAccountId, int destAccountId) throws SQLException {
+        Account sourceAccount = findAccount(sourceAccountId);
+        Account destAccount = findAccount(destAccountId);
+        double rate = sameCurrency(sourceAccount, destAccount)
+                ? 1 : exchangeRate(sourceAccount.getCurrency(), destAccount.getCurrency());
+        Withdraw withdraw = new Withdraw(user, ammount, description, sourceAccount);
+        if (!auth.canInvokeOperation(withdraw, user)) {
+            history.logUnauthorizedOperation(withdraw, false);
+            return CompletableFuture.completedFuture(PaymentResult.UNAUTHORIZED);
+        }
+        if (!velocity.tryAcquire(user, sourceAccountId, ammount)) {
+            history.logOperation(withdraw, false);
+            return CompletableFuture.completedFuture(PaymentResult.VELOCITY_LIMIT);
+        }
+        if (Double.isNaN(rate)) {
+            velocity.release(user, sourceAccountId, ammount);
+            history.logOperation(withdraw, false);
+            return CompletableFuture.completedFuture(PaymentResult.FAILURE);
+        }
+        return submitDebit(Command.internalPayment(user, ammount, description, sourceAccountId, destAccountId, rate),
+                user, sourceAccountId, ammount);
+    }
+
+    // a debit the engine declines does not count towards the velocity limits
+    private CompletableFuture<PaymentResult> submitDebit(Command command, User user, int accountId, double ammount) {
+        return engine().submit(command).thenApply(result -> {
+            if (result == PaymentResult.FAILURE) velocity.release(user, accountId, ammount);
+            return result;
+        });
+    }
+
+    public CompletableFuture<PaymentResult> submitInterest(User user, double factor, String description, int accountId) {
+        return engine().submit(Command.interest(user, factor, description, accountId));
+    }
+
+    private CommandEngine engine() {
+        if (engine == null) throw new IllegalStateException("Command engine is not started");
+        return engine;
+    }
+
+    /**
+     * Like {@link #paymentIn} but applied at most once per key and user; a
+     * retry with the same key returns the first result.
+     */
+    public boolean idempotentPaymentIn(String idempotencyKey, User user, double ammount, String description, int accountId) throws SQLException {
+        PaymentResult result = idempotencyKeys().execute(scoped(user, idempotencyKey), request("in", accountId, ammount),
+                () -> PaymentResult.of(paymentIn(user, ammount, description, accountId)));
+        return ((PaymentResult.Completed) result).success();
+    }
+
+    public boolean idempotentPaymentOut(String idempotencyKey, User user, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        return unwrap(tryIdempotentPaymentOut(idempotencyKey, user, ammount, description, accountId));
+    }
+
+    public PaymentResult tryIdempotentPaymentOut(String idempotencyKey, User user, double ammount, String description, int accountId) throws SQLException {
+        return idempotencyKeys().execute(scoped(user, idempotencyKey), request("out", accountId, ammount),
+                () -> tryPaymentOut(user, ammount, description, accountId));
+    }
+
+    private IdempotencyKeys idempotencyKeys() {
+        if (idempotencyKeys == null) idempotencyKeys = new IdempotencyKeys(dao, IDEMPOTENCY_KEYS, IDEMPOTENCY_TTL_MILLIS);
+        return idempotencyKeys;
+    }
+
+    // keys are chosen by clients, so they only have to be unique per user
+    private static String scoped(User user, String idempotencyKey) {
+        return user.getId() + ":" + idempotencyKey;
+    }
+
+    private static String request(String type, int accountId, double ammount) {
+        return type + ":" + accountId + ":" + ammount;
+    }
+
+    public boolean sessionPaymentIn(String sessionToken, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        User user = sessions.find(sessionToken);
+        if (user == null) throw OperationIsNotAllowedException.NO_SESSION;
+        return paymentIn(user, ammount, description, accountId);
+    }
+
+    public boolean sessionPaymentOut(String sessionToken, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        return unwrap(trySessionPaymentOut(sessionToken, ammount, description, accountId));
+    }
+
+    public PaymentResult trySessionPaymentOut(String sessionToken, double ammount, String description, int accountId) throws SQLException {
+        User user = sessions.find(sessionToken);
+        if (user == null) return PaymentResult.NO_SESSION;
+        return tryPaymentOut(user, ammount, description, accountId);
+    }
+
+    /**
+     * Payment in authorized by a signed token from {@link AuthenticationManager#logInForToken}.
+     */
+    public boolean tokenPaymentIn(String token, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        TokenClaims claims = auth.verifyToken(token);
+        if (claims == null) throw OperationIsNotAllowedException.NO_SESSION;
+        return paymentIn(claims.toUser(), ammount, description, accountId);
+    }
+
+    public boolean tokenPaymentOut(String token, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        return unwrap(tryTokenPaymentOut(token, ammount, description, accountId));
+    }
+
+    public PaymentResult tryTokenPaymentOut(String token, double ammount, String description, int accountId) throws SQLException {
+        TokenClaims claims = auth.verifyToken(token);
+        if (claims == null) return PaymentResult.NO_SESSION;
+        return withdraw(claims.toUser(), claims, ammount, description, accountId);
+    }
+
+    /**
+     * Serves a high-traffic account from sharded sub-balances, so concurrent
+     * credits to it do not contend. Its row is written back periodically.
+     */
+    public HotAccount promoteHotAccount(int accountId) throws SQLException {
+        if (hotAccounts == null) hotAccounts = new HotAccounts(dao, HOT_ACCOUNT_SLOTS);
+        return hotAccounts.promote(accountId);
+    }
+
+    public void demoteHotAccount(int accountId) throws SQLException {
+        if (hotAccounts != null) hotAccounts.demote(accountId);
+    }
+
+    public HotAccount findHotAccount(int accountId) {
+        return hotAccounts == null ? null : hotAccounts.find(accountId);
+    }
+
+    private Account findAccount(int accountId) throws SQLException {
+        HotAccount hot = findHotAccount(accountId);
+        return hot != null ? hot : dao.findAccountById(accountId);
+    }
+
+    // hot accounts are written back by HotAccounts
+    private boolean store(Account account) throws SQLException {
+        return account instanceof HotAccount || dao.updateAccountState(account);
+    }
+
+    private static boolean unwrap(PaymentResult result) throws OperationIsNotAllowedException {
+        if (result instanceof PaymentResult.Rejected) {
+            switch (((PaymentResult.Rejected) result).reason()) {
+                case NO_SESSION: throw OperationIsNotAllowedException.NO_SESSION;
+                case VELOCITY_LIMIT: throw OperationIsNotAllowedException.VELOCITY_LIMIT;
+                default: throw OperationIsNotAllowedException.UNAUTHORIZED;
+            }
+        }
+        return ((PaymentResult.Completed) result).success();
+    }
+
+    // a failed engine command surfaces as the SQLException the method declares
+    private static PaymentResult await(CompletableFuture<PaymentResult> result) throws SQLException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the command engine", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException("The command engine failed", e.getCause());
+        }
+    }
+
+    private double exchangeRate(String from, String to) {
+        if (exchange == null) return Double.NaN;
+        ExchangeResult result = exchange.tryExchange(from, to, 1);
+        if (result instanceof ExchangeResult.Converted) return ((ExchangeResult.Converted) result).rate();
+        return Double.NaN;
+    }
+
+    private static boolean sameCurrency(Account source, Account dest) {
+        if (source == null || dest == null) return true;
+        if (source.getCurrency() == null || dest.getCurrency() == null) return true;
+        return source.getCurrency().equals(dest.getCurrency());
     }
 
     public static AccountManager buildBank() {
         try {
             DAO dao = SQLiteDB.createDAO();
             BankHistory history = new BankHistory(dao);
-            AuthenticationManager am = new AuthenticationManager(dao, history);
+            history.startAsync(HISTORY_RING_CAPACITY);
             AccountManager aManager = new AccountManager();
+            aManager.history = history;
+            Runtime.getRuntime().addShutdownHook(new Thread(aManager::shutdown));
+            AuthenticationManager am = new AuthenticationManager(dao, history);
+            am.loadUserNames(USER_FILTER_FPP);
+            am.reloadPermissions();
             InterestOperator io = new InterestOperator(dao, aManager);
             aManager.dao = dao;
             aManager.auth = am;
-            aManager.history = history;
             aManager.interestOperator = io;
+            aManager.sessions.start();
+            aManager.velocity.setLimits(USER_ROLE_ID, USER_VELOCITY_LIMITS);
+            aManager.payrollVelocity.setLimits(USER_ROLE_ID, USER_PAYROLL_LIMITS);
+            aManager.hotAccounts = new HotAccounts(dao, HOT_ACCOUNT_SLOTS);
+            aManager.hotAccounts.start(HOT_ACCOUNT_FLUSH_MILLIS);
+            aManager.prefetcher = new Prefetcher(dao, aManager.cache, history, RECENT_OPERATIONS, PREFETCH_DEADLINE_MILLIS);
+            aManager.idempotencyKeys = new IdempotencyKeys(dao, IDEMPOTENCY_KEYS, IDEMPOTENCY_TTL_MILLIS);
+            aManager.idempotencyKeys.purge();
+            aManager.exchange = new CurrencyExchange();
+            if (Files.exists(Paths.get(RATES_FILE))) aManager.exchange.infitFromFile(RATES_FILE);
+            aManager.standingOrders = new StandingOrderEngine(aManager, dao);
+            aManager.standingOrders.load();
+            aManager.standingOrders.start();
             return aManager;
+        } catch (IOException e) {
+            e.printStackTrace();
         } catch (SQLException e) {
             e.printStackTrace();
         } catch (ClassNotFoundException e) {
@@ -91,17 +644,77 @@ public class AccountManager {
 
     public boolean logIn(String userName, char[] password) throws UserUnnkownOrBadPasswordException, SQLException {
         loggedUser =  auth.logIn(userName, password);
+        if (loggedUser != null) prefetch(loggedUser);
         return loggedUser!=null;
     }
 
     public boolean logOut(User user) throws SQLException {
         if (auth.logOut(user)) {
+            forget(user);
             loggedUser = null;
             return true;
         }
         return false;
     }
 
+    /**
+     * Logs the user in as one of many concurrent sessions.
+     *
+     * @return token identifying the session in the session* calls
+     */
+    public String openSession(String userName, char[] password) throws UserUnnkownOrBadPasswordException, SQLException {
+        User user = auth.logIn(userName, password);
+        prefetch(user);
+        return sessions.open(user);
+    }
+
+    public boolean closeSession(String sessionToken) throws SQLException {
+        Session session = sessions.close(sessionToken);
+        if (session == null) return false;
+        forget(session.getUser());
+        return auth.logOut(session.getUser());
+    }
+
+    /**
+     * @return the user's accounts, from the cache when they were read since the last change
+     */
+    public List<Account> getAccounts(User user) throws SQLException {
+        List<Account> accounts = cache.accounts(user.getId());
+        if (accounts != null) return accounts;
+        long version = cache.version(user.getId());
+        accounts = dao.findAccountsByOwner(user);
+        cache.putAccounts(user.getId(), accounts, version);
+        return accounts;
+    }
+
+    /**
+     * @return the account's latest operations, newest first
+     */
+    public List<Operation> getRecentOperations(int accountId) throws SQLException {
+        return history.getRecentOperations(accountId, RECENT_OPERATIONS);
+    }
+
+    private void prefetch(User user) {
+        if (prefetcher != null) prefetcher.prefetch(user);
+    }
+
+    private void forget(User user) {
+        if (prefetcher != null) prefetcher.cancel(user);
+        cache.evictOwner(user.getId());
+    }
+
+    public StandingOrderEngine getStandingOrders() {
+        return standingOrders;
+    }
+
+    public VelocityGuard getVelocityGuard() {
+        return velocity;
+    }
+
+    public VelocityGuard getPayrollVelocityGuard() {
+        return payrollVelocity;
+    }
+
     public User getLoggedUser() {
         return loggedUser;
     }
@@ -1,92 +1,213 @@
 package biz;
 
 
+import biz.bloom.BloomFilter;
+import biz.password.PasswordEngine;
+import biz.password.Sha256PasswordHasher;
+import biz.permission.PermissionMatrix;
+import biz.session.TokenClaims;
+import biz.session.TokenSigner;
+import biz.throttle.LoginThrottle;
 import db.dao.DAO;
 import model.Operation;
 import model.Password;
+import model.Permission;
+import model.Role;
 import model.User;
+import model.exceptions.LoginThrottledException;
 import model.exceptions.UserUnnkownOrBadPasswordException;
 import model.operations.OperationType;
 import model.operations.Withdraw;
 
-import org.apache.commons.codec.binary.Base64;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class AuthenticationManager {
+    private static final Sha256PasswordHasher LEGACY = new Sha256PasswordHasher();
+
     private DAO dao;
     private BankHistory history;
+    private PasswordEngine passwords;
+    private LoginThrottle throttle = new LoginThrottle();
+    private volatile BloomFilter knownUsers = null;
+    private volatile PermissionMatrix permissions = null;
+    private LoginCoalescer logins;
+    private TokenSigner tokens = new TokenSigner(TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(15));
 
     public AuthenticationManager(DAO dao, BankHistory bankHistory){
+        this(dao, bankHistory, PasswordEngine.defaultEngine());
+    }
+
+    public AuthenticationManager(DAO dao, BankHistory bankHistory, PasswordEngine passwords){
         this.dao=dao;
         this.history=bankHistory;
+        this.passwords=passwords;
+        this.logins=new LoginCoalescer(dao, passwords);
     }
 
     public User logIn(String userName, char[] password) throws UserUnnkownOrBadPasswordException, SQLException {
-        User user = dao.findUserByName(userName);
+        return logIn(userName, password, null);
+    }
+
+    /**
+     * @param source client address used for throttling, or null when unknown
+     * @throws LoginThrottledException when the user or source made too many attempts;
+     * nothing is looked up or logged then
+     */
+    public User logIn(String userName, char[] password, String source) throws UserUnnkownOrBadPasswordException, SQLException {
+        long wait = throttle.admit(userName, source);
+        if (wait > 0) throw new LoginThrottledException(wait);
+        BloomFilter names = knownUsers;
+        if (names != null && userName != null && !names.mightContain(userName)) {
+            // certainly unknown: no lookup and no failure row
+            throttle.failure(userName, source);
+            throw new UserUnnkownOrBadPasswordException("Bad Password");
+        }
+        LoginCoalescer.Credentials credentials = logins.lookUp(userName);
+        User user = credentials.getUser();
         if (user==null) {
+            throttle.failure(userName, source);
             history.logLoginFailure(null,"Zła nazwa użytkownika "+userName);
             throw new UserUnnkownOrBadPasswordException("Bad Password");
         }
-        Password paswd = dao.findPasswordForUser(user);
-        if (checkPassword(paswd,password)) {
+        Password paswd = credentials.getPassword();
+        String current;
+        try {
+            current = logins.verify(password, paswd.getPasswd());
+        } catch (RejectedExecutionException e) {
+            history.logLoginFailure(user,"Too many logins");
+            throw new UserUnnkownOrBadPasswordException("Too many logins, try again");
+        }
+        if (current != null) {
+            if (!current.equals(paswd.getPasswd())) dao.setUserPassword(user, current, paswd.getPasswd());
+            throttle.success(userName, source);
             history.logLoginSuccess(user);
             return user;
         }
         else {
+            throttle.failure(userName, source);
             history.logLoginFailure(user,"Bad Password");
             throw new UserUnnkownOrBadPasswordException("Bad Password");
         }
     }
 
+    /**
+     * Builds the filter of known user names used to reject unknown ones without
+     * a database lookup.
+     *
+     * @return the filter, so its size can be reported
+     */
+    public BloomFilter loadUserNames(double falsePositiveRate) throws SQLException {
+        List<String> userNames = dao.findAllUserNames();
+        // room for growth; the rate degrades slowly past the expected count
+        BloomFilter filter = new BloomFilter(Math.max(1024, userNames.size() * 2L), falsePositiveRate);
+        for (String name : userNames) filter.put(name);
+        knownUsers = filter;
+        return filter;
+    }
+
+    /**
+     * @return the user name filter, e.g. to report its memory use, or null when not loaded
+     */
+    public BloomFilter getUserNameFilter() {
+        return knownUsers;
+    }
+
+    public User createUser(String userName, Role role, char[] password) throws SQLException {
+        String hash = passwords.hash(password);
+        User user = dao.createUser(userName, role, hash);
+        // only a user that exists may pass the filter
+        BloomFilter names = knownUsers;
+        if (names != null) names.put(userName);
+        return user;
+    }
+
+    /**
+     * Logs in and returns a signed token that later calls can be authorized with.
+     */
+    public String logInForToken(String userName, char[] password) throws UserUnnkownOrBadPasswordException, SQLException {
+        return issueToken(logIn(userName, password));
+    }
+
+    public String issueToken(User user) {
+        return tokens.issue(user.getId(), user.getRole().getId(), isAdmin(user));
+    }
+
+    /**
+     * @return claims of a valid token or null; needs no database access
+     */
+    public TokenClaims verifyToken(String token) {
+        return tokens.verify(token);
+    }
+
+    /**
+     * @return counters of login work shared between concurrent attempts
+     */
+    public LoginCoalescer getLoginCoalescer() {
+        return logins;
+    }
+
+    public void setThrottle(LoginThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    public void rotateTokenKey() {
+        tokens.rotate();
+    }
+
     public boolean logOut(User user) throws SQLException {
         history.logLogOut(user);
         return true;
     }
 
-    private boolean checkPassword(Password passwd, char[] password) {
-        String hashedPassword = hashPassword(password);
-        return passwd.getPasswd().equals(hashedPassword);
-    }
-
+    /**
+     * Legacy unsalted SHA-256; new passwords are hashed by the {@link PasswordEngine}.
+     */
     public static String hashPassword(char[] pass){
-        String result=null;
-        CharBuffer cBuffer = CharBuffer.wrap(pass);
-        byte[] bpass = null;
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            bpass = Charset.forName("UTF-8").encode(cBuffer).array();
-            byte[] encodedhash = digest.digest(bpass);
-            Base64 base64 = new Base64();
-            result = new String(base64.encode(encodedhash));
-            //result = Base64.encode(encodedhash);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
-        finally{
-            cBuffer.clear();
-            if (bpass!=null) Arrays.fill(bpass, (byte) 0x0);
+            return LEGACY.hash(pass);
+        } finally {
             if (pass!=null) Arrays.fill(pass, 'a');
         }
-        return result;
+    }
+
+    /**
+     * Compiles the Permission table; safe to call at runtime to pick up changes.
+     * An empty table keeps the built-in rules.
+     */
+    public void reloadPermissions() throws SQLException {
+        List<Permission> rows = dao.findPermissions();
+        permissions = rows.isEmpty() ? null : PermissionMatrix.compile(rows);
     }
 
     public boolean canInvokeOperation(Operation operation, User user) {
-        if (user.getRole().getName().equals("Admin")) return true;
+        return allows(operation, user.getId(), user.getRole().getId(), isAdmin(user));
+    }
+
+    public boolean canTokenInvokeOperation(Operation operation, TokenClaims claims) {
+        return allows(operation, claims.getUserId(), claims.getRoleId(), claims.isAdmin());
+    }
+
+    private boolean allows(Operation operation, int userId, int roleId, boolean admin) {
+        PermissionMatrix matrix = permissions;
+        if (matrix != null) return matrix.allows(operation, userId, roleId);
+        if (admin) return true;
         if (operation.getType() == OperationType.PAYMENT_IN) return true;
         if (operation.getType() == OperationType.WITHDRAW) {
             Withdraw op = (Withdraw) operation;
-            return user.getId() == op.getUser().getId();
+            return userId == op.getUser().getId();
         }
         return false;
     }
 
+    private static boolean isAdmin(User user) {
+        return "Admin".equals(user.getRole().getName());
+    }
 
 }
@@ -1,5 +1,8 @@
 package biz;
 
+import biz.history.HistoryRingBuffer;
+import biz.history.HistorySink;
+import biz.history.RecentOperationsIndex;
 import db.dao.DAO;
 import model.Account;
 import model.Operation;
@@ -8,17 +11,75 @@ import model.operations.LogIn;
 import model.operations.LogOut;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class BankHistory {
+    private static final int RECENT_PER_ACCOUNT = 20;
+    private static final int RECENT_ACCOUNTS = 10_000;
+    private static final int WRITE_ATTEMPTS = 3;
+    private static final long RETRY_PAUSE_NANOS = 10_000_000;
+
     DAO dao;
+    private volatile HistoryRingBuffer ring = null;
+    private volatile long failedBefore = 0;
+    private final RecentOperationsIndex recent = new RecentOperationsIndex(RECENT_PER_ACCOUNT, RECENT_ACCOUNTS);
 
     public BankHistory(DAO dao) {
         this.dao = dao;
     }
 
+    /**
+     * From now on operations are queued on a ring buffer and written by its
+     * consumer thread, to the database and then to the extra sinks. A failed
+     * database write is retried a few times, holding up the ring meanwhile;
+     * operations still not written are counted in {@link #getFailedEvents()}.
+     */
+    public synchronized void startAsync(int capacity, HistorySink... sinks) {
+        if (ring != null) return;
+        HistoryRingBuffer buffer = new HistoryRingBuffer(capacity, capacity);
+        buffer.start((event, endOfBatch) -> {
+            write(event.getOperation(), event.isSuccess());
+            for (HistorySink sink : sinks) sink.onEvent(event, endOfBatch);
+        });
+        ring = buffer;
+    }
+
+    /**
+     * Writes out everything queued and returns to synchronous logging. Meant for
+     * shutdown, once nothing else is being logged.
+     */
+    public synchronized void stopAsync() throws InterruptedException {
+        HistoryRingBuffer buffer = ring;
+        if (buffer == null) return;
+        ring = null;
+        buffer.stop();
+        failedBefore += buffer.failures();
+    }
+
+    /**
+     * @return operations queued for the consumer thread that it failed to write
+     */
+    public long getFailedEvents() {
+        HistoryRingBuffer buffer = ring;
+        return failedBefore + (buffer == null ? 0 : buffer.failures());
+    }
+
+    private void write(Operation operation, boolean success) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                dao.logOperation(operation, success);
+                return;
+            } catch (SQLException e) {
+                if (attempt == WRITE_ATTEMPTS) throw e;
+                LockSupport.parkNanos(RETRY_PAUSE_NANOS * attempt);
+            }
+        }
+    }
+
     public void logLoginSuccess(User user) throws SQLException {
         Operation o = new LogIn(user,"Logowanie ");
         logOperation(o,true);
@@ -43,11 +104,34 @@ public class BankHistory {
     }
 
     public void logOperation(Operation operation, boolean success) throws SQLException {
-
+        recent.append(operation);
+        HistoryRingBuffer buffer = ring;
+        if (buffer != null) {
+            buffer.publish(operation, success);
+            return;
+        }
         dao.logOperation(operation,success);
     }
 
-    public void logUnauthorizedOperation(Operation operation, boolean success) {
-        throw new RuntimeException();
+    /**
+     * Records operations the DAO has already written, so they only go to the recent index.
+     */
+    public void logWritten(List<? extends Operation> operations) {
+        for (Operation operation : operations) recent.append(operation);
+    }
+
+    /**
+     * @return up to limit (at most 20) latest operations of the account, newest
+     * first, from memory once the account was read
+     */
+    public List<Operation> getRecentOperations(int accountId, int limit) throws SQLException {
+        return recent.recent(accountId, limit, dao::findRecentOperations);
+    }
+
+    /**
+     * Records an operation refused for lack of permission, as a failed operation.
+     */
+    public void logUnauthorizedOperation(Operation operation, boolean success) throws SQLException {
+        logOperation(operation, success);
     }
 }
@@ -27,6 +27,11 @@ public class InterestOperator {
         double interest = ammount*interestFactor;
         User user = dao.findUserByName("InterestOperator");
         String desc = "Interest ...";
+        if (accountManager.engine != null) {
+            // computed from the balance the engine holds when it applies the command
+            accountManager.submitInterest(user, interestFactor, desc, account.getId()).join();
+            return;
+        }
         boolean success = accountManager.paymentIn(user,interest,desc,account.getId());
         Operation operation=new Interest(user,interest,desc,account);
         bankHistory.logOperation(operation,success);
@@ -0,0 +1,176 @@
+package biz;
+
+import biz.password.PasswordEngine;
+import db.dao.DAO;
+import model.Password;
+import model.User;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares login work between concurrent attempts for the same user.
+ * <p>
+ * The first login for a name fetches the user and password; logins arriving
+ * while it runs wait for that result instead of querying again. Likewise one
+ * hash verification serves every concurrent attempt with the same stored hash
+ * and the same password. Attempts are keyed by a digest of the password, so the
+ * password itself is never kept in the map. Counters show how much work was saved.
+ */
+public class LoginCoalescer {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final DAO dao;
+    private final PasswordEngine passwords;
+    private final ConcurrentHashMap<String, CompletableFuture<Credentials>> lookups = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<String>> verifications = new ConcurrentHashMap<>();
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder coalescedLookups = new LongAdder();
+    private final LongAdder verificationCount = new LongAdder();
+    private final LongAdder coalescedVerifications = new LongAdder();
+
+    public LoginCoalescer(DAO dao, PasswordEngine passwords) {
+        this.dao = dao;
+        this.passwords = passwords;
+    }
+
+    /**
+     * @return the user with their password, the user being null when the name is unknown
+     */
+    public Credentials lookUp(String userName) throws SQLException {
+        if (userName == null) return load(null);
+        CompletableFuture<Credentials> mine = new CompletableFuture<>();
+        CompletableFuture<Credentials> running = lookups.putIfAbsent(userName, mine);
+        if (running != null) {
+            coalescedLookups.increment();
+            return await(running);
+        }
+        try {
+            Credentials credentials = load(userName);
+            mine.complete(credentials);
+            return credentials;
+        } catch (SQLException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookups.remove(userName, mine);
+        }
+    }
+
+    /**
+     * Same contract as {@link PasswordEngine#verify}; clears the password array.
+     */
+    public String verify(char[] password, String stored) {
+        String key;
+        try {
+            key = stored + '\n' + fingerprint(password);
+        } catch (RuntimeException e) {
+            Arrays.fill(password, 'a');
+            throw e;
+        }
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = verifications.putIfAbsent(key, mine);
+        if (running != null) {
+            Arrays.fill(password, 'a');
+            coalescedVerifications.increment();
+            try {
+                return await(running);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        verificationCount.increment();
+        try {
+            String result = passwords.verify(password, stored);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            verifications.remove(key, mine);
+        }
+    }
+
+    public long getLookups() {
+        return lookupCount.sum();
+    }
+
+    public long getCoalescedLookups() {
+        return coalescedLookups.sum();
+    }
+
+    public long getVerifications() {
+        return verificationCount.sum();
+    }
+
+    public long getCoalescedVerifications() {
+        return coalescedVerifications.sum();
+    }
+
+    private Credentials load(String userName) throws SQLException {
+        lookupCount.increment();
+        User user = dao.findUserByName(userName);
+        Password password = user == null ? null : dao.findPasswordForUser(user);
+        return new Credentials(user, password);
+    }
+
+    private static String fingerprint(char[] password) {
+        byte[] bytes = new byte[password.length * 2];
+        for (int i = 0; i < password.length; i++) {
+            bytes[2 * i] = (byte) (password[i] >>> 8);
+            bytes[2 * i + 1] = (byte) password[i];
+        }
+        try {
+            return Base64.getEncoder().encodeToString(DIGEST.get().digest(bytes));
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a concurrent login", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public static class Credentials {
+        private final User user;
+        private final Password password;
+
+        Credentials(User user, Password password) {
+            this.user = user;
+            this.password = password;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public Password getPassword() {
+            return password;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package biz;
+
+/**
+ * Outcome of a payment that reports a rejection instead of throwing.
+ */
+public sealed interface PaymentResult {
+
+    Completed SUCCESS = new Completed(true);
+    Completed FAILURE = new Completed(false);
+    Rejected UNAUTHORIZED = new Rejected(Reason.UNAUTHORIZED);
+    Rejected NO_SESSION = new Rejected(Reason.NO_SESSION);
+    Rejected VELOCITY_LIMIT = new Rejected(Reason.VELOCITY_LIMIT);
+
+    static Completed of(boolean success) {
+        return success ? SUCCESS : FAILURE;
+    }
+
+    record Completed(boolean success) implements PaymentResult {
+    }
+
+    record Rejected(Reason reason) implements PaymentResult {
+    }
+
+    enum Reason {
+        UNAUTHORIZED,
+        NO_SESSION,
+        VELOCITY_LIMIT
+    }
+}
@@ -0,0 +1,28 @@
+package biz.batch;
+
+/**
+ * One credit of a payroll, paid from the payroll's source account.
+ */
+public class PayrollLine {
+    private final int destAccountId;
+    private final double ammount;
+    private final String description;
+
+    public PayrollLine(int destAccountId, double ammount, String description) {
+        this.destAccountId = destAccountId;
+        this.ammount = ammount;
+        this.description = description;
+    }
+
+    public int getDestAccountId() {
+        return destAccountId;
+    }
+
+    public double getAmmount() {
+        return ammount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,40 @@
+package biz.batch;
+
+import biz.PaymentResult;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a payroll. When some lines are invalid nothing is paid and the
+ * result lists the reason for each of them, by line index.
+ */
+public class PayrollResult {
+    private final PaymentResult result;
+    private final Map<Integer, String> lineErrors;
+
+    private PayrollResult(PaymentResult result, Map<Integer, String> lineErrors) {
+        this.result = result;
+        this.lineErrors = Collections.unmodifiableMap(lineErrors);
+    }
+
+    public static PayrollResult of(PaymentResult result) {
+        return new PayrollResult(result, Collections.emptyMap());
+    }
+
+    public static PayrollResult invalid(Map<Integer, String> lineErrors) {
+        return new PayrollResult(PaymentResult.FAILURE, lineErrors);
+    }
+
+    public PaymentResult getResult() {
+        return result;
+    }
+
+    public Map<Integer, String> getLineErrors() {
+        return lineErrors;
+    }
+
+    public boolean isSuccess() {
+        return result == PaymentResult.SUCCESS;
+    }
+}
@@ -0,0 +1,42 @@
+package biz.batch;
+
+import model.User;
+
+/**
+ * One internal payment of a batch.
+ */
+public class Transfer {
+    private final User user;
+    private final double ammount;
+    private final String description;
+    private final int sourceAccountId;
+    private final int destAccountId;
+
+    public Transfer(User user, double ammount, String description, int sourceAccountId, int destAccountId) {
+        this.user = user;
+        this.ammount = ammount;
+        this.description = description;
+        this.sourceAccountId = sourceAccountId;
+        this.destAccountId = destAccountId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public double getAmmount() {
+        return ammount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getSourceAccountId() {
+        return sourceAccountId;
+    }
+
+    public int getDestAccountId() {
+        return destAccountId;
+    }
+}
@@ -0,0 +1,43 @@
+package biz.batch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a batch of transfers into waves of transfers that touch disjoint
+ * accounts. Two transfers conflict when they share an account; each transfer
+ * goes to the wave after the last one that touched either of its accounts,
+ * so conflicting transfers keep their order and everything within a wave can
+ * run in parallel. One pass, linear in the number of transfers.
+ */
+public class TransferWaves {
+
+    private TransferWaves() {
+    }
+
+    /**
+     * @return for every wave, the indexes of its transfers in submission order
+     */
+    public static int[][] plan(List<Transfer> transfers) {
+        Map<Integer, Integer> lastWave = new HashMap<>();
+        int[] waveOf = new int[transfers.size()];
+        int waves = 0;
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            int wave = Math.max(lastWave.getOrDefault(transfer.getSourceAccountId(), -1),
+                    lastWave.getOrDefault(transfer.getDestAccountId(), -1)) + 1;
+            lastWave.put(transfer.getSourceAccountId(), wave);
+            lastWave.put(transfer.getDestAccountId(), wave);
+            waveOf[i] = wave;
+            waves = Math.max(waves, wave + 1);
+        }
+        int[] sizes = new int[waves];
+        for (int wave : waveOf) sizes[wave]++;
+        int[][] plan = new int[waves][];
+        for (int w = 0; w < waves; w++) plan[w] = new int[sizes[w]];
+        int[] filled = new int[waves];
+        for (int i = 0; i < waveOf.length; i++) plan[waveOf[i]][filled[waveOf[i]]++] = i;
+        return plan;
+    }
+}
@@ -0,0 +1,95 @@
+package biz.cache;
+
+import biz.BankHistory;
+import db.dao.DAO;
+import model.Account;
+import model.User;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+
+/**
+ * Loads a user's accounts into the {@link ReadCache} and their latest operations
+ * into the {@link BankHistory} index right after login, so the first request
+ * after it finds them warm.
+ * <p>
+ * Every prefetch runs on its own virtual thread and gives up once its deadline
+ * passes; logging out cancels it. Accounts read before a change to them are
+ * not cached, see {@link ReadCache#version}.
+ */
+public class Prefetcher {
+
+    private final DAO dao;
+    private final ReadCache cache;
+    private final BankHistory history;
+    private final int operationsPerAccount;
+    private final long deadline;
+    private final LongSupplier clock;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Integer, Future<?>> running = new ConcurrentHashMap<>();
+
+    public Prefetcher(DAO dao, ReadCache cache, BankHistory history, int operationsPerAccount, long deadlineMillis) {
+        this(dao, cache, history, operationsPerAccount, deadlineMillis, System::currentTimeMillis,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public Prefetcher(DAO dao, ReadCache cache, BankHistory history, int operationsPerAccount, long deadlineMillis,
+                      LongSupplier clock, ExecutorService executor) {
+        this.dao = dao;
+        this.cache = cache;
+        this.history = history;
+        this.operationsPerAccount = operationsPerAccount;
+        this.deadline = deadlineMillis;
+        this.clock = clock;
+        this.executor = executor;
+    }
+
+    public Future<?> prefetch(User user) {
+        long until = clock.getAsLong() + deadline;
+        int userId = user.getId();
+        Future<?>[] ref = new Future<?>[1];
+        synchronized (ref) {
+            Future<?> future = executor.submit(() -> {
+                try {
+                    load(user, until);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                } finally {
+                    synchronized (ref) {
+                        running.remove(userId, ref[0]);
+                    }
+                }
+            });
+            ref[0] = future;
+            Future<?> previous = running.put(userId, future);
+            if (previous != null) previous.cancel(true);
+            return future;
+        }
+    }
+
+    public void cancel(User user) {
+        Future<?> future = running.remove(user.getId());
+        if (future != null) future.cancel(true);
+    }
+
+    private void load(User user, long until) throws SQLException {
+        if (expired(until)) return;
+        long version = cache.version(user.getId());
+        List<Account> accounts = dao.findAccountsByOwner(user);
+        if (expired(until)) return;
+        cache.putAccounts(user.getId(), accounts, version);
+        for (Account account : accounts) {
+            if (expired(until)) return;
+            history.getRecentOperations(account.getId(), operationsPerAccount);
+        }
+    }
+
+    private boolean expired(long until) {
+        return Thread.currentThread().isInterrupted() || clock.getAsLong() >= until;
+    }
+}
@@ -0,0 +1,86 @@
+package biz.cache;
+
+import model.Account;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts per owner, as last read from the database. Entries are dropped when
+ * an account changes and when its owner logs out, so the cache holds roughly the
+ * working set of logged-in users. Recent operations are kept by {@link biz.BankHistory}.
+ * <p>
+ * Every drop moves the owner to a new version. A reader takes {@link #version}
+ * before going to the database and {@link #putAccounts} keeps its list only while
+ * that version is still current, so a read that raced a change is not cached.
+ * Versions stay for every owner ever dropped, one number each.
+ */
+public class ReadCache {
+
+    private final ConcurrentHashMap<Integer, List<Account>> accountsByOwner = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // moved on by drops that cannot name the owners, so reads begun before them are not kept
+    private volatile long epoch;
+
+    /**
+     * @return the cached accounts or null
+     */
+    public List<Account> accounts(int ownerId) {
+        return accountsByOwner.get(ownerId);
+    }
+
+    /**
+     * @return the owner's version, to be passed to {@link #putAccounts}
+     */
+    public long version(int ownerId) {
+        return Math.max(versions.getOrDefault(ownerId, 0L), epoch);
+    }
+
+    /**
+     * @return false when the owner changed since {@code version} was taken and the accounts were not kept
+     */
+    public boolean putAccounts(int ownerId, List<Account> accounts, long version) {
+        List<Account> entry = Collections.unmodifiableList(accounts);
+        accountsByOwner.put(ownerId, entry);
+        // a drop that came in meanwhile has either removed the entry already or is seen here
+        if (version(ownerId) == version) return true;
+        accountsByOwner.remove(ownerId, entry);
+        return false;
+    }
+
+    public void invalidate(Account account) {
+        if (account == null) return;
+        if (account.getOwner() != null) evictOwner(account.getOwner().getId());
+    }
+
+    public void evictOwner(int ownerId) {
+        versions.put(ownerId, sequence.incrementAndGet());
+        accountsByOwner.remove(ownerId);
+    }
+
+    /**
+     * Drops the owners of the accounts, found by scanning the cache, for
+     * changes made without reading the accounts first.
+     */
+    public void evictAccounts(Collection<Integer> accountIds) {
+        epoch = sequence.incrementAndGet();
+        for (Map.Entry<Integer, List<Account>> entry : accountsByOwner.entrySet()) {
+            for (Account account : entry.getValue()) {
+                if (accountIds.contains(account.getId())) {
+                    evictOwner(entry.getKey());
+                    break;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        epoch = sequence.incrementAndGet();
+        accountsByOwner.clear();
+    }
+}
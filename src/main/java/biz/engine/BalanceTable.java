@@ -0,0 +1,91 @@
+package biz.engine;
+
+/**
+ * Open-addressing map of account id to balance, owned by the engine thread.
+ */
+class BalanceTable {
+
+    private int[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int size = 0;
+
+    BalanceTable(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+    }
+
+    boolean contains(int accountId) {
+        return used[slot(accountId)];
+    }
+
+    /**
+     * @return the balance or NaN for an unknown account
+     */
+    double get(int accountId) {
+        int slot = slot(accountId);
+        return used[slot] ? values[slot] : Double.NaN;
+    }
+
+    void put(int accountId, double ammount) {
+        int slot = slot(accountId);
+        if (!used[slot]) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(accountId);
+            }
+            used[slot] = true;
+            keys[slot] = accountId;
+            size++;
+        }
+        values[slot] = ammount;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Entry entry) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) entry.accept(keys[i], values[i]);
+        }
+    }
+
+    BalanceTable copy() {
+        BalanceTable copy = new BalanceTable(1);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.used = used.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    private int slot(int accountId) {
+        int mask = keys.length - 1;
+        int slot = (accountId * 0x9E3779B9) >>> 1 & mask;
+        while (used[slot] && keys[slot] != accountId) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = slot(oldKeys[i]);
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    interface Entry {
+        void accept(int accountId, double ammount);
+    }
+}
@@ -0,0 +1,97 @@
+package biz.engine;
+
+import biz.PaymentResult;
+import model.User;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One journaled command. Everything the engine needs to apply it is in the
+ * command itself, so replaying the journal gives the same balances: the
+ * exchange rate of an internal payment and the interest factor are fixed when
+ * the command is created.
+ */
+public class Command {
+    private final CommandType type;
+    private final User user;
+    private final double ammount;
+    private final String description;
+    private final int accountId;
+    private final int destAccountId;
+    private final double rate;
+    long sequence;
+    // amount actually credited, set by the engine thread
+    double applied;
+    final CompletableFuture<PaymentResult> result = new CompletableFuture<>();
+
+    Command(CommandType type, User user, double ammount, String description, int accountId, int destAccountId, double rate) {
+        this.type = type;
+        this.user = user;
+        this.ammount = ammount;
+        this.description = description;
+        this.accountId = accountId;
+        this.destAccountId = destAccountId;
+        this.rate = rate;
+    }
+
+    public static Command paymentIn(User user, double ammount, String description, int accountId) {
+        return new Command(CommandType.PAYMENT_IN, user, ammount, description, accountId, 0, 1);
+    }
+
+    public static Command paymentOut(User user, double ammount, String description, int accountId) {
+        return new Command(CommandType.PAYMENT_OUT, user, ammount, description, accountId, 0, 1);
+    }
+
+    /**
+     * @param rate exchange rate from the source to the destination currency
+     */
+    public static Command internalPayment(User user, double ammount, String description, int sourceAccountId, int destAccountId, double rate) {
+        return new Command(CommandType.INTERNAL_PAYMENT, user, ammount, description, sourceAccountId, destAccountId, rate);
+    }
+
+    /**
+     * Credits the account with its balance times the factor, as of when the command is applied.
+     */
+    public static Command interest(User user, double factor, String description, int accountId) {
+        return new Command(CommandType.INTEREST, user, 0, description, accountId, 0, factor);
+    }
+
+    public CommandType getType() {
+        return type;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public double getAmmount() {
+        return ammount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the account paid into or out of, the source of an internal payment
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public int getDestAccountId() {
+        return destAccountId;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public CompletableFuture<PaymentResult> getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,321 @@
+package biz.engine;
+
+import biz.BankHistory;
+import biz.PaymentResult;
+import db.dao.DAO;
+import model.Account;
+import model.Operation;
+import model.operations.Interest;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies account-mutating commands on a single thread, after the LMAX
+ * architecture.
+ * <p>
+ * Commands come in through a ring. The engine thread numbers each batch and
+ * writes it to the journal. Only then does it apply the commands to the
+ * balances, which it keeps in memory and never locks. Results are completed and
+ * logged to the history on another thread, so callbacks cannot hold the engine
+ * up.
+ * <p>
+ * Every snapshotInterval commands the balances are snapshotted, written back to
+ * the Account table, and the journal before them is dropped. On start the
+ * latest snapshot is loaded and the journal replayed on top of it, which
+ * restores exactly the balances of the last journaled command.
+ * <p>
+ * The engine knows the accounts that are in the database when it starts.
+ * Commands for any other account fail.
+ */
+public class CommandEngine {
+
+    private static final int SPINS_BEFORE_PARK = 1_000;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final Path directory;
+    private final CommandRing ring;
+    private final CommandJournal journal;
+    private final Command[] batch;
+    private final long snapshotInterval;
+    private BalanceTable balances = null;
+    private volatile long sequence = 0;
+    private long snapshotSequence = 0;
+    private DAO dao = null;
+    private BankHistory history = null;
+    private ExecutorService results = null;
+    private ExecutorService snapshots = null;
+    private volatile IOException failure = null;
+    private volatile boolean running = false;
+    private Thread engine = null;
+
+    public CommandEngine(Path directory) {
+        this(directory, 8192, 256, 100_000, true);
+    }
+
+    /**
+     * @param capacity         ring size, a power of two
+     * @param maxBatch         commands journaled with one flush
+     * @param snapshotInterval commands between snapshots
+     * @param sync             force the journal to the disk on every flush
+     */
+    public CommandEngine(Path directory, int capacity, int maxBatch, long snapshotInterval, boolean sync) {
+        this.directory = directory;
+        this.ring = new CommandRing(capacity);
+        this.journal = new CommandJournal(directory, sync);
+        this.batch = new Command[maxBatch];
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Recovers the balances, snapshots them and starts the engine thread.
+     *
+     * @param history where applied operations are logged, may be null
+     */
+    public synchronized void start(DAO dao, BankHistory history) throws SQLException, IOException {
+        if (running) return;
+        this.dao = dao;
+        this.history = history;
+        failure = null;
+        recover();
+        persist(new Snapshot(sequence, balances.copy()));
+        snapshotSequence = sequence;
+        journal.open(sequence + 1);
+        results = Executors.newSingleThreadExecutor(r -> daemon(r, "engine-results"));
+        snapshots = Executors.newSingleThreadExecutor(r -> daemon(r, "engine-snapshots"));
+        running = true;
+        engine = daemon(this::run, "command-engine");
+        engine.start();
+    }
+
+    /**
+     * Applies everything submitted so far, snapshots the balances and stops.
+     */
+    public synchronized void stop() throws InterruptedException, IOException {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(engine);
+        engine.join();
+        engine = null;
+        int count;
+        while ((count = ring.drain(batch)) > 0) {
+            for (int i = 0; i < count; i++) {
+                batch[i].result.completeExceptionally(new IllegalStateException("Command engine stopped"));
+                batch[i] = null;
+            }
+        }
+        if (failure == null && sequence != snapshotSequence) snapshot();
+        snapshots.shutdown();
+        snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        results.shutdown();
+        results.awaitTermination(1, TimeUnit.MINUTES);
+        journal.close();
+    }
+
+    /**
+     * @return the command's result, completed once it was journaled and applied
+     */
+    public CompletableFuture<PaymentResult> submit(Command command) {
+        if (!running) throw new IllegalStateException("Command engine is not running");
+        IOException failed = failure;
+        if (failed != null) {
+            command.result.completeExceptionally(failed);
+        } else {
+            ring.publish(command);
+        }
+        return command.result;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return sequence of the last command journaled
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    // only valid while the engine thread is not running
+    double balance(int accountId) {
+        return balances.get(accountId);
+    }
+
+    private void recover() throws SQLException, IOException {
+        Snapshot snapshot = Snapshot.load(directory);
+        BalanceTable table = snapshot != null ? snapshot.balances : new BalanceTable(1024);
+        // accounts opened after the snapshot was taken
+        dao.scanBalances((accountId, ammount) -> {
+            if (!table.contains(accountId)) table.put(accountId, ammount);
+        });
+        balances = table;
+        sequence = journal.replay(snapshot == null ? 0 : snapshot.sequence, this::apply);
+    }
+
+    private void run() {
+        int idle = 0;
+        while (true) {
+            int count = ring.drain(batch);
+            if (count > 0) {
+                idle = 0;
+                process(count);
+                continue;
+            }
+            if (!running && ring.backlog() == 0) break;
+            if (++idle < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void process(int count) {
+        if (failure == null) {
+            try {
+                for (int i = 0; i < count; i++) {
+                    batch[i].sequence = ++sequence;
+                    journal.append(batch[i]);
+                }
+                journal.flush();
+            } catch (IOException e) {
+                // the journal no longer matches the balances, so nothing more is applied
+                failure = e;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            Command command = batch[i];
+            batch[i] = null;
+            IOException failed = failure;
+            if (failed != null) {
+                results.execute(() -> command.result.completeExceptionally(failed));
+                continue;
+            }
+            PaymentResult result = apply(command);
+            results.execute(() -> publish(command, result));
+        }
+        if (failure == null && sequence - snapshotSequence >= snapshotInterval) snapshot();
+    }
+
+    private PaymentResult apply(Command command) {
+        int accountId = command.getAccountId();
+        double balance = balances.get(accountId);
+        if (Double.isNaN(balance)) return PaymentResult.FAILURE;
+        double ammount = command.getAmmount();
+        switch (command.getType()) {
+            case PAYMENT_IN:
+                if (!(ammount >= 0)) return PaymentResult.FAILURE;
+                balances.put(accountId, balance + ammount);
+                command.applied = ammount;
+                return PaymentResult.SUCCESS;
+            case PAYMENT_OUT:
+                if (!(ammount >= 0.01) || balance < ammount) return PaymentResult.FAILURE;
+                balances.put(accountId, balance - ammount);
+                command.applied = ammount;
+                return PaymentResult.SUCCESS;
+            case INTERNAL_PAYMENT:
+                double credit = ammount * command.getRate();
+                int destAccountId = command.getDestAccountId();
+                if (!balances.contains(destAccountId) || !(ammount >= 0.01) || balance < ammount || !(credit >= 0)) {
+                    return PaymentResult.FAILURE;
+                }
+                balances.put(accountId, balance - ammount);
+                balances.put(destAccountId, balances.get(destAccountId) + credit);
+                command.applied = credit;
+                return PaymentResult.SUCCESS;
+            case INTEREST:
+                double interest = balance * command.getRate();
+                if (!(interest >= 0)) return PaymentResult.FAILURE;
+                balances.put(accountId, balance + interest);
+                command.applied = interest;
+                return PaymentResult.SUCCESS;
+            default:
+                return PaymentResult.FAILURE;
+        }
+    }
+
+    private void snapshot() {
+        Snapshot snapshot = new Snapshot(sequence, balances.copy());
+        try {
+            journal.open(sequence + 1);
+        } catch (IOException e) {
+            failure = e;
+            return;
+        }
+        snapshotSequence = sequence;
+        snapshots.execute(() -> {
+            try {
+                persist(snapshot);
+            } catch (IOException | SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void persist(Snapshot snapshot) throws IOException, SQLException {
+        snapshot.write(directory);
+        journal.deleteBefore(snapshot.sequence + 1);
+        List<Account> accounts = new ArrayList<>(snapshot.balances.size());
+        snapshot.balances.forEach((accountId, ammount) -> accounts.add(account(accountId, ammount)));
+        dao.updateAccountStates(accounts);
+    }
+
+    private void publish(Command command, PaymentResult result) {
+        if (history != null) {
+            boolean success = result == PaymentResult.SUCCESS;
+            try {
+                for (Operation operation : operations(command)) history.logOperation(operation, success);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        command.result.complete(result);
+    }
+
+    private static List<Operation> operations(Command command) {
+        Account account = account(command.getAccountId(), 0);
+        switch (command.getType()) {
+            case PAYMENT_IN:
+                return Collections.singletonList(new PaymentIn(command.getUser(), command.getAmmount(), command.getDescription(), account));
+            case PAYMENT_OUT:
+                return Collections.singletonList(new Withdraw(command.getUser(), command.getAmmount(), command.getDescription(), account));
+            case INTERNAL_PAYMENT:
+                Withdraw withdraw = new Withdraw(command.getUser(), command.getAmmount(), command.getDescription(), account);
+                PaymentIn payment = new PaymentIn(command.getUser(), command.getAmmount() * command.getRate(),
+                        command.getDescription(), account(command.getDestAccountId(), 0));
+                withdraw.setRate(command.getRate());
+                payment.setRate(command.getRate());
+                return Arrays.asList(withdraw, payment);
+            default:
+                // as InterestOperator logs it, the payment and the interest
+                return Arrays.asList(new PaymentIn(command.getUser(), command.applied, command.getDescription(), account),
+                        new Interest(command.getUser(), command.applied, command.getDescription(), account));
+        }
+    }
+
+    private static Account account(int accountId, double ammount) {
+        Account account = new Account();
+        account.setId(accountId);
+        account.setAmmount(ammount);
+        return account;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,154 @@
+package biz.engine;
+
+import model.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of commands in sequence order, split into segment files
+ * named after their first sequence. Appends are buffered and written out once
+ * per batch; a segment is dropped when a snapshot covers all of it.
+ */
+class CommandJournal {
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean sync;
+    private FileOutputStream file = null;
+    private DataOutputStream out = null;
+
+    /**
+     * @param sync force every flushed batch to the disk, not only to the OS
+     */
+    CommandJournal(Path directory, boolean sync) {
+        this.directory = directory;
+        this.sync = sync;
+    }
+
+    /**
+     * Starts a new segment for the commands from the given sequence on.
+     */
+    void open(long firstSequence) throws IOException {
+        close();
+        Files.createDirectories(directory);
+        file = new FileOutputStream(directory.resolve(name(firstSequence)).toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+    }
+
+    void append(Command command) throws IOException {
+        String description = command.getDescription() == null ? "" : command.getDescription();
+        out.writeLong(command.sequence);
+        out.writeByte(command.getType().ordinal());
+        out.writeInt(command.getUser() == null ? 0 : command.getUser().getId());
+        out.writeDouble(command.getAmmount());
+        out.writeInt(command.getAccountId());
+        out.writeInt(command.getDestAccountId());
+        out.writeDouble(command.getRate());
+        out.writeUTF(description);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+        if (sync) file.getFD().sync();
+    }
+
+    void close() throws IOException {
+        if (out == null) return;
+        flush();
+        out.close();
+        out = null;
+        file = null;
+    }
+
+    /**
+     * Feeds every command after the given sequence to the consumer, in order. A
+     * segment ends at its first incomplete record, the tail of a crashed write.
+     *
+     * @return sequence of the last command read, or afterSequence
+     */
+    long replay(long afterSequence, Consumer<Command> consumer) throws IOException {
+        long last = afterSequence;
+        for (Path segment : segments()) {
+            try (InputStream stream = Files.newInputStream(segment);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024))) {
+                while (true) {
+                    Command command;
+                    try {
+                        command = read(in);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (command.sequence <= last) continue;
+                    consumer.accept(command);
+                    last = command.sequence;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Deletes the segments holding only commands before the given sequence.
+     */
+    void deleteBefore(long sequence) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequence(segments.get(i + 1)) <= sequence) Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private static Command read(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        CommandType type = CommandType.of(in.readByte());
+        User user = new User();
+        user.setId(in.readInt());
+        double ammount = in.readDouble();
+        int accountId = in.readInt();
+        int destAccountId = in.readInt();
+        double rate = in.readDouble();
+        String description = in.readUTF();
+        Command command = new Command(type, user, ammount, description, accountId, destAccountId, rate);
+        command.sequence = sequence;
+        return command;
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) return Collections.emptyList();
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(CommandJournal::isSegment).forEach(segments::add);
+        }
+        segments.sort((a, b) -> Long.compare(firstSequence(a), firstSequence(b)));
+        return segments;
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static String name(long firstSequence) {
+        return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+    }
+}
@@ -0,0 +1,71 @@
+package biz.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring of commands, the input side of
+ * the {@link CommandEngine}. Works like {@link biz.history.HistoryRingBuffer}:
+ * producers claim a slot with a CAS and mark it published, the engine thread
+ * takes every consecutively published slot in one batch.
+ */
+class CommandRing {
+
+    private final Command[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed = 0;
+
+    /**
+     * @param capacity power of two
+     */
+    CommandRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+        this.mask = capacity - 1;
+        this.slots = new Command[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+    }
+
+    boolean tryPublish(Command command) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - slots.length >= consumed) return false;
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int index = (int) sequence & mask;
+        slots[index] = command;
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    void publish(Command command) {
+        while (!tryPublish(command)) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    /**
+     * Moves the published commands, at most batch.length, into the batch. Only
+     * the engine thread may call this.
+     *
+     * @return number of commands taken
+     */
+    int drain(Command[] batch) {
+        long next = consumed;
+        int count = 0;
+        while (count < batch.length && published.get((int) (next + count) & mask) == next + count) {
+            int index = (int) (next + count) & mask;
+            batch[count++] = slots[index];
+            slots[index] = null;
+        }
+        consumed = next + count;
+        return count;
+    }
+
+    long backlog() {
+        return claimed.get() - consumed;
+    }
+}
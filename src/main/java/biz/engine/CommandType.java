@@ -0,0 +1,18 @@
+package biz.engine;
+
+/**
+ * Account-mutating commands applied by the {@link CommandEngine}.
+ */
+public enum CommandType {
+    PAYMENT_IN,
+    PAYMENT_OUT,
+    INTERNAL_PAYMENT,
+    INTEREST;
+
+    private static final CommandType[] VALUES = values();
+
+    static CommandType of(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) throw new IllegalArgumentException("Unknown command type " + ordinal);
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,98 @@
+package biz.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Balances as of a journal sequence, in a file named after that sequence.
+ * Written to a temporary file and moved in place, so a snapshot file is
+ * always complete.
+ */
+class Snapshot {
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    final long sequence;
+    final BalanceTable balances;
+
+    Snapshot(long sequence, BalanceTable balances) {
+        this.sequence = sequence;
+        this.balances = balances;
+    }
+
+    /**
+     * Writes the snapshot and deletes the older ones.
+     */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+            out.writeLong(sequence);
+            out.writeInt(balances.size());
+            IOException[] failure = {null};
+            balances.forEach((accountId, ammount) -> {
+                if (failure[0] != null) return;
+                try {
+                    out.writeInt(accountId);
+                    out.writeDouble(ammount);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path older : snapshots(directory)) {
+            if (sequence(older) < sequence) Files.deleteIfExists(older);
+        }
+    }
+
+    /**
+     * @return the latest snapshot in the directory or null
+     */
+    static Snapshot load(Path directory) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        if (snapshots.isEmpty()) return null;
+        Path latest = snapshots.get(snapshots.size() - 1);
+        try (InputStream stream = Files.newInputStream(latest);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024))) {
+            long sequence = in.readLong();
+            int size = in.readInt();
+            BalanceTable balances = new BalanceTable(size);
+            for (int i = 0; i < size; i++) balances.put(in.readInt(), in.readDouble());
+            return new Snapshot(sequence, balances);
+        }
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return snapshots;
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).forEach(snapshots::add);
+        }
+        snapshots.sort((a, b) -> Long.compare(sequence(a), sequence(b)));
+        return snapshots;
+    }
+
+    private static long sequence(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
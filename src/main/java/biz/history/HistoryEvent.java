@@ -0,0 +1,35 @@
+package biz.history;
+
+import model.Operation;
+
+/**
+ * Reusable slot of the {@link HistoryRingBuffer}. Sinks must copy what they
+ * need before returning; the slot is cleared and reused afterwards.
+ */
+public class HistoryEvent {
+    private Operation operation;
+    private boolean success;
+    private long sequence;
+
+    void set(Operation operation, boolean success, long sequence) {
+        this.operation = operation;
+        this.success = success;
+        this.sequence = sequence;
+    }
+
+    void clear() {
+        operation = null;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,138 @@
+package biz.history;
+
+import model.Operation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated history events,
+ * after the LMAX Disruptor.
+ * <p>
+ * Producers claim a sequence with a CAS, fill the slot and mark it published.
+ * The consumer drains every consecutively published slot in one batch and hands
+ * them to the sink. Nothing is allocated per event and nothing is locked; a full
+ * ring makes producers wait for the consumer. An event the sink fails on is
+ * counted in {@link #failures()} and skipped.
+ */
+public class HistoryRingBuffer {
+
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    private final HistoryEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int maxBatch;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed = 0;
+    private volatile long failures = 0;
+    private volatile boolean running = false;
+    private Thread consumer = null;
+
+    /**
+     * @param capacity power of two
+     */
+    public HistoryRingBuffer(int capacity, int maxBatch) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+        this.mask = capacity - 1;
+        this.maxBatch = maxBatch;
+        this.slots = new HistoryEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new HistoryEvent();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * @return false when the ring is full
+     */
+    public boolean tryPublish(Operation operation, boolean success) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - slots.length >= consumed) return false;
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int index = (int) sequence & mask;
+        slots[index].set(operation, success, sequence);
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    /**
+     * Publishes, waiting for room when the ring is full.
+     */
+    public void publish(Operation operation, boolean success) {
+        while (!tryPublish(operation, success)) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    /**
+     * Hands every published event, up to the batch limit, to the sink. Only the
+     * consumer thread may call this.
+     *
+     * @return number of events drained
+     */
+    public int drain(HistorySink sink) {
+        long next = consumed;
+        long end = next;
+        while (end - next < maxBatch && published.get((int) end & mask) == end) end++;
+        for (long sequence = next; sequence < end; sequence++) {
+            HistoryEvent event = slots[(int) sequence & mask];
+            try {
+                sink.onEvent(event, sequence == end - 1);
+            } catch (Exception e) {
+                failures++;
+                e.printStackTrace();
+            }
+            event.clear();
+        }
+        consumed = end;
+        return (int) (end - next);
+    }
+
+    /**
+     * @return events published but not yet drained
+     */
+    public long backlog() {
+        return claimed.get() - consumed;
+    }
+
+    /**
+     * @return events the sink failed on, so far
+     */
+    public long failures() {
+        return failures;
+    }
+
+    /**
+     * Starts the consumer thread feeding the sink.
+     */
+    public synchronized void start(HistorySink sink) {
+        if (running) return;
+        running = true;
+        consumer = new Thread(() -> {
+            while (running) {
+                if (drain(sink) == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            while (backlog() > 0) {
+                if (drain(sink) == 0) Thread.onSpinWait();
+            }
+        }, "bank-history");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Stops the consumer after it has drained everything published so far.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join();
+        consumer = null;
+    }
+}
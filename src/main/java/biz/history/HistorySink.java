@@ -0,0 +1,12 @@
+package biz.history;
+
+/**
+ * Receives history events on the ring buffer's consumer thread.
+ */
+public interface HistorySink {
+
+    /**
+     * @param endOfBatch true for the last event of the current drain, e.g. to flush or commit
+     */
+    void onEvent(HistoryEvent event, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,147 @@
+package biz.history;
+
+import model.Operation;
+import model.operations.Payment;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The latest operations of each account, newest first, in a small ring per account.
+ * <p>
+ * Rings are filled as operations are logged. The first read of an account
+ * merges in what the database already holds. Accounts live in striped
+ * access-ordered maps, each capped at its share of the global limit, so the
+ * least recently used accounts are dropped first.
+ */
+public class RecentOperationsIndex {
+
+    public interface Loader {
+        /**
+         * @return the account's latest operations, newest first
+         */
+        List<Operation> load(int accountId, int limit) throws SQLException;
+    }
+
+    private final int perAccount;
+    private final Stripe[] stripes;
+
+    /**
+     * @param perAccount  operations kept per account
+     * @param maxAccounts accounts kept in total
+     */
+    public RecentOperationsIndex(int perAccount, int maxAccounts) {
+        this.perAccount = perAccount;
+        int stripeCount = Math.max(1, Math.min(16, Integer.highestOneBit(maxAccounts)));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) stripes[i] = new Stripe(Math.max(1, maxAccounts / stripeCount));
+    }
+
+    public void append(Operation operation) {
+        if (!(operation instanceof Payment)) return;
+        Payment payment = (Payment) operation;
+        if (payment.getAccount() == null) return;
+        int accountId = payment.getAccount().getId();
+        stripe(accountId).ring(accountId, perAccount).add(operation);
+    }
+
+    /**
+     * @return up to limit latest operations of the account, newest first
+     */
+    public List<Operation> recent(int accountId, int limit, Loader loader) throws SQLException {
+        Ring ring = stripe(accountId).ring(accountId, perAccount);
+        if (!ring.isWarm()) ring.warm(loader.load(accountId, perAccount));
+        return ring.latest(Math.min(limit, perAccount));
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) size += stripe.size();
+        return size;
+    }
+
+    private Stripe stripe(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static class Stripe {
+        private final Map<Integer, Ring> rings;
+
+        Stripe(int capacity) {
+            rings = new LinkedHashMap<Integer, Ring>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Ring> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Ring ring(int accountId, int perAccount) {
+            return rings.computeIfAbsent(accountId, k -> new Ring(perAccount));
+        }
+
+        synchronized int size() {
+            return rings.size();
+        }
+    }
+
+    private static class Ring {
+        private final Operation[] items;
+        private int next = 0;
+        private int size = 0;
+        private volatile boolean warm = false;
+
+        Ring(int capacity) {
+            items = new Operation[capacity];
+        }
+
+        boolean isWarm() {
+            return warm;
+        }
+
+        synchronized void add(Operation operation) {
+            items[next] = operation;
+            next = (next + 1) % items.length;
+            if (size < items.length) size++;
+        }
+
+        /**
+         * Fills in the older operations read from the database; those logged
+         * since the ring was created stay newest.
+         */
+        synchronized void warm(List<Operation> stored) {
+            if (warm) return;
+            List<Operation> logged = latest(size);
+            Set<Integer> ids = new HashSet<>();
+            for (Operation operation : logged) {
+                if (operation.getId() != 0) ids.add(operation.getId());
+            }
+            List<Operation> merged = new ArrayList<>(logged);
+            for (Operation operation : stored) {
+                if (merged.size() == items.length) break;
+                if (!ids.contains(operation.getId())) merged.add(operation);
+            }
+            next = 0;
+            size = 0;
+            Collections.reverse(merged);
+            for (Operation operation : merged) add(operation);
+            warm = true;
+        }
+
+        synchronized List<Operation> latest(int limit) {
+            int count = Math.min(limit, size);
+            List<Operation> result = new ArrayList<>(count);
+            for (int i = 1; i <= count; i++) {
+                result.add(items[(next - i + items.length) % items.length]);
+            }
+            return result;
+        }
+    }
+}
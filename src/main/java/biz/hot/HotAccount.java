@@ -0,0 +1,51 @@
+package biz.hot;
+
+import model.Account;
+
+/**
+ * An account whose balance lives in a {@link ShardedBalance} instead of the
+ * database row, written back by {@link HotAccounts}. The balance is kept in
+ * whole grosze.
+ */
+public class HotAccount extends Account {
+
+    private final ShardedBalance balance;
+
+    HotAccount(Account account, int slots) {
+        setId(account.getId());
+        setOwner(account.getOwner());
+        setCurrency(account.getCurrency());
+        balance = new ShardedBalance(slots, toMinor(account.getAmmount()));
+    }
+
+    @Override
+    public boolean income(double ammount) {
+        if (ammount < 0) return false;
+        balance.credit(toMinor(ammount));
+        return true;
+    }
+
+    @Override
+    public boolean outcome(double ammount) {
+        if (ammount < 0.01) return false;
+        return balance.debit(toMinor(ammount));
+    }
+
+    @Override
+    public double getAmmount() {
+        return balance.balance() / 100.0;
+    }
+
+    @Override
+    public void setAmmount(double ammount) {
+        throw new UnsupportedOperationException("Balance of a hot account changes only by income and outcome");
+    }
+
+    void fold() {
+        balance.fold();
+    }
+
+    private static long toMinor(double ammount) {
+        return Math.round(ammount * 100);
+    }
+}
@@ -0,0 +1,88 @@
+package biz.hot;
+
+import db.dao.DAO;
+import model.Account;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accounts switched to sharded balances. Their rows are not written on every
+ * payment; the balances are folded and written back periodically, on
+ * {@link #flush} and when an account is demoted. Until then the row lags
+ * behind the balance by the payments since the last write.
+ */
+public class HotAccounts {
+
+    private final DAO dao;
+    private final int slots;
+    private final Map<Integer, HotAccount> accounts = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher = null;
+
+    public HotAccounts(DAO dao, int slots) {
+        this.dao = dao;
+        this.slots = slots;
+    }
+
+    /**
+     * @return the account as a hot account, read from the database unless it already is one
+     */
+    public HotAccount promote(int accountId) throws SQLException {
+        HotAccount hot = accounts.get(accountId);
+        if (hot != null) return hot;
+        Account account = dao.findAccountById(accountId);
+        if (account == null) return null;
+        return accounts.computeIfAbsent(accountId, id -> new HotAccount(account, slots));
+    }
+
+    public void demote(int accountId) throws SQLException {
+        HotAccount hot = accounts.remove(accountId);
+        if (hot != null) write(hot);
+    }
+
+    public HotAccount find(int accountId) {
+        return accounts.get(accountId);
+    }
+
+    public void flush() throws SQLException {
+        for (HotAccount hot : accounts.values()) write(hot);
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (flusher != null) return;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hot-accounts");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic writes and demotes every account, writing its balance
+     * one last time. A later stop writes nothing, so it cannot overwrite rows
+     * changed since.
+     */
+    public synchronized void stop() throws SQLException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+        for (Integer accountId : accounts.keySet()) demote(accountId);
+    }
+
+    private void write(HotAccount hot) throws SQLException {
+        hot.fold();
+        dao.updateAccountState(hot);
+    }
+}
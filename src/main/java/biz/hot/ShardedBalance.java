@@ -0,0 +1,80 @@
+package biz.hot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A balance in minor units split across slots, each on its own cache line.
+ * <p>
+ * Credits go to the slot of the calling thread, so concurrent credits do not
+ * contend. A debit takes what it can from its own slot and borrows the rest
+ * from the others; when all slots together cannot cover it, whatever was
+ * taken goes back and the debit fails, so the balance never goes below zero.
+ * The balance is the sum of the slots, exact when nothing is in flight.
+ */
+public class ShardedBalance {
+
+    private static final int STRIDE = 8; // 64 bytes between slots
+
+    private final int slots;
+    private final AtomicLongArray cells;
+
+    public ShardedBalance(int slots, long initial) {
+        this.slots = slots <= 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.cells = new AtomicLongArray((this.slots + 1) * STRIDE);
+        cells.set(cell(0), initial);
+    }
+
+    public void credit(long minorUnits) {
+        cells.addAndGet(cell(home()), minorUnits);
+    }
+
+    public boolean debit(long minorUnits) {
+        int home = home();
+        long remaining = minorUnits;
+        for (int i = 0; i < slots && remaining > 0; i++) {
+            remaining -= take(cell((home + i) & (slots - 1)), remaining);
+        }
+        if (remaining == 0) return true;
+        long taken = minorUnits - remaining;
+        if (taken > 0) cells.addAndGet(cell(home), taken);
+        return false;
+    }
+
+    public long balance() {
+        long sum = 0;
+        for (int i = 0; i < slots; i++) sum += cells.get(cell(i));
+        return sum;
+    }
+
+    /**
+     * Moves every slot into the first one, so later debits borrow less.
+     */
+    public void fold() {
+        for (int i = 1; i < slots; i++) {
+            long value = cells.getAndSet(cell(i), 0);
+            if (value != 0) cells.addAndGet(cell(0), value);
+        }
+    }
+
+    int slots() {
+        return slots;
+    }
+
+    private long take(int cell, long wanted) {
+        while (true) {
+            long current = cells.get(cell);
+            if (current <= 0) return 0;
+            long taken = Math.min(current, wanted);
+            if (cells.compareAndSet(cell, current, current - taken)) return taken;
+        }
+    }
+
+    private int home() {
+        long id = Thread.currentThread().threadId();
+        return (int) (id * 0x9E3779B97F4A7C15L >>> 40) & (slots - 1);
+    }
+
+    private static int cell(int slot) {
+        return (slot + 1) * STRIDE;
+    }
+}
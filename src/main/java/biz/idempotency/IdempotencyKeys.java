@@ -0,0 +1,206 @@
+package biz.idempotency;
+
+import biz.PaymentResult;
+import db.dao.DAO;
+import model.PaymentKey;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Makes payments safe to retry: the first call with a key runs the payment,
+ * later calls with the same key get its result without running it again.
+ * A key reused for a different request is refused.
+ * <p>
+ * The key is recorded in the PaymentKey table as PENDING before the payment
+ * runs and gets its result afterwards. A key left PENDING by a crash is never
+ * run again, as the payment may have been applied; its retries are refused
+ * until the key expires. Results are fronted by a bounded cache
+ * in striped insertion-ordered maps. Every entry lives for the same time, so
+ * the oldest entry of a stripe is always the first to expire and expiry only
+ * ever looks at its head; a retry answered from memory costs one lookup. A
+ * retry that arrives while the first call is still running waits for it.
+ * Only completed payments are recorded; a rejection may be retried.
+ */
+public class IdempotencyKeys {
+
+    public interface Payment {
+        PaymentResult run() throws SQLException;
+    }
+
+    private static final String PENDING = "PENDING";
+
+    private final DAO dao;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+
+    public IdempotencyKeys(DAO dao, int maxEntries, long ttlMillis) {
+        this(dao, maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    public IdempotencyKeys(DAO dao, int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.dao = dao;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        int stripeCount = Math.max(1, Math.min(16, Integer.highestOneBit(maxEntries)));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) stripes[i] = new Stripe(Math.max(1, maxEntries / stripeCount));
+    }
+
+    /**
+     * @param request what the payment does, e.g. its type, account and amount
+     * @throws IllegalArgumentException when the key was used for another request
+     * @throws IllegalStateException when the first payment with the key never finished, so its outcome is unknown
+     */
+    public PaymentResult execute(String key, String request, Payment payment) throws SQLException {
+        long now = clock.getAsLong();
+        Stripe stripe = stripe(key);
+        CompletableFuture<PaymentResult> mine = new CompletableFuture<>();
+        Entry existing;
+        synchronized (stripe) {
+            stripe.expire(now);
+            existing = stripe.entries.get(key);
+            if (existing == null) stripe.entries.put(key, new Entry(request, mine, now + ttlMillis));
+        }
+        if (existing != null) {
+            checkRequest(key, existing.request, request);
+            return await(existing.result);
+        }
+        try {
+            PaymentResult result = run(key, request, payment, now);
+            if (!(result instanceof PaymentResult.Completed)) forget(stripe, key);
+            mine.complete(result);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            forget(stripe, key);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private PaymentResult run(String key, String request, Payment payment, long now) throws SQLException {
+        PaymentKey stored = dao.findPaymentKey(key);
+        if (stored != null) {
+            checkRequest(key, stored.getRequest(), request);
+            if (PENDING.equals(stored.getResult())) {
+                throw new IllegalStateException("Payment with key " + key + " did not finish, its outcome is unknown");
+            }
+            return parse(stored.getResult());
+        }
+        dao.insertPaymentKey(key, request, PENDING, now);
+        PaymentResult result;
+        try {
+            result = payment.run();
+        } catch (SQLException | RuntimeException e) {
+            release(key, e);
+            throw e;
+        }
+        if (result instanceof PaymentResult.Completed) dao.updatePaymentKey(key, format(result));
+        else dao.deletePaymentKey(key);
+        return result;
+    }
+
+    // the payment failed before completing, so it may be tried again
+    private void release(String key, Exception cause) {
+        try {
+            dao.deletePaymentKey(key);
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void checkRequest(String key, String expected, String request) {
+        if (!expected.equals(request)) {
+            throw new IllegalArgumentException("Key " + key + " was already used for another request");
+        }
+    }
+
+    /**
+     * Deletes recorded keys older than the time to live.
+     *
+     * @return number of keys deleted
+     */
+    public int purge() throws SQLException {
+        return dao.deletePaymentKeys(clock.getAsLong() - ttlMillis);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private static PaymentResult await(CompletableFuture<PaymentResult> result) throws SQLException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the original payment", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("The original payment failed", e.getCause());
+        }
+    }
+
+    private static String format(PaymentResult result) {
+        return ((PaymentResult.Completed) result).success() ? "SUCCESS" : "FAILURE";
+    }
+
+    private static PaymentResult parse(String stored) {
+        return PaymentResult.of("SUCCESS".equals(stored));
+    }
+
+    private static void forget(Stripe stripe, String key) {
+        synchronized (stripe) {
+            stripe.entries.remove(key);
+        }
+    }
+
+    private Stripe stripe(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static class Entry {
+        final String request;
+        final CompletableFuture<PaymentResult> result;
+        final long expiresAt;
+
+        Entry(String request, CompletableFuture<PaymentResult> result, long expiresAt) {
+            this.request = request;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Stripe {
+        final Map<String, Entry> entries;
+
+        Stripe(int capacity) {
+            entries = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > capacity && eldest.getValue().result.isDone();
+                }
+            };
+        }
+
+        void expire(long now) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.expiresAt > now || !entry.result.isDone()) return;
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package biz.password;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and verifies passwords on a bounded pool of its own.
+ * <p>
+ * New hashes come from the current hasher; legacy hashers only verify, and a
+ * password that matches a legacy or cheaper hash gets a fresh hash to store.
+ * The pool has one thread per core and a bounded queue, so a burst of logins
+ * is rejected instead of taking CPU from everything else.
+ */
+public class PasswordEngine {
+
+    private static final int QUEUE_PER_THREAD = 64;
+    private static volatile ExecutorService shared;
+
+    private final PasswordHasher current;
+    private final PasswordHasher[] legacy;
+    private final ExecutorService executor;
+
+    public PasswordEngine(PasswordHasher current, ExecutorService executor, PasswordHasher... legacy) {
+        this.current = current;
+        this.executor = executor;
+        this.legacy = legacy;
+    }
+
+    /**
+     * PBKDF2 with the given iteration count, accepting old SHA-256 hashes, on the shared pool.
+     */
+    public static PasswordEngine withCost(int iterations) {
+        return new PasswordEngine(new Pbkdf2PasswordHasher(iterations), sharedExecutor(), new Sha256PasswordHasher());
+    }
+
+    public static PasswordEngine defaultEngine() {
+        return withCost(Pbkdf2PasswordHasher.DEFAULT_ITERATIONS);
+    }
+
+    public static ExecutorService newExecutor(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ExecutorService sharedExecutor() {
+        if (shared == null) {
+            synchronized (PasswordEngine.class) {
+                if (shared == null) {
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    shared = newExecutor(threads, threads * QUEUE_PER_THREAD);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Hashes a new password and clears the array.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException when the pool is saturated
+     */
+    public String hash(char[] password) {
+        return await(executor.submit(() -> {
+            try {
+                return current.hash(password);
+            } finally {
+                Arrays.fill(password, 'a');
+            }
+        }));
+    }
+
+    /**
+     * Checks a password against the stored hash and clears the array.
+     *
+     * @return null when the password does not match, the stored hash when it is
+     * up to date, otherwise a new hash that should replace it
+     * @throws java.util.concurrent.RejectedExecutionException when the pool is saturated
+     */
+    public String verify(char[] password, String stored) {
+        return await(executor.submit(() -> {
+            try {
+                PasswordHasher hasher = hasherFor(stored);
+                if (hasher == null || !hasher.verify(password, stored)) return null;
+                if (hasher != current || current.needsRehash(stored)) return current.hash(password);
+                return stored;
+            } finally {
+                Arrays.fill(password, 'a');
+            }
+        }));
+    }
+
+    private PasswordHasher hasherFor(String stored) {
+        if (current.accepts(stored)) return current;
+        for (PasswordHasher hasher : legacy) {
+            if (hasher.accepts(stored)) return hasher;
+        }
+        return null;
+    }
+
+    private static String await(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
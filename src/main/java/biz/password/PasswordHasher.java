@@ -0,0 +1,21 @@
+package biz.password;
+
+/**
+ * One way of turning a password into the string kept in the Password table.
+ */
+public interface PasswordHasher {
+
+    String hash(char[] password);
+
+    boolean verify(char[] password, String stored);
+
+    /**
+     * @return true when the stored string was written by this hasher
+     */
+    boolean accepts(String stored);
+
+    /**
+     * @return true when the stored hash should be replaced at the next successful login
+     */
+    boolean needsRehash(String stored);
+}
@@ -0,0 +1,79 @@
+package biz.password;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 with a random salt per user. Stored as
+ * {@code pbkdf2$<iterations>$<salt>$<hash>} so the cost can be raised later.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    static final String PREFIX = "pbkdf2$";
+    public static final int DEFAULT_ITERATIONS = 210_000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public Pbkdf2PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Iterations must be positive");
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(char[] password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + '$' + encoder.encodeToString(salt) + '$'
+                + encoder.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(char[] password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(parts[3]);
+        byte[] actual = derive(password, decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    @Override
+    public boolean accepts(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean needsRehash(String stored) {
+        int end = stored.indexOf('$', PREFIX.length());
+        return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
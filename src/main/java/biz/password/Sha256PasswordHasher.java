@@ -0,0 +1,51 @@
+package biz.password;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The original unsalted SHA-256 hashes. Kept only to verify passwords stored
+ * before PBKDF2, which are then rehashed.
+ */
+public class Sha256PasswordHasher implements PasswordHasher {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    @Override
+    public String hash(char[] password) {
+        byte[] bpass = null;
+        try {
+            // the whole encoder buffer is hashed, slack included, as the stored hashes were made that way
+            bpass = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password)).array();
+            return Base64.getEncoder().encodeToString(DIGEST.get().digest(bpass));
+        } finally {
+            if (bpass != null) Arrays.fill(bpass, (byte) 0x0);
+        }
+    }
+
+    @Override
+    public boolean verify(char[] password, String stored) {
+        return MessageDigest.isEqual(hash(password).getBytes(StandardCharsets.US_ASCII),
+                stored.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public boolean accepts(String stored) {
+        return !stored.startsWith(Pbkdf2PasswordHasher.PREFIX);
+    }
+
+    @Override
+    public boolean needsRehash(String stored) {
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package biz.permission;
+
+import model.Account;
+import model.Operation;
+import model.Permission;
+import model.operations.OperationType;
+import model.operations.Withdraw;
+
+import java.util.List;
+
+/**
+ * Role permissions compiled into two bitsets per role, indexed by role id with
+ * one bit per {@link OperationType#getId()}: operations always allowed and
+ * operations allowed only to their owner. Ownership is checked by a predicate
+ * chosen per operation type at compile time.
+ * <p>
+ * Instances are immutable; reloading compiles a new one.
+ */
+public class PermissionMatrix {
+
+    private static final OperationType[] TYPES = OperationType.values();
+
+    private final long[] allowed;
+    private final long[] ownerOnly;
+    private final Ownership[] ownership;
+
+    private PermissionMatrix(long[] allowed, long[] ownerOnly, Ownership[] ownership) {
+        this.allowed = allowed;
+        this.ownerOnly = ownerOnly;
+        this.ownership = ownership;
+    }
+
+    public static PermissionMatrix compile(List<Permission> permissions) {
+        int roles = 0;
+        for (Permission p : permissions) {
+            if (p.getRoleId() < 0) throw new IllegalArgumentException("Negative role id " + p.getRoleId());
+            roles = Math.max(roles, p.getRoleId() + 1);
+        }
+        long[] allowed = new long[roles];
+        long[] ownerOnly = new long[roles];
+        for (Permission p : permissions) {
+            long bit = 1L << p.getOperationType().getId();
+            if (p.isOwnerOnly()) ownerOnly[p.getRoleId()] |= bit;
+            else allowed[p.getRoleId()] |= bit;
+        }
+        for (int role = 0; role < roles; role++) ownerOnly[role] &= ~allowed[role];
+        int types = 0;
+        for (OperationType type : TYPES) types = Math.max(types, type.getId() + 1);
+        Ownership[] ownership = new Ownership[types];
+        for (OperationType type : TYPES) ownership[type.getId()] = ownershipOf(type);
+        return new PermissionMatrix(allowed, ownerOnly, ownership);
+    }
+
+    public boolean allows(Operation operation, int userId, int roleId) {
+        if (roleId < 0 || roleId >= allowed.length) return false;
+        int type = operation.getType().getId();
+        long bit = 1L << type;
+        if ((allowed[roleId] & bit) != 0) return true;
+        return (ownerOnly[roleId] & bit) != 0 && ownership[type].owns(operation, userId);
+    }
+
+    private static Ownership ownershipOf(OperationType type) {
+        if (type == OperationType.WITHDRAW) {
+            // the account must belong to the caller, not just the operation
+            return (operation, userId) -> {
+                Account account = ((Withdraw) operation).getAccount();
+                return account != null && account.getOwner() != null && account.getOwner().getId() == userId
+                        && operation.getUser().getId() == userId;
+            };
+        }
+        return (operation, userId) -> operation.getUser() != null && operation.getUser().getId() == userId;
+    }
+
+    private interface Ownership {
+        boolean owns(Operation operation, int userId);
+    }
+}
@@ -0,0 +1,108 @@
+package biz.reconcile;
+
+import java.util.Arrays;
+
+/**
+ * Sum of postings per account id, kept in open-addressed primitive arrays so
+ * that adding a posting allocates nothing. Not thread-safe.
+ */
+class AccountDeltas {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private double[] sums;
+    private long[] counts;
+    private boolean[] seen;
+    private int size;
+
+    AccountDeltas() {
+        this(1024);
+    }
+
+    AccountDeltas(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    void add(int accountId, double delta) {
+        int slot = slot(accountId);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = accountId;
+            if (++size * 2 > keys.length) {
+                grow();
+                slot = slot(accountId);
+            }
+        }
+        sums[slot] += delta;
+        counts[slot]++;
+    }
+
+    /**
+     * Marks the account as matched against a balance.
+     *
+     * @return slot of the account or -1 when it had no postings
+     */
+    int visit(int accountId) {
+        int slot = slot(accountId);
+        if (keys[slot] == EMPTY) return -1;
+        seen[slot] = true;
+        return slot;
+    }
+
+    double sum(int slot) {
+        return sums[slot];
+    }
+
+    long count(int slot) {
+        return counts[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every account that has postings but was never visited.
+     */
+    void forEachUnvisited(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && !seen[slot]) visitor.accept(keys[slot], sums[slot], counts[slot]);
+        }
+    }
+
+    interface Visitor {
+        void accept(int accountId, double sum, long count);
+    }
+
+    private int slot(int accountId) {
+        int mask = keys.length - 1;
+        int slot = (accountId * 0x9E3779B9 >>> 16 ^ accountId * 0x9E3779B9) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != accountId) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldSums = sums;
+        long[] oldCounts = counts;
+        boolean[] oldSeen = seen;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            sums[slot] = oldSums[i];
+            counts[slot] = oldCounts[i];
+            seen[slot] = oldSeen[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        sums = new double[capacity];
+        counts = new long[capacity];
+        seen = new boolean[capacity];
+    }
+}
@@ -0,0 +1,51 @@
+package biz.reconcile;
+
+/**
+ * An account whose balance differs from the sum of its logged operations.
+ */
+public class Discrepancy {
+    private final int accountId;
+    private final double balance;
+    private final double expected;
+    private final long operations;
+
+    Discrepancy(int accountId, double balance, double expected, long operations) {
+        this.accountId = accountId;
+        this.balance = balance;
+        this.expected = expected;
+        this.operations = operations;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return the stored balance, NaN when the operations point at a missing account
+     */
+    public double getBalance() {
+        return balance;
+    }
+
+    public double getExpected() {
+        return expected;
+    }
+
+    public double getDifference() {
+        return Double.isNaN(balance) ? -expected : balance - expected;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public boolean isAccountMissing() {
+        return Double.isNaN(balance);
+    }
+
+    @Override
+    public String toString() {
+        return "account " + accountId + ": balance " + balance + ", operations sum to " + expected
+                + " (" + operations + " operations)";
+    }
+}
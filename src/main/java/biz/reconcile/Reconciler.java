@@ -0,0 +1,128 @@
+package biz.reconcile;
+
+import db.dao.DAO;
+import model.operations.OperationType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Checks every account balance against the sum of its successful operations.
+ * <p>
+ * Postings are read in one pass and scattered by account id into partitions.
+ * Each partition owns a primitive map of sums and receives its postings in
+ * fixed-size chunks, which are added on a fork-join pool one chunk at a time
+ * per partition, so no map is ever shared. Only a bounded number of chunks is
+ * in flight, so memory grows with the number of accounts and not with history.
+ * Balances are then streamed and compared with the sums.
+ * <p>
+ * Only payments in and withdrawals move a balance: {@link biz.InterestOperator}
+ * credits interest as a payment in and logs the interest row next to it.
+ */
+public class Reconciler {
+
+    /** Half a grosz, below which a difference is rounding. */
+    public static final double TOLERANCE = 0.005;
+
+    private final DAO dao;
+    private final ForkJoinPool pool;
+    private final int partitions;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    public Reconciler(DAO dao) {
+        this(dao, ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism(), 8192);
+    }
+
+    public Reconciler(DAO dao, ForkJoinPool pool, int partitions, int chunkSize) {
+        this.dao = dao;
+        this.pool = pool;
+        this.partitions = Math.max(1, partitions);
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = this.partitions * 2;
+    }
+
+    public ReconciliationReport reconcile() throws SQLException {
+        Semaphore inFlight = new Semaphore(maxChunksInFlight);
+        Partition[] parts = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) parts[i] = new Partition();
+        long[] postings = {0};
+
+        dao.scanPostings((accountId, type, ammount) -> {
+            double sign = sign(type);
+            if (sign == 0) return;
+            postings[0]++;
+            Partition part = parts[Math.floorMod(accountId, partitions)];
+            part.add(accountId, sign * ammount);
+            if (part.size == chunkSize) part.submit(inFlight);
+        });
+        for (Partition part : parts) part.submit(inFlight);
+        for (Partition part : parts) part.tail.join();
+
+        List<Discrepancy> discrepancies = new ArrayList<>();
+        long[] accounts = {0};
+        dao.scanBalances((accountId, balance) -> {
+            accounts[0]++;
+            AccountDeltas deltas = parts[Math.floorMod(accountId, partitions)].deltas;
+            int slot = deltas.visit(accountId);
+            double expected = slot < 0 ? 0 : deltas.sum(slot);
+            if (Math.abs(balance - expected) > TOLERANCE) {
+                discrepancies.add(new Discrepancy(accountId, balance, expected, slot < 0 ? 0 : deltas.count(slot)));
+            }
+        });
+        for (Partition part : parts) {
+            part.deltas.forEachUnvisited((accountId, sum, count) ->
+                    discrepancies.add(new Discrepancy(accountId, Double.NaN, sum, count)));
+        }
+        discrepancies.sort(Comparator.comparingInt(Discrepancy::getAccountId));
+        return new ReconciliationReport(accounts[0], postings[0], discrepancies);
+    }
+
+    /**
+     * @return how an operation of the type moves the balance: 1, -1 or 0
+     */
+    public static double sign(OperationType type) {
+        switch (type) {
+            case PAYMENT_IN: return 1;
+            case WITHDRAW: return -1;
+            default: return 0;
+        }
+    }
+
+    private class Partition {
+        final AccountDeltas deltas = new AccountDeltas();
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        int[] accounts = new int[chunkSize];
+        double[] amounts = new double[chunkSize];
+        int size;
+
+        void add(int accountId, double ammount) {
+            accounts[size] = accountId;
+            amounts[size] = ammount;
+            size++;
+        }
+
+        void submit(Semaphore inFlight) {
+            if (size == 0) return;
+            int[] chunkAccounts = accounts;
+            double[] chunkAmounts = amounts;
+            int count = size;
+            inFlight.acquireUninterruptibly();
+            tail = tail.thenRunAsync(() -> {
+                try {
+                    for (int i = 0; i < count; i++) deltas.add(chunkAccounts[i], chunkAmounts[i]);
+                } finally {
+                    inFlight.release();
+                }
+            }, pool);
+            accounts = new int[chunkSize];
+            amounts = new double[chunkSize];
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package biz.reconcile;
+
+import java.util.List;
+
+public class ReconciliationReport {
+    private final long accounts;
+    private final long postings;
+    private final List<Discrepancy> discrepancies;
+
+    ReconciliationReport(long accounts, long postings, List<Discrepancy> discrepancies) {
+        this.accounts = accounts;
+        this.postings = postings;
+        this.discrepancies = discrepancies;
+    }
+
+    public boolean isBalanced() {
+        return discrepancies.isEmpty();
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public long getPostings() {
+        return postings;
+    }
+
+    /**
+     * @return discrepancies ordered by account id
+     */
+    public List<Discrepancy> getDiscrepancies() {
+        return discrepancies;
+    }
+}
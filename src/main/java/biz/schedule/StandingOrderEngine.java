@@ -0,0 +1,172 @@
+package biz.schedule;
+
+import biz.AccountManager;
+import biz.PaymentResult;
+import biz.timer.TimingWheel;
+import db.dao.DAO;
+import model.StandingOrder;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs standing orders and future-dated transfers from the StandingOrder table.
+ * <p>
+ * Active orders are kept in memory and each is scheduled on a timing wheel
+ * for its next run, so a tick only touches the orders that are due. All
+ * orders due in a tick are executed together, ordered by source account, and
+ * their new next runs are written back in one batch. An order that was due
+ * while the engine was down fires on the first tick; a recurring one then
+ * runs every missed occurrence, one per tick, until it catches up. A transfer
+ * that is declined still uses up its occurrence; one that fails on the
+ * database is retried on the next tick.
+ * <p>
+ * Each run is claimed in the PaymentKey table before its transfer and the
+ * claim is dropped once the new next run is written. A claim left over by a
+ * crash marks the occurrence as used, so it is never paid twice, at the cost
+ * of skipping it when the crash came before the transfer.
+ */
+public class StandingOrderEngine {
+
+    private static final Comparator<StandingOrder> BY_SOURCE =
+            Comparator.comparingInt(StandingOrder::getSourceAccountId).thenComparingLong(StandingOrder::getNextRun);
+
+    private final AccountManager accountManager;
+    private final DAO dao;
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final TimingWheel<StandingOrder> wheel;
+    private final Map<Integer, StandingOrder> orders = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private ScheduledExecutorService ticker = null;
+
+    public StandingOrderEngine(AccountManager accountManager, DAO dao) {
+        this(accountManager, dao, 1000, System::currentTimeMillis);
+    }
+
+    public StandingOrderEngine(AccountManager accountManager, DAO dao, long tickMillis, LongSupplier clock) {
+        this.accountManager = accountManager;
+        this.dao = dao;
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(tickMillis, 5, clock.getAsLong());
+    }
+
+    /**
+     * Schedules every active order in the table.
+     */
+    public void load() throws SQLException {
+        for (StandingOrder order : dao.findActiveStandingOrders()) {
+            if (orders.putIfAbsent(order.getId(), order) == null) wheel.schedule(order, order.getNextRun());
+        }
+    }
+
+    public StandingOrder add(StandingOrder order) throws SQLException {
+        dao.createStandingOrder(order);
+        orders.put(order.getId(), order);
+        wheel.schedule(order, order.getNextRun());
+        return order;
+    }
+
+    public synchronized boolean cancel(int orderId) throws SQLException {
+        StandingOrder order = orders.remove(orderId);
+        if (order == null) return false;
+        order.setActive(false);
+        dao.updateStandingOrders(List.of(order));
+        return true;
+    }
+
+    /**
+     * Executes every order that is due.
+     *
+     * @return number of transfers attempted
+     */
+    public synchronized int tick() throws SQLException {
+        long now = clock.getAsLong();
+        List<StandingOrder> due = new ArrayList<>();
+        wheel.advance(now, order -> {
+            if (orders.get(order.getId()) == order) due.add(order);
+        });
+        if (due.isEmpty()) return 0;
+        due.sort(BY_SOURCE);
+        List<StandingOrder> changed = new ArrayList<>(due.size());
+        List<String> claims = new ArrayList<>(due.size());
+        for (StandingOrder order : due) {
+            String claim = claim(order);
+            if (dao.findPaymentKey(claim) == null) {
+                dao.insertPaymentKey(claim, "", "PENDING", now);
+                PaymentResult result;
+                try {
+                    result = accountManager.tryInternalPayment(order.getUser(), order.getAmmount(),
+                            order.getDescription(), order.getSourceAccountId(), order.getDestAccountId());
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    dao.deletePaymentKey(claim);
+                    wheel.schedule(order, now + tickMillis);
+                    continue;
+                }
+                if (result == PaymentResult.SUCCESS) executed.incrementAndGet();
+                else declined.incrementAndGet();
+            }
+            claims.add(claim);
+            if (order.getIntervalMillis() > 0) {
+                order.setNextRun(order.getNextRun() + order.getIntervalMillis());
+                wheel.schedule(order, order.getNextRun());
+            } else {
+                order.setActive(false);
+                orders.remove(order.getId(), order);
+            }
+            changed.add(order);
+        }
+        dao.updateStandingOrders(changed);
+        for (String claim : claims) dao.deletePaymentKey(claim);
+        return due.size();
+    }
+
+    private static String claim(StandingOrder order) {
+        return "order:" + order.getId() + ":" + order.getNextRun();
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getDeclined() {
+        return declined.get();
+    }
+
+    public synchronized void start() {
+        if (ticker != null) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "standing-orders");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) ticker.shutdownNow();
+        ticker = null;
+    }
+}
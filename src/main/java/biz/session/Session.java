@@ -0,0 +1,41 @@
+package biz.session;
+
+import model.User;
+
+public class Session {
+    private final String token;
+    private final User user;
+    private final long createdAt;
+    private volatile long lastAccess;
+
+    Session(String token, User user, long createdAt) {
+        this.token = token;
+        this.user = user;
+        this.createdAt = createdAt;
+        this.lastAccess = createdAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch(long now) {
+        lastAccess = now;
+    }
+
+    long deadline(long idleTimeout, long absoluteTimeout) {
+        return Math.min(lastAccess + idleTimeout, createdAt + absoluteTimeout);
+    }
+}
@@ -0,0 +1,141 @@
+package biz.session;
+
+import biz.timer.TimingWheel;
+import model.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Logged-in sessions keyed by opaque random tokens.
+ * <p>
+ * Sessions live in a sharded map and expire after an idle period or an absolute
+ * lifetime. Expiry is driven by one timing wheel: a session is scheduled once for
+ * its current deadline and, if it was used in the meantime, simply rescheduled when
+ * that deadline comes, so activity never touches the wheel.
+ */
+public class SessionRegistry {
+
+    private static final int TOKEN_BYTES = 24;
+
+    private final ConcurrentHashMap<String, Session>[] shards;
+    private final TimingWheel<Session> wheel;
+    private final long idleTimeout;
+    private final long absoluteTimeout;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private ScheduledExecutorService ticker = null;
+    private volatile Consumer<Session> expiryListener = session -> {};
+
+    public SessionRegistry() {
+        this(TimeUnit.MINUTES.toMillis(15), TimeUnit.HOURS.toMillis(8), 16, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SessionRegistry(long idleTimeoutMillis, long absoluteTimeoutMillis, int shardCount, LongSupplier clock) {
+        if (Integer.bitCount(shardCount) != 1) throw new IllegalArgumentException("Shard count must be a power of two");
+        this.idleTimeout = idleTimeoutMillis;
+        this.absoluteTimeout = absoluteTimeoutMillis;
+        this.clock = clock;
+        this.shards = new ConcurrentHashMap[shardCount];
+        for (int i = 0; i < shardCount; i++) shards[i] = new ConcurrentHashMap<>();
+        this.wheel = new TimingWheel<>(1000, 4, clock.getAsLong());
+    }
+
+    public String open(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = encoder.encodeToString(bytes);
+        long now = clock.getAsLong();
+        Session session = new Session(token, user, now);
+        shard(token).put(token, session);
+        wheel.schedule(session, session.deadline(idleTimeout, absoluteTimeout));
+        return token;
+    }
+
+    /**
+     * @return the session's user, or null when the token is unknown or expired
+     */
+    public User find(String token) {
+        if (token == null) return null;
+        ConcurrentHashMap<String, Session> shard = shard(token);
+        Session session = shard.get(token);
+        if (session == null) return null;
+        long now = clock.getAsLong();
+        if (now >= session.deadline(idleTimeout, absoluteTimeout)) {
+            if (shard.remove(token, session)) expiryListener.accept(session);
+            return null;
+        }
+        session.touch(now);
+        return session.getUser();
+    }
+
+    public Session close(String token) {
+        if (token == null) return null;
+        return shard(token).remove(token);
+    }
+
+    /**
+     * Drops the sessions whose deadline has passed.
+     *
+     * @return number of sessions removed
+     */
+    public synchronized int expire() {
+        long now = clock.getAsLong();
+        int[] removed = {0};
+        wheel.advance(now, session -> {
+            ConcurrentHashMap<String, Session> shard = shard(session.getToken());
+            if (shard.get(session.getToken()) != session) return;
+            long deadline = session.deadline(idleTimeout, absoluteTimeout);
+            if (deadline <= now) {
+                if (shard.remove(session.getToken(), session)) {
+                    removed[0]++;
+                    expiryListener.accept(session);
+                }
+            } else {
+                wheel.schedule(session, deadline);
+            }
+        });
+        return removed[0];
+    }
+
+    /**
+     * Called with every session that expires, not with the closed ones.
+     */
+    public void onExpiry(Consumer<Session> listener) {
+        this.expiryListener = listener;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, Session> shard : shards) size += shard.size();
+        return size;
+    }
+
+    public synchronized void start() {
+        if (ticker != null) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::expire, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) ticker.shutdownNow();
+        ticker = null;
+    }
+
+    private ConcurrentHashMap<String, Session> shard(String token) {
+        int h = token.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+}
@@ -0,0 +1,52 @@
+package biz.session;
+
+import model.Role;
+import model.User;
+
+/**
+ * What a verified signed token says about its holder.
+ */
+public class TokenClaims {
+    private final int userId;
+    private final int roleId;
+    private final boolean admin;
+    private final long expiresAt;
+
+    public TokenClaims(int userId, int roleId, boolean admin, long expiresAt) {
+        this.userId = userId;
+        this.roleId = roleId;
+        this.admin = admin;
+        this.expiresAt = expiresAt;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getRoleId() {
+        return roleId;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    /**
+     * @return expiry in epoch milliseconds
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * User reference for operations and history, without a database lookup.
+     */
+    public User toUser() {
+        Role role = new Role();
+        role.setId(roleId);
+        User user = new User();
+        user.setId(userId);
+        user.setRole(role);
+        return user;
+    }
+}
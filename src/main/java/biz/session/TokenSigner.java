@@ -0,0 +1,137 @@
+package biz.session;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Issues and verifies compact HMAC-SHA256 signed tokens carrying user id, role id
+ * and expiry. Verification needs only the signing keys held in memory.
+ * <p>
+ * After {@link #rotate} the previous key keeps verifying tokens for the rotation
+ * window, so tokens issued just before a rollover stay valid.
+ */
+public class TokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD = 1 + 4 + 4 + 1 + 8;
+    private static final int MAC_BYTES = 16;
+    private static final int ADMIN = 1;
+
+    private final long ttl;
+    private final long rotationWindow;
+    private final LongSupplier clock;
+    // read without locking by verify, so keys are published through the array
+    private final AtomicReferenceArray<Key> keys = new AtomicReferenceArray<>(256);
+    private volatile Key current;
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    public TokenSigner(long ttlMillis, long rotationWindowMillis) {
+        this(randomSecret(), ttlMillis, rotationWindowMillis, System::currentTimeMillis);
+    }
+
+    public TokenSigner(byte[] secret, long ttlMillis, long rotationWindowMillis, LongSupplier clock) {
+        this.ttl = ttlMillis;
+        this.rotationWindow = rotationWindowMillis;
+        this.clock = clock;
+        install(new Key(0, secret));
+    }
+
+    public String issue(int userId, int roleId, boolean admin) {
+        Key key = current;
+        ByteBuffer buffer = ByteBuffer.allocate(PAYLOAD + MAC_BYTES);
+        buffer.put((byte) key.id)
+                .putInt(userId)
+                .putInt(roleId)
+                .put((byte) (admin ? ADMIN : 0))
+                .putLong(clock.getAsLong() + ttl);
+        byte[] token = buffer.array();
+        System.arraycopy(key.sign(token), 0, token, PAYLOAD, MAC_BYTES);
+        return encoder.encodeToString(token);
+    }
+
+    /**
+     * @return the claims of a well-signed, unexpired token, otherwise null
+     */
+    public TokenClaims verify(String token) {
+        if (token == null) return null;
+        byte[] bytes;
+        try {
+            bytes = decoder.decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != PAYLOAD + MAC_BYTES) return null;
+        Key key = keys.get(bytes[0] & 0xff);
+        long now = clock.getAsLong();
+        if (key == null || (key.retiredAt != 0 && now > key.retiredAt + rotationWindow)) return null;
+        byte[] expected = key.sign(bytes);
+        int diff = 0;
+        for (int i = 0; i < MAC_BYTES; i++) diff |= expected[i] ^ bytes[PAYLOAD + i]; // constant time
+        if (diff != 0) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, PAYLOAD - 1);
+        int userId = buffer.getInt();
+        int roleId = buffer.getInt();
+        boolean admin = (buffer.get() & ADMIN) != 0;
+        long expiresAt = buffer.getLong();
+        if (now >= expiresAt) return null;
+        return new TokenClaims(userId, roleId, admin, expiresAt);
+    }
+
+    public void rotate() {
+        rotate(randomSecret());
+    }
+
+    /**
+     * Starts signing with a new key; the current one only verifies until the window ends.
+     */
+    public synchronized void rotate(byte[] secret) {
+        Key old = current;
+        old.retiredAt = clock.getAsLong();
+        install(new Key((old.id + 1) & 0xff, secret));
+    }
+
+    private synchronized void install(Key key) {
+        keys.set(key.id, key);
+        current = key;
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private static class Key {
+        final int id;
+        final SecretKeySpec spec;
+        final ThreadLocal<Mac> mac;
+        volatile long retiredAt = 0;
+
+        Key(int id, byte[] secret) {
+            this.id = id;
+            this.spec = new SecretKeySpec(secret, ALGORITHM);
+            this.mac = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac m = Mac.getInstance(ALGORITHM);
+                    m.init(spec);
+                    return m;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(ALGORITHM + " is not available", e);
+                }
+            });
+        }
+
+        byte[] sign(byte[] token) {
+            Mac m = mac.get();
+            m.update(token, 0, PAYLOAD);
+            return m.doFinal();
+        }
+    }
+}
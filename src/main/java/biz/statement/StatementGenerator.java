@@ -0,0 +1,148 @@
+package biz.statement;
+
+import biz.reconcile.Reconciler;
+import db.dao.DAO;
+import model.operations.OperationType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Builds monthly statements from operation history in one ordered pass.
+ * <p>
+ * The accounts are split into id ranges, each read on its own by account and
+ * then in order of logging. While a range is read, the running balance of the
+ * current account is carried forward: operations before the month make up the
+ * opening balance, operations within it are written out as they arrive and
+ * the closing balance follows once the next account starts. Only the current
+ * account is held in memory, whatever the number of accounts.
+ * <p>
+ * Balances move as in {@link Reconciler}, so a statement's closing balance is
+ * the balance the reconciliation expects at the end of the month.
+ */
+public class StatementGenerator {
+
+    private final DAO dao;
+    private final ZoneId zone;
+    private final ForkJoinPool pool;
+    private final int partitions;
+
+    public StatementGenerator(DAO dao) {
+        this(dao, ZoneId.systemDefault(), ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism());
+    }
+
+    public StatementGenerator(DAO dao, ZoneId zone, ForkJoinPool pool, int partitions) {
+        this.dao = dao;
+        this.zone = zone;
+        this.pool = pool;
+        this.partitions = Math.max(1, partitions);
+    }
+
+    /**
+     * Writes the statements of every account range to the writer made for it.
+     *
+     * @param writers writer for the given range, from 0 to partitions - 1
+     * @return number of statements written
+     */
+    public int generate(YearMonth month, IntFunction<StatementWriter> writers) throws SQLException, IOException {
+        long start = month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        int maxAccountId = dao.findMaxAccountId();
+        int rangeSize = Math.max(1, (maxAccountId + partitions - 1) / partitions);
+        List<Future<Integer>> ranges = new ArrayList<>();
+        for (int i = 0; i < partitions && i * rangeSize < maxAccountId; i++) {
+            int from = i * rangeSize + 1;
+            int to = Math.min(maxAccountId, (i + 1) * rangeSize);
+            StatementWriter writer = writers.apply(i);
+            ranges.add(pool.submit(() -> generate(from, to, new Pass(month, start, end, writer))));
+        }
+        int statements = 0;
+        try {
+            for (Future<Integer> range : ranges) statements += range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing statements", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw new IllegalStateException(cause);
+        }
+        return statements;
+    }
+
+    private int generate(int fromAccountId, int toAccountId, Pass pass) throws SQLException {
+        dao.scanStatementRows(fromAccountId, toAccountId, pass);
+        pass.finish();
+        return pass.statements;
+    }
+
+    private static class Pass implements DAO.StatementRowHandler {
+        final YearMonth month;
+        final long start;
+        final long end;
+        final StatementWriter writer;
+        int account = -1;
+        double balance;
+        boolean seen;
+        boolean opened;
+        int statements;
+
+        Pass(YearMonth month, long start, long end, StatementWriter writer) {
+            this.month = month;
+            this.start = start;
+            this.end = end;
+            this.writer = writer;
+        }
+
+        @Override
+        public void accept(int accountId, OperationType type, double ammount, String description, long dateMillis) {
+            double sign = Reconciler.sign(type);
+            if (sign == 0) return;
+            try {
+                if (accountId != account) {
+                    finish();
+                    account = accountId;
+                    balance = 0;
+                    seen = false;
+                    opened = false;
+                }
+                if (dateMillis >= end) return;
+                seen = true;
+                if (dateMillis >= start) {
+                    if (!opened) open();
+                    writer.line(type, ammount, description, dateMillis);
+                }
+                balance += sign * ammount;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() {
+            if (!seen) return;
+            try {
+                if (!opened) open();
+                writer.close(balance);
+                statements++;
+                seen = false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void open() throws IOException {
+            writer.open(account, month, balance);
+            opened = true;
+        }
+    }
+}
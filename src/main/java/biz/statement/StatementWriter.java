@@ -0,0 +1,15 @@
+package biz.statement;
+
+import model.operations.OperationType;
+
+import java.io.IOException;
+import java.time.YearMonth;
+
+/**
+ * Receives statements one account at a time, in account order.
+ */
+public interface StatementWriter {
+    void open(int accountId, YearMonth month, double openingBalance) throws IOException;
+    void line(OperationType type, double ammount, String description, long dateMillis) throws IOException;
+    void close(double closingBalance) throws IOException;
+}
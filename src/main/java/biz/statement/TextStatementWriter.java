@@ -0,0 +1,49 @@
+package biz.statement;
+
+import model.operations.OperationType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Writes statements as plain text, one line per operation.
+ */
+public class TextStatementWriter implements StatementWriter {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Writer out;
+    private final ZoneId zone;
+
+    public TextStatementWriter(Writer out, ZoneId zone) {
+        this.out = out;
+        this.zone = zone;
+    }
+
+    @Override
+    public void open(int accountId, YearMonth month, double openingBalance) throws IOException {
+        out.write("Statement " + month + " account " + accountId + "\n");
+        out.write("Opening balance " + money(openingBalance) + "\n");
+    }
+
+    @Override
+    public void line(OperationType type, double ammount, String description, long dateMillis) throws IOException {
+        String date = DATE.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), zone));
+        out.write(date + " " + type + " " + money(ammount) + " " + description + "\n");
+    }
+
+    @Override
+    public void close(double closingBalance) throws IOException {
+        out.write("Closing balance " + money(closingBalance) + "\n\n");
+    }
+
+    private static String money(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
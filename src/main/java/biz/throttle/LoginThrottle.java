@@ -0,0 +1,54 @@
+package biz.throttle;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission check run before any login work: one bucket per user name and one
+ * per source address. A login is admitted only when both have room.
+ */
+public class LoginThrottle {
+
+    private final TokenBucketTable users;
+    private final TokenBucketTable sources;
+
+    public LoginThrottle() {
+        this(System::currentTimeMillis);
+    }
+
+    public LoginThrottle(LongSupplier clock) {
+        this(new TokenBucketTable(10, TimeUnit.SECONDS.toMillis(6), 5, TimeUnit.SECONDS.toMillis(1),
+                        TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(10), 65536, 16, clock),
+                new TokenBucketTable(50, TimeUnit.SECONDS.toMillis(1), 20, TimeUnit.SECONDS.toMillis(1),
+                        TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(10), 65536, 16, clock));
+    }
+
+    public LoginThrottle(TokenBucketTable users, TokenBucketTable sources) {
+        this.users = users;
+        this.sources = sources;
+    }
+
+    /**
+     * @param source client address, or null when unknown
+     * @return 0 when the attempt may proceed, otherwise milliseconds to wait
+     */
+    public long admit(String userName, String source) {
+        long wait = userName == null ? 0 : users.acquire(userName);
+        if (wait > 0 || source == null) return wait;
+        return sources.acquire(source);
+    }
+
+    public void success(String userName, String source) {
+        if (userName != null) users.success(userName);
+        if (source != null) sources.success(source);
+    }
+
+    public void failure(String userName, String source) {
+        if (userName != null) users.failure(userName);
+        if (source != null) sources.failure(source);
+    }
+
+    public int size() {
+        return users.size() + sources.size();
+    }
+}
@@ -0,0 +1,160 @@
+package biz.throttle;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets for one kind of key (user names or client addresses).
+ * <p>
+ * A bucket is a single timestamp, the time at which it would be full again, so
+ * refilling is plain arithmetic done on the next request and updated with CAS;
+ * nothing runs in the background. Consecutive failures lock a key out for a
+ * period that doubles with every further failure. When a shard fills up its idle,
+ * unlocked buckets are dropped, or else the least recently used unlocked one, so a
+ * flood of new keys pushes out other unlocked keys but never a lockout. Keys that
+ * still find no room share the shard's overflow bucket; it only limits the rate
+ * and never locks out, since one key's failures would lock out all of them.
+ */
+public class TokenBucketTable {
+
+    private final ConcurrentHashMap<String, Bucket>[] shards;
+    private final Bucket[] overflow;
+    private final int maxPerShard;
+    private final long interval;
+    private final long burstWindow;
+    private final int lockoutThreshold;
+    private final long baseLockout;
+    private final long maxLockout;
+    private final long idleTimeout;
+    private final LongSupplier clock;
+
+    /**
+     * @param burst            requests allowed at once
+     * @param intervalMillis   time to regain one request
+     * @param lockoutThreshold consecutive failures before the first lockout
+     * @param baseLockoutMillis first lockout, doubled with every further failure
+     * @param maxLockoutMillis longest lockout
+     * @param idleMillis       how long an unused bucket is kept
+     * @param maxEntries       upper bound on buckets kept
+     * @param shardCount       power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TokenBucketTable(int burst, long intervalMillis, int lockoutThreshold, long baseLockoutMillis,
+                            long maxLockoutMillis, long idleMillis, int maxEntries, int shardCount, LongSupplier clock) {
+        if (Integer.bitCount(shardCount) != 1) throw new IllegalArgumentException("Shard count must be a power of two");
+        this.interval = intervalMillis;
+        this.burstWindow = intervalMillis * burst;
+        this.lockoutThreshold = lockoutThreshold;
+        this.baseLockout = baseLockoutMillis;
+        this.maxLockout = maxLockoutMillis;
+        this.idleTimeout = idleMillis;
+        this.clock = clock;
+        this.maxPerShard = Math.max(1, maxEntries / shardCount);
+        this.shards = new ConcurrentHashMap[shardCount];
+        this.overflow = new Bucket[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+            overflow[i] = new Bucket(0, true);
+        }
+    }
+
+    /**
+     * Takes one request from the key's bucket.
+     *
+     * @return 0 when admitted, otherwise milliseconds until the key may try again
+     */
+    public long acquire(String key) {
+        long now = clock.getAsLong();
+        Bucket bucket = bucket(key, now);
+        bucket.lastSeen = now;
+        long locked = bucket.lockedUntil - now;
+        if (locked > 0) return locked;
+        while (true) {
+            long full = bucket.fullAt.get();
+            long start = Math.max(full, now);
+            long wait = start + interval - burstWindow - now;
+            if (wait > 0) return wait;
+            if (bucket.fullAt.compareAndSet(full, start + interval)) return 0;
+        }
+    }
+
+    public void success(String key) {
+        Bucket bucket = find(key);
+        if (bucket == null) return;
+        bucket.failures.set(0);
+        bucket.lockedUntil = 0;
+    }
+
+    public void failure(String key) {
+        long now = clock.getAsLong();
+        Bucket bucket = bucket(key, now);
+        if (bucket.shared) return;
+        int excess = bucket.failures.incrementAndGet() - lockoutThreshold;
+        if (excess < 0) return;
+        bucket.lockedUntil = now + Math.min(maxLockout, baseLockout << Math.min(excess, 30));
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, Bucket> shard : shards) size += shard.size();
+        return size;
+    }
+
+    private Bucket find(String key) {
+        return shards[shardIndex(key)].get(key);
+    }
+
+    private Bucket bucket(String key, long now) {
+        int index = shardIndex(key);
+        ConcurrentHashMap<String, Bucket> shard = shards[index];
+        Bucket bucket = shard.get(key);
+        if (bucket != null) return bucket;
+        if (shard.size() >= maxPerShard) {
+            evict(shard, now);
+            if (shard.size() >= maxPerShard) return overflow[index];
+        }
+        return shard.computeIfAbsent(key, k -> new Bucket(now, false));
+    }
+
+    // drops the idle unlocked buckets, or the least recently used unlocked one when none is idle
+    private void evict(ConcurrentHashMap<String, Bucket> shard, long now) {
+        boolean removed = false;
+        String oldest = null;
+        long oldestSeen = Long.MAX_VALUE;
+        for (Iterator<Map.Entry<String, Bucket>> it = shard.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Bucket> entry = it.next();
+            Bucket bucket = entry.getValue();
+            if (bucket.lockedUntil > now) continue;
+            if (now - bucket.lastSeen >= idleTimeout && bucket.fullAt.get() <= now) {
+                it.remove();
+                removed = true;
+            } else if (bucket.lastSeen < oldestSeen) {
+                oldestSeen = bucket.lastSeen;
+                oldest = entry.getKey();
+            }
+        }
+        if (!removed && oldest != null) shard.remove(oldest);
+    }
+
+    private int shardIndex(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (shards.length - 1);
+    }
+
+    private static class Bucket {
+        final AtomicLong fullAt = new AtomicLong();
+        final AtomicInteger failures = new AtomicInteger();
+        volatile long lockedUntil = 0;
+        volatile long lastSeen;
+        final boolean shared;
+
+        Bucket(long now, boolean shared) {
+            this.lastSeen = now;
+            this.shared = shared;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package biz.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: every level has 64 slots and each slot of a level
+ * spans a whole turn of the level below. Scheduling and expiring an item are
+ * O(1); items far in the future are cascaded to lower levels as time passes.
+ * <p>
+ * {@link #schedule} may be called from any thread, {@link #advance} from one
+ * thread at a time.
+ */
+public class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final int levels;
+    private final long maxTicks;
+    private final List<Entry<T>>[][] buckets;
+    private final ConcurrentLinkedQueue<Entry<T>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private long currentTick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("Tick must be positive");
+        if (levels < 1 || levels * BITS >= 62) throw new IllegalArgumentException("Unsupported number of levels " + levels);
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.maxTicks = 1L << (BITS * levels);
+        this.buckets = new List[levels][SLOTS];
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public void schedule(T item, long deadlineMillis) {
+        pending.add(new Entry<>(item, Math.floorDiv(deadlineMillis, tickMillis)));
+        size.incrementAndGet();
+    }
+
+    /**
+     * Moves the wheel up to the given time, passing every item that became due to the consumer.
+     *
+     * @return number of expired items
+     */
+    public int advance(long nowMillis, Consumer<T> expired) {
+        int count = 0;
+        Entry<T> entry;
+        while ((entry = pending.poll()) != null) {
+            if (entry.deadlineTick <= currentTick) {
+                count += expire(entry, expired);
+            } else {
+                place(entry);
+            }
+        }
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < nowTick) {
+            currentTick++;
+            for (int level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) cascade(level);
+            }
+            List<Entry<T>> due = buckets[0][(int) (currentTick & MASK)];
+            if (due != null && !due.isEmpty()) {
+                buckets[0][(int) (currentTick & MASK)] = null;
+                for (Entry<T> e : due) {
+                    if (e.deadlineTick > currentTick) place(e); // parked beyond the range of the wheel
+                    else count += expire(e, expired);
+                }
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private int expire(Entry<T> entry, Consumer<T> expired) {
+        size.decrementAndGet();
+        expired.accept(entry.item);
+        return 1;
+    }
+
+    private void cascade(int level) {
+        int slot = (int) ((currentTick >>> (BITS * level)) & MASK);
+        List<Entry<T>> bucket = buckets[level][slot];
+        if (bucket == null || bucket.isEmpty()) return;
+        buckets[level][slot] = null;
+        for (Entry<T> e : bucket) place(e);
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.deadlineTick - currentTick;
+        long tick = entry.deadlineTick;
+        if (delta >= maxTicks) {
+            // beyond the range of the wheel: park it in the last reachable slot, it is re-placed on cascade
+            delta = maxTicks - 1;
+            tick = currentTick + delta;
+        }
+        int level = 0;
+        while (level < levels - 1 && delta >= (1L << (BITS * (level + 1)))) level++;
+        int slot = (int) ((tick >>> (BITS * level)) & MASK);
+        List<Entry<T>> bucket = buckets[level][slot];
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets[level][slot] = bucket;
+        }
+        bucket.add(entry);
+    }
+
+    private static class Entry<T> {
+        final T item;
+        final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
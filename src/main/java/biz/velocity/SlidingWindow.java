@@ -0,0 +1,68 @@
+package biz.velocity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count and sum of amounts over a sliding window, kept in a ring of buckets.
+ * <p>
+ * Each bucket is two longs, the count and the sum in minor units, each
+ * stamped with the bucket's epoch in its top bits. An update is a CAS that
+ * either adds to a bucket of the current epoch or replaces a stale one, so
+ * buckets roll over without locks and without losing concurrent updates.
+ * Reading adds up the buckets whose epoch is still within the window.
+ */
+class SlidingWindow {
+
+    private static final int EPOCH_SHIFT = 40;
+    private static final long EPOCH_MASK = (1L << (64 - EPOCH_SHIFT)) - 1;
+    private static final long VALUE_MASK = (1L << EPOCH_SHIFT) - 1;
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final AtomicLongArray cells;
+
+    SlidingWindow(long windowMillis, int buckets) {
+        this.bucketMillis = windowMillis / buckets;
+        this.buckets = buckets;
+        this.cells = new AtomicLongArray(buckets * 2);
+    }
+
+    /**
+     * Adds (or with negative values takes back) a count and an amount in minor units.
+     */
+    void add(long nowMillis, int count, long minorUnits) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) (epoch % buckets) * 2;
+        add(slot, epoch, count);
+        add(slot + 1, epoch, minorUnits);
+    }
+
+    long count(long nowMillis) {
+        return total(nowMillis, 0);
+    }
+
+    long sum(long nowMillis) {
+        return total(nowMillis, 1);
+    }
+
+    private void add(int cell, long epoch, long delta) {
+        long stamp = epoch & EPOCH_MASK;
+        while (true) {
+            long current = cells.get(cell);
+            long value = (current >>> EPOCH_SHIFT) == stamp ? (current & VALUE_MASK) + delta : delta;
+            long next = stamp << EPOCH_SHIFT | (Math.max(0, value) & VALUE_MASK);
+            if (cells.compareAndSet(cell, current, next)) return;
+        }
+    }
+
+    private long total(long nowMillis, int offset) {
+        long epoch = nowMillis / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            long current = cells.get(i * 2 + offset);
+            long age = (epoch - (current >>> EPOCH_SHIFT)) & EPOCH_MASK;
+            if (age < buckets) total += current & VALUE_MASK;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,96 @@
+package biz.velocity;
+
+import model.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how fast money can leave accounts: counts and sums of payments over
+ * the last minute and the last hour, per account and per user, checked
+ * against the limits of the user's role. Roles without limits are not
+ * tracked.
+ * <p>
+ * A payment is recorded first and checked after, and taken back when it went
+ * over a limit, so concurrent payments can never slip past a limit together.
+ * A payment that is then declined, e.g. for lack of funds, is given back with
+ * {@link #release}.
+ */
+public class VelocityGuard {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final int MINUTE_BUCKETS = 12;
+    private static final int HOUR_BUCKETS = 60;
+
+    private final Map<Integer, VelocityLimits> limits = new ConcurrentHashMap<>();
+    private final Map<Integer, Windows> accounts = new ConcurrentHashMap<>();
+    private final Map<Integer, Windows> users = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public VelocityGuard() {
+        this(System::currentTimeMillis);
+    }
+
+    public VelocityGuard(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void setLimits(int roleId, VelocityLimits roleLimits) {
+        if (roleLimits == null) limits.remove(roleId);
+        else limits.put(roleId, roleLimits);
+    }
+
+    /**
+     * Records a payment from the account unless it would break a limit.
+     *
+     * @return whether the payment is within the limits
+     */
+    public boolean tryAcquire(User user, int accountId, double ammount) {
+        if (user == null || user.getRole() == null) return true;
+        VelocityLimits roleLimits = limits.get(user.getRole().getId());
+        if (roleLimits == null) return true;
+        long now = clock.getAsLong();
+        long minorUnits = Math.round(ammount * 100);
+        Windows account = accounts.computeIfAbsent(accountId, id -> new Windows());
+        Windows owner = users.computeIfAbsent(user.getId(), id -> new Windows());
+        account.add(now, 1, minorUnits);
+        owner.add(now, 1, minorUnits);
+        if (account.within(now, roleLimits) && owner.within(now, roleLimits)) return true;
+        account.add(now, -1, -minorUnits);
+        owner.add(now, -1, -minorUnits);
+        return false;
+    }
+
+    /**
+     * Gives back a payment recorded by {@link #tryAcquire} that did not go through.
+     */
+    public void release(User user, int accountId, double ammount) {
+        if (user == null || user.getRole() == null) return;
+        if (!limits.containsKey(user.getRole().getId())) return;
+        long now = clock.getAsLong();
+        long minorUnits = Math.round(ammount * 100);
+        Windows account = accounts.get(accountId);
+        Windows owner = users.get(user.getId());
+        if (account != null) account.add(now, -1, -minorUnits);
+        if (owner != null) owner.add(now, -1, -minorUnits);
+    }
+
+    private static class Windows {
+        final SlidingWindow minute = new SlidingWindow(MINUTE, MINUTE_BUCKETS);
+        final SlidingWindow hour = new SlidingWindow(HOUR, HOUR_BUCKETS);
+
+        void add(long now, int count, long minorUnits) {
+            minute.add(now, count, minorUnits);
+            hour.add(now, count, minorUnits);
+        }
+
+        boolean within(long now, VelocityLimits limits) {
+            return minute.count(now) <= limits.getPerMinute()
+                    && minute.sum(now) <= Math.round(limits.getAmountPerMinute() * 100)
+                    && hour.count(now) <= limits.getPerHour()
+                    && hour.sum(now) <= Math.round(limits.getAmountPerHour() * 100);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package biz.velocity;
+
+/**
+ * How many payments, and for how much, a role may make per minute and per
+ * hour, from one account and in total by one user.
+ */
+public class VelocityLimits {
+    private final int perMinute;
+    private final double amountPerMinute;
+    private final int perHour;
+    private final double amountPerHour;
+
+    public VelocityLimits(int perMinute, double amountPerMinute, int perHour, double amountPerHour) {
+        this.perMinute = perMinute;
+        this.amountPerMinute = amountPerMinute;
+        this.perHour = perHour;
+        this.amountPerHour = amountPerHour;
+    }
+
+    public int getPerMinute() {
+        return perMinute;
+    }
+
+    public double getAmountPerMinute() {
+        return amountPerMinute;
+    }
+
+    public int getPerHour() {
+        return perHour;
+    }
+
+    public double getAmountPerHour() {
+        return amountPerHour;
+    }
+}
@@ -0,0 +1,31 @@
+package db.chain;
+
+/**
+ * One History row with its Operation columns, as stored, plus the row's hash.
+ * The hash covers the fields exactly as they are written to the database.
+ */
+public class ChainRecord {
+    private final String[] fields;
+    private final String hash;
+
+    /**
+     * @param fields operation id, type, description, date, user id, ammount,
+     *               account id, rate and success, null where the column is NULL
+     */
+    public ChainRecord(String[] fields, String hash) {
+        this.fields = fields;
+        this.hash = hash;
+    }
+
+    public String[] getFields() {
+        return fields;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getOperationId() {
+        return fields[0];
+    }
+}
@@ -0,0 +1,159 @@
+package db.chain;
+
+import db.dao.DAO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Checks the whole history chain.
+ * <p>
+ * Records are read in one sequential scan and cut into chunks. Every link can
+ * be checked on its own, since the previous hash is stored with the previous
+ * record, so each chunk is split into segments verified in parallel while the
+ * next chunk is being read. The first broken link of each segment is then
+ * reduced to the first broken link of the chain. At most two chunks are held
+ * in memory.
+ */
+public class ChainVerifier {
+
+    private static final ThreadLocal<HashChain> CHAINS = ThreadLocal.withInitial(HashChain::new);
+
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public ChainVerifier() {
+        this(65_536, ForkJoinPool.commonPool());
+    }
+
+    public ChainVerifier(int chunkSize, ForkJoinPool pool) {
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public Result verify(DAO dao) throws SQLException {
+        Scan scan = new Scan();
+        dao.scanHistory(scan::add);
+        scan.flush();
+        return scan.result();
+    }
+
+    private class Scan {
+        List<ChainRecord> chunk = new ArrayList<>(chunkSize);
+        byte[] previous = HashChain.GENESIS;
+        long position = 0;
+        Future<Long> pending = null;
+        long pendingStart = 0;
+        List<ChainRecord> pendingChunk = null;
+        long firstBroken = -1;
+        String firstBrokenOperation = null;
+
+        void add(ChainRecord record) {
+            chunk.add(record);
+            if (chunk.size() == chunkSize) flush();
+        }
+
+        void flush() {
+            await();
+            if (chunk.isEmpty() || firstBroken >= 0) {
+                chunk.clear();
+                return;
+            }
+            List<ChainRecord> records = chunk;
+            byte[] start = previous;
+            pendingStart = position;
+            pendingChunk = records;
+            pending = pool.submit(() -> verifyChunk(records, start));
+            previous = HashChain.decode(records.get(records.size() - 1).getHash());
+            if (previous == null) previous = HashChain.GENESIS;
+            position += records.size();
+            chunk = new ArrayList<>(chunkSize);
+        }
+
+        void await() {
+            if (pending == null) return;
+            try {
+                long broken = pending.get();
+                if (broken >= 0 && firstBroken < 0) {
+                    firstBroken = pendingStart + broken;
+                    firstBrokenOperation = pendingChunk.get((int) broken).getOperationId();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while verifying history", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                pending = null;
+                pendingChunk = null;
+            }
+        }
+
+        Result result() {
+            await();
+            return new Result(position, firstBroken, firstBrokenOperation);
+        }
+    }
+
+    /**
+     * @return index of the first broken link in the chunk or -1
+     */
+    private long verifyChunk(List<ChainRecord> records, byte[] start) {
+        int segments = Math.max(1, Math.min(records.size() / 1024, pool.getParallelism() * 4));
+        int size = (records.size() + segments - 1) / segments;
+        return IntStream.range(0, segments).parallel()
+                .mapToLong(segment -> verifySegment(records, start, segment * size,
+                        Math.min(records.size(), (segment + 1) * size)))
+                .filter(broken -> broken >= 0)
+                .min()
+                .orElse(-1);
+    }
+
+    private static long verifySegment(List<ChainRecord> records, byte[] start, int from, int to) {
+        HashChain chain = CHAINS.get();
+        byte[] previous = from == 0 ? start : HashChain.decode(records.get(from - 1).getHash());
+        if (previous == null) previous = HashChain.GENESIS;
+        for (int i = from; i < to; i++) {
+            ChainRecord record = records.get(i);
+            if (!chain.verify(previous, record)) return i;
+            previous = HashChain.decode(record.getHash());
+        }
+        return -1;
+    }
+
+    public static class Result {
+        private final long records;
+        private final long firstBroken;
+        private final String firstBrokenOperationId;
+
+        Result(long records, long firstBroken, String firstBrokenOperationId) {
+            this.records = records;
+            this.firstBroken = firstBroken;
+            this.firstBrokenOperationId = firstBrokenOperationId;
+        }
+
+        public boolean isIntact() {
+            return firstBroken < 0;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return position of the first record whose link does not hold, -1 when intact
+         */
+        public long getFirstBroken() {
+            return firstBroken;
+        }
+
+        public String getFirstBrokenOperationId() {
+            return firstBrokenOperationId;
+        }
+    }
+}
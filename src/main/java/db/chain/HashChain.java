@@ -0,0 +1,77 @@
+package db.chain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * SHA-256 chain over history records: each hash covers the previous hash and
+ * the record's fields, so editing, removing or reordering any row breaks every
+ * link after it. A record is encoded into one reused buffer, each field as a
+ * length and its UTF-8 bytes (-1 for NULL), and digested with a single update.
+ * <p>
+ * Not thread-safe; use one instance per thread.
+ */
+public class HashChain {
+
+    public static final byte[] GENESIS = new byte[32];
+
+    private final MessageDigest digest;
+    private byte[] buffer = new byte[256];
+
+    public HashChain() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public byte[] link(byte[] previous, String[] fields) {
+        int length = 0;
+        for (String field : fields) {
+            byte[] bytes = field == null ? null : field.getBytes(StandardCharsets.UTF_8);
+            int size = bytes == null ? 0 : bytes.length;
+            ensure(length + 4 + size);
+            int prefix = bytes == null ? -1 : size;
+            buffer[length++] = (byte) (prefix >>> 24);
+            buffer[length++] = (byte) (prefix >>> 16);
+            buffer[length++] = (byte) (prefix >>> 8);
+            buffer[length++] = (byte) prefix;
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, buffer, length, size);
+                length += size;
+            }
+        }
+        digest.update(previous);
+        digest.update(buffer, 0, length);
+        return digest.digest();
+    }
+
+    /**
+     * @return whether the record's stored hash matches its fields and the previous hash
+     */
+    public boolean verify(byte[] previous, ChainRecord record) {
+        if (record.getHash() == null) return false;
+        return MessageDigest.isEqual(link(previous, record.getFields()), decode(record.getHash()));
+    }
+
+    public static String encode(byte[] hash) {
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    public static byte[] decode(String hash) {
+        if (hash == null) return null;
+        try {
+            return Base64.getDecoder().decode(hash);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void ensure(int capacity) {
+        if (capacity > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+}
@@ -1,11 +1,21 @@
 package db.dao;
 
+import db.chain.ChainRecord;
 import model.Account;
 import model.Operation;
 import model.Password;
+import model.PaymentKey;
+import model.Permission;
+import model.Role;
+import model.StandingOrder;
 import model.User;
+import model.operations.OperationType;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
@@ -14,9 +24,70 @@ public interface DAO {
     User findUserByName(String userName) throws SQLException;
     Password findPasswordForUser(User user) throws SQLException;
     Account findAccountById(int accountId) throws SQLException;
+    List<Account> findAccountsByOwner(User owner) throws SQLException;
+    /**
+     * @return the account's latest payment and interest operations, newest first
+     */
+    List<Operation> findRecentOperations(int accountId, int limit) throws SQLException;
     boolean updateAccountState(Account account) throws SQLException;
+    /**
+     * Writes the balances of all the accounts in one transaction.
+     */
+    void updateAccountStates(List<Account> accounts) throws SQLException;
+    /**
+     * Debits the source and credits every destination in one transaction, and
+     * logs all the payments as successful in it.
+     *
+     * @return null when the source balance is too low, otherwise the indexes of
+     * the credits whose account is missing or in another currency; nothing is
+     * written unless this is empty
+     */
+    int[] fanOut(Withdraw debit, List<PaymentIn> credits) throws SQLException;
     boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException;
+    List<String> findAllUserNames() throws SQLException;
+    User createUser(String userName, Role role, String passwd) throws SQLException;
+    List<Permission> findPermissions() throws SQLException;
+    List<StandingOrder> findActiveStandingOrders() throws SQLException;
+    StandingOrder createStandingOrder(StandingOrder order) throws SQLException;
+    /**
+     * Writes the next run and the active flag of every order, in one transaction.
+     */
+    void updateStandingOrders(List<StandingOrder> orders) throws SQLException;
+    /**
+     * @return the result recorded for the payment key or null
+     */
+    PaymentKey findPaymentKey(String key) throws SQLException;
+    void insertPaymentKey(String key, String request, String result, long created) throws SQLException;
+    void updatePaymentKey(String key, String result) throws SQLException;
+    int deletePaymentKeys(long createdBefore) throws SQLException;
+    void deletePaymentKey(String key) throws SQLException;
     void close() throws SQLException;
 
     void logOperation(Operation operation, boolean success) throws SQLException;
+    /**
+     * Streams every History row with its Operation columns, in insertion order.
+     */
+    void scanHistory(Consumer<ChainRecord> consumer) throws SQLException;
+    /**
+     * Streams the account, type and amount of every successful operation on an account, in no particular order.
+     */
+    void scanPostings(PostingHandler handler) throws SQLException;
+    void scanBalances(BalanceHandler handler) throws SQLException;
+    int findMaxAccountId() throws SQLException;
+    /**
+     * Streams the successful operations of accounts in the given id range, by account and then in order of logging.
+     */
+    void scanStatementRows(int fromAccountId, int toAccountId, StatementRowHandler handler) throws SQLException;
+
+    interface PostingHandler {
+        void accept(int accountId, OperationType type, double ammount);
+    }
+
+    interface BalanceHandler {
+        void accept(int accountId, double ammount);
+    }
+
+    interface StatementRowHandler {
+        void accept(int accountId, OperationType type, double ammount, String description, long dateMillis);
+    }
 }
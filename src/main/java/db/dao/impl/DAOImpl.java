@@ -1,21 +1,42 @@
 package db.dao.impl;
 
+import db.chain.ChainRecord;
+import db.chain.HashChain;
 import db.dao.DAO;
 import model.*;
 import model.operations.Interest;
 import model.operations.LogOperation;
+import model.operations.OperationType;
 import model.operations.Payment;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class DAOImpl implements DAO{
+    private static final int FETCH_SIZE = 4096;
+    // dates are stored as Date.toString()
+    private static final String DATE_FORMAT = "EEE MMM dd HH:mm:ss zzz yyyy";
     Connection db;
+    // transactions get a connection of their own, so statements other threads run on db never end up in them
+    Connection transactions;
+    private final HashChain chain = new HashChain();
+    private byte[] chainHead = null;
 
 
     public User findUserByName(String userName) throws SQLException {
@@ -77,7 +98,8 @@ public class DAOImpl implements DAO{
                 "role.id as role_id, " +
                 "role.name as role_name, " +
                 "account.id as account_id, " +
-                "ammount " +
+                "ammount, " +
+                "currency " +
                 "FROM User , Role, Account " +
                 "WHERE role.id=user.role_id AND " +
                 "owner_id = user.id AND " +
@@ -98,6 +120,43 @@ public class DAOImpl implements DAO{
     }
 
 
+    public List<Account> findAccountsByOwner(User owner) throws SQLException {
+        String sql= "SELECT " +
+                "user.id as user_id, " +
+                "user.name as user_name, " +
+                "role.id as role_id, " +
+                "role.name as role_name, " +
+                "account.id as account_id, " +
+                "ammount, " +
+                "currency " +
+                "FROM User , Role, Account " +
+                "WHERE role.id=user.role_id AND " +
+                "owner_id = user.id AND " +
+                "owner_id = "+owner.getId()+" " +
+                "ORDER BY account.id";
+        List<Account> accounts = new ArrayList<>();
+        try (Statement st = db.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) accounts.add(getAccountFromRs(rs));
+        }
+        return accounts;
+    }
+
+    public List<Operation> findRecentOperations(int accountId, int limit) throws SQLException {
+        String sql = "SELECT id, type, ammount, description, date, user_id, account_id, rate " +
+                "FROM Operation WHERE account_id = "+accountId+" " +
+                "ORDER BY id DESC LIMIT "+limit;
+        List<Operation> operations = new ArrayList<>();
+        try (Statement st = db.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                Operation operation = getOperationFromRs(rs);
+                if (operation != null) operations.add(operation);
+            }
+        }
+        return operations;
+    }
+
     public boolean updateAccountState(Account account) throws SQLException {
         String sql = "UPDATE ACCOUNT SET ammount = "+account.getAmmount() +
                 " WHERE id="+account.getId();
@@ -116,6 +175,100 @@ public class DAOImpl implements DAO{
         return false;
     }
 
+    public synchronized void updateAccountStates(List<Account> accounts) throws SQLException {
+        if (accounts.isEmpty()) return;
+        boolean autoCommit = transactions.getAutoCommit();
+        transactions.setAutoCommit(false);
+        try (PreparedStatement st = transactions.prepareStatement("UPDATE Account SET ammount = ? WHERE id = ?")) {
+            for (Account account : accounts) {
+                st.setDouble(1, account.getAmmount());
+                st.setInt(2, account.getId());
+                st.addBatch();
+            }
+            st.executeBatch();
+            transactions.commit();
+        } catch (SQLException e) {
+            transactions.rollback();
+            throw e;
+        } finally {
+            transactions.setAutoCommit(autoCommit);
+        }
+    }
+
+    public synchronized int[] fanOut(Withdraw debit, List<PaymentIn> credits) throws SQLException {
+        boolean autoCommit = transactions.getAutoCommit();
+        byte[] head = chainHead();
+        transactions.setAutoCommit(false);
+        try {
+            try (PreparedStatement st = transactions.prepareStatement(
+                    "UPDATE Account SET ammount = ammount - ? WHERE id = ? AND ammount >= ?")) {
+                st.setDouble(1, debit.getAmmount());
+                st.setInt(2, debit.getAccount().getId());
+                st.setDouble(3, debit.getAmmount());
+                if (st.executeUpdate() == 0) {
+                    transactions.rollback();
+                    return null;
+                }
+            }
+            String currency = debit.getAccount().getCurrency();
+            int[] counts;
+            try (PreparedStatement st = transactions.prepareStatement(currency == null
+                    ? "UPDATE Account SET ammount = ammount + ? WHERE id = ?"
+                    : "UPDATE Account SET ammount = ammount + ? WHERE id = ? AND currency = ?")) {
+                for (PaymentIn credit : credits) {
+                    st.setDouble(1, credit.getAmmount());
+                    st.setInt(2, credit.getAccount().getId());
+                    if (currency != null) st.setString(3, currency);
+                    st.addBatch();
+                }
+                counts = st.executeBatch();
+            }
+            int[] rejected = IntStream.range(0, counts.length).filter(i -> counts[i] == 0).toArray();
+            if (rejected.length > 0) {
+                transactions.rollback();
+                return rejected;
+            }
+            try (PreparedStatement operations = transactions.prepareStatement(
+                    "INSERT INTO Operation (`type`, `description`, `date`, `user_id`, `ammount`, `account_id`, `rate`) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement history = transactions.prepareStatement(
+                         "INSERT INTO History (`operation_id`, `succesfull`, `hash`) VALUES (?, 'true', ?)")) {
+                insertPosting(operations, history, debit);
+                for (PaymentIn credit : credits) insertPosting(operations, history, credit);
+                history.executeBatch();
+            }
+            transactions.commit();
+            return rejected;
+        } catch (SQLException | RuntimeException e) {
+            transactions.rollback();
+            chainHead = head;
+            throw e;
+        } finally {
+            transactions.setAutoCommit(autoCommit);
+        }
+    }
+
+    // the operation row is needed first, its id is part of the chained hash
+    private void insertPosting(PreparedStatement operations, PreparedStatement history, Payment payment) throws SQLException {
+        operations.setString(1, String.valueOf(payment.getType()));
+        operations.setString(2, payment.getDescription());
+        operations.setString(3, String.valueOf(payment.getDate()));
+        operations.setInt(4, payment.getUser().getId());
+        operations.setDouble(5, payment.getAmmount());
+        operations.setInt(6, payment.getAccount().getId());
+        operations.setDouble(7, payment.getRate());
+        operations.executeUpdate();
+        try (ResultSet rs = operations.getGeneratedKeys()) {
+            if (!rs.next()) throw new SQLException("No id generated for operation");
+            payment.setId(rs.getInt(1));
+        }
+        byte[] hash = chain.link(chainHead(), chainFields(payment, true));
+        history.setInt(1, payment.getId());
+        history.setString(2, HashChain.encode(hash));
+        history.addBatch();
+        chainHead = hash;
+    }
+
     public boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException {
         String sql = "UPDATE PASSWORD SET passwd = '"+passwd +
                 "' WHERE user_id="+user.getId()+" AND passwd = '"+oldPass+"'" ;
@@ -134,6 +287,188 @@ public class DAOImpl implements DAO{
         return false;
     }
 
+    public List<String> findAllUserNames() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement st = db.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name FROM User")) {
+            while (rs.next()) names.add(rs.getString(1));
+        }
+        return names;
+    }
+
+    public synchronized User createUser(String userName, Role role, String passwd) throws SQLException {
+        User user = new User();
+        user.setName(userName);
+        user.setRole(role);
+        boolean autoCommit = transactions.getAutoCommit();
+        transactions.setAutoCommit(false);
+        try {
+            try (PreparedStatement st = transactions.prepareStatement("INSERT INTO User (name, role_id) VALUES (?, ?)")) {
+                st.setString(1, userName);
+                st.setInt(2, role.getId());
+                st.executeUpdate();
+                try (ResultSet keys = st.getGeneratedKeys()) {
+                    if (!keys.next()) throw new SQLException("No id generated for user " + userName);
+                    user.setId(keys.getInt(1));
+                }
+            }
+            try (PreparedStatement st = transactions.prepareStatement("INSERT INTO Password (user_id, passwd) VALUES (?, ?)")) {
+                st.setInt(1, user.getId());
+                st.setString(2, passwd);
+                st.executeUpdate();
+            }
+            transactions.commit();
+        } catch (SQLException e) {
+            transactions.rollback();
+            throw e;
+        } finally {
+            transactions.setAutoCommit(autoCommit);
+        }
+        return user;
+    }
+
+    public List<Permission> findPermissions() throws SQLException {
+        List<Permission> permissions = new ArrayList<>();
+        try (Statement st = db.createStatement();
+             ResultSet rs = st.executeQuery("SELECT role_id, operation_type, owner_only FROM Permission")) {
+            OperationType[] types = OperationType.values();
+            while (rs.next()) {
+                int typeId = rs.getInt("operation_type");
+                for (OperationType type : types) {
+                    if (type.getId() != typeId) continue;
+                    Permission permission = new Permission();
+                    permission.setRoleId(rs.getInt("role_id"));
+                    permission.setOperationType(type);
+                    permission.setOwnerOnly(rs.getInt("owner_only") != 0);
+                    permissions.add(permission);
+                }
+            }
+        }
+        return permissions;
+    }
+
+    public List<StandingOrder> findActiveStandingOrders() throws SQLException {
+        String sql = "SELECT " +
+                "user.id as user_id, " +
+                "user.name as user_name, " +
+                "role.id as role_id, " +
+                "role.name as role_name, " +
+                "o.id, o.source_account_id, o.dest_account_id, o.ammount, o.description, " +
+                "o.next_run, o.interval_millis " +
+                "FROM StandingOrder o, User, Role " +
+                "WHERE o.active = 1 AND user.id = o.user_id AND role.id = user.role_id";
+        List<StandingOrder> orders = new ArrayList<>();
+        try (Statement st = db.createStatement()) {
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    StandingOrder order = new StandingOrder();
+                    order.setUser(getUserFromRS(rs));
+                    order.setId(rs.getInt("id"));
+                    order.setSourceAccountId(rs.getInt("source_account_id"));
+                    order.setDestAccountId(rs.getInt("dest_account_id"));
+                    order.setAmmount(rs.getDouble("ammount"));
+                    order.setDescription(rs.getString("description"));
+                    order.setNextRun(rs.getLong("next_run"));
+                    order.setIntervalMillis(rs.getLong("interval_millis"));
+                    orders.add(order);
+                }
+            }
+        }
+        return orders;
+    }
+
+    public StandingOrder createStandingOrder(StandingOrder order) throws SQLException {
+        String sql = "INSERT INTO StandingOrder (user_id, source_account_id, dest_account_id, ammount, " +
+                "description, next_run, interval_millis, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement st = db.prepareStatement(sql)) {
+            st.setInt(1, order.getUser().getId());
+            st.setInt(2, order.getSourceAccountId());
+            st.setInt(3, order.getDestAccountId());
+            st.setDouble(4, order.getAmmount());
+            st.setString(5, order.getDescription());
+            st.setLong(6, order.getNextRun());
+            st.setLong(7, order.getIntervalMillis());
+            st.setInt(8, order.isActive() ? 1 : 0);
+            st.executeUpdate();
+            try (ResultSet keys = st.getGeneratedKeys()) {
+                if (keys.next()) order.setId(keys.getInt(1));
+            }
+        }
+        return order;
+    }
+
+    public synchronized void updateStandingOrders(List<StandingOrder> orders) throws SQLException {
+        if (orders.isEmpty()) return;
+        boolean autoCommit = transactions.getAutoCommit();
+        transactions.setAutoCommit(false);
+        try (PreparedStatement st = transactions.prepareStatement(
+                "UPDATE StandingOrder SET next_run = ?, active = ? WHERE id = ?")) {
+            for (StandingOrder order : orders) {
+                st.setLong(1, order.getNextRun());
+                st.setInt(2, order.isActive() ? 1 : 0);
+                st.setInt(3, order.getId());
+                st.addBatch();
+            }
+            st.executeBatch();
+            transactions.commit();
+        } catch (SQLException e) {
+            transactions.rollback();
+            throw e;
+        } finally {
+            transactions.setAutoCommit(autoCommit);
+        }
+    }
+
+    public PaymentKey findPaymentKey(String key) throws SQLException {
+        try (PreparedStatement st = db.prepareStatement(
+                "SELECT request, result, created FROM PaymentKey WHERE idempotency_key = ?")) {
+            st.setString(1, key);
+            try (ResultSet rs = st.executeQuery()) {
+                if (!rs.next()) return null;
+                PaymentKey paymentKey = new PaymentKey();
+                paymentKey.setKey(key);
+                paymentKey.setRequest(rs.getString("request"));
+                paymentKey.setResult(rs.getString("result"));
+                paymentKey.setCreated(rs.getLong("created"));
+                return paymentKey;
+            }
+        }
+    }
+
+    public void insertPaymentKey(String key, String request, String result, long created) throws SQLException {
+        try (PreparedStatement st = db.prepareStatement(
+                "INSERT INTO PaymentKey (idempotency_key, request, result, created) VALUES (?, ?, ?, ?)")) {
+            st.setString(1, key);
+            st.setString(2, request);
+            st.setString(3, result);
+            st.setLong(4, created);
+            st.executeUpdate();
+        }
+    }
+
+    public void updatePaymentKey(String key, String result) throws SQLException {
+        try (PreparedStatement st = db.prepareStatement("UPDATE PaymentKey SET result = ? WHERE idempotency_key = ?")) {
+            st.setString(1, result);
+            st.setString(2, key);
+            st.executeUpdate();
+        }
+    }
+
+    public int deletePaymentKeys(long createdBefore) throws SQLException {
+        try (PreparedStatement st = db.prepareStatement("DELETE FROM PaymentKey WHERE created < ?")) {
+            st.setLong(1, createdBefore);
+            return st.executeUpdate();
+        }
+    }
+
+    public void deletePaymentKey(String key) throws SQLException {
+        try (PreparedStatement st = db.prepareStatement("DELETE FROM PaymentKey WHERE idempotency_key = ?")) {
+            st.setString(1, key);
+            st.executeUpdate();
+        }
+    }
+
     private User getUserFromRS(ResultSet rs) throws SQLException {
         User user = new User();
         Role role = new Role();
@@ -151,21 +486,60 @@ public class DAOImpl implements DAO{
         account.setOwner(user);
         account.setId(rs.getInt("account_id"));
         account.setAmmount(rs.getDouble("ammount"));
+        account.setCurrency(rs.getString("currency"));
         return account;
     }
 
+    /**
+     * Rebuilds a payment or interest row; user and account carry only their ids.
+     */
+    private Operation getOperationFromRs(ResultSet rs) throws SQLException {
+        User user = new User();
+        user.setId(rs.getInt("user_id"));
+        Account account = new Account();
+        account.setId(rs.getInt("account_id"));
+        double ammount = rs.getDouble("ammount");
+        String description = rs.getString("description");
+        Operation operation;
+        switch (OperationType.valueOf(rs.getString("type"))) {
+            case PAYMENT_IN: operation = new PaymentIn(user, ammount, description, account); break;
+            case WITHDRAW: operation = new Withdraw(user, ammount, description, account); break;
+            case INTEREST: operation = new Interest(user, ammount, description, account); break;
+            default: return null;
+        }
+        if (operation instanceof Payment && rs.getObject("rate") != null) {
+            ((Payment) operation).setRate(rs.getDouble("rate"));
+        }
+        operation.setId(rs.getInt("id"));
+        operation.setDate(parseDate(rs.getString("date")));
+        return operation;
+    }
+
+    private static Date parseDate(String date) {
+        return parseDate(new SimpleDateFormat(DATE_FORMAT, Locale.US), date);
+    }
+
+    private static Date parseDate(SimpleDateFormat format, String date) {
+        try {
+            return format.parse(date);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
     public void close() throws SQLException {
+        transactions.close();
         db.close();
     }
 
-    public void logOperation(Operation operation, boolean success) throws SQLException {
+    public synchronized void logOperation(Operation operation, boolean success) throws SQLException {
         Statement st = db.createStatement();
         String sqlStart = "INSERT INTO OPERATION ";
-        String sqlFields = "(`type`, `description`, `date`, `user_id` ";
-        String sqlValues = "VALUES ('"+operation.getType()+"'," +
+        StringBuilder sqlFields = new StringBuilder("(`type`, `description`, `date`, `user_id` ");
+        StringBuilder sqlValues = new StringBuilder("VALUES ('"+operation.getType()+"'," +
                 "'"+operation.getDescription()+"'," +
                 "'"+operation.getDate()+"'," +
-                operation.getUser().getId();
+                operation.getUser().getId());
         switch(operation.getType()){
             case INTEREST: buildQueryInterest((Interest) operation,sqlFields,sqlValues);break;
             case LOG_IN: buildQueryLogOperation((LogOperation) operation,sqlFields,sqlValues);break;
@@ -173,37 +547,144 @@ public class DAOImpl implements DAO{
             case WITHDRAW: buildQueryPayment((Payment) operation,sqlFields,sqlValues);break;
             case PAYMENT_IN: buildQueryPayment((Payment) operation,sqlFields,sqlValues);break;
         }
-        sqlFields+=") ";
-        sqlValues+=") ";
+        sqlFields.append(") ");
+        sqlValues.append(") ");
         st.executeUpdate(sqlStart+sqlFields+sqlValues);
         ResultSet rs = st.getGeneratedKeys();
         if (rs.next()) {
             int generatedkey=rs.getInt(1);
+            operation.setId(generatedkey);
+            byte[] hash = chain.link(chainHead(), chainFields(operation, success));
             Statement st2 = db.createStatement();
-            String sql ="INSERT INTO History (`operation_id`,`succesfull`) " +
-                    "VALUES ("+rs.getInt(1)+", '"+success+"')";
+            String sql ="INSERT INTO History (`operation_id`,`succesfull`,`hash`) " +
+                    "VALUES ("+rs.getInt(1)+", '"+success+"', '"+HashChain.encode(hash)+"')";
             st2.execute(sql);
             st2.close();
+            chainHead = hash;
         }
         st.close();
 
     }
 
-    private void buildQueryPayment(Payment operation, String sqlFields, String sqlValues) {
-        sqlFields+= ", `ammount`,`account_id`) ";
-        sqlValues+= ", "+operation.getAmmount()+","+
-                    operation.getAccount().getId()+")";
+    private byte[] chainHead() throws SQLException {
+        if (chainHead == null) {
+            try (Statement st = db.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT hash FROM History ORDER BY rowid DESC LIMIT 1")) {
+                byte[] last = rs.next() ? HashChain.decode(rs.getString(1)) : null;
+                chainHead = last == null ? HashChain.GENESIS : last;
+            }
+        }
+        return chainHead;
+    }
+
+    // the values exactly as the insert above writes them
+    private static String[] chainFields(Operation operation, boolean success) {
+        String ammount = null, accountId = null, rate = null;
+        if (operation instanceof Payment) {
+            Payment payment = (Payment) operation;
+            ammount = String.valueOf(payment.getAmmount());
+            accountId = String.valueOf(payment.getAccount().getId());
+            if (operation.getType() != OperationType.INTEREST) rate = String.valueOf(payment.getRate());
+        }
+        return new String[]{String.valueOf(operation.getId()), String.valueOf(operation.getType()),
+                operation.getDescription(), String.valueOf(operation.getDate()),
+                String.valueOf(operation.getUser().getId()), ammount, accountId, rate, String.valueOf(success)};
+    }
+
+    public void scanHistory(Consumer<ChainRecord> consumer) throws SQLException {
+        scanHistory(db, consumer);
+    }
+
+    static void scanHistory(Connection db, Consumer<ChainRecord> consumer) throws SQLException {
+        String sql = "SELECT h.operation_id, o.type, o.description, o.date, o.user_id, " +
+                "o.ammount, o.account_id, o.rate, h.succesfull, h.hash " +
+                "FROM History h LEFT JOIN Operation o ON o.id = h.operation_id " +
+                "ORDER BY h.rowid";
+        try (Statement st = db.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String[] fields = {integer(rs, 1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        integer(rs, 5), real(rs, 6), integer(rs, 7), real(rs, 8), rs.getString(9)};
+                consumer.accept(new ChainRecord(fields, rs.getString(10)));
+            }
+        }
+    }
+
+    public void scanPostings(PostingHandler handler) throws SQLException {
+        String sql = "SELECT o.account_id, o.type, o.ammount " +
+                "FROM Operation o JOIN History h ON h.operation_id = o.id " +
+                "WHERE h.succesfull = 'true' AND o.account_id IS NOT NULL";
+        try (Statement st = db.createStatement()) {
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    handler.accept(rs.getInt(1), OperationType.valueOf(rs.getString(2)), rs.getDouble(3));
+                }
+            }
+        }
+    }
+
+    public void scanBalances(BalanceHandler handler) throws SQLException {
+        try (Statement st = db.createStatement()) {
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery("SELECT id, ammount FROM Account")) {
+                while (rs.next()) handler.accept(rs.getInt(1), rs.getDouble(2));
+            }
+        }
+    }
+
+    public int findMaxAccountId() throws SQLException {
+        try (Statement st = db.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(id) FROM Account")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public void scanStatementRows(int fromAccountId, int toAccountId, StatementRowHandler handler) throws SQLException {
+        String sql = "SELECT o.account_id, o.type, o.ammount, o.description, o.date " +
+                "FROM Operation o JOIN History h ON h.operation_id = o.id " +
+                "WHERE o.account_id BETWEEN ? AND ? AND h.succesfull = 'true' " +
+                "ORDER BY o.account_id, o.id";
+        SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+        try (PreparedStatement st = db.prepareStatement(sql)) {
+            st.setInt(1, fromAccountId);
+            st.setInt(2, toAccountId);
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    Date date = parseDate(format, rs.getString(5));
+                    handler.accept(rs.getInt(1), OperationType.valueOf(rs.getString(2)), rs.getDouble(3),
+                            rs.getString(4), date == null ? Long.MIN_VALUE : date.getTime());
+                }
+            }
+        }
+    }
+
+    private static String integer(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : String.valueOf(value);
+    }
+
+    // NUMERIC columns may hand back 100 for 100.0, so go through double
+    private static String real(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : String.valueOf(value);
+    }
+
+    private void buildQueryPayment(Payment operation, StringBuilder sqlFields, StringBuilder sqlValues) {
+        sqlFields.append(", `ammount`,`account_id`,`rate`");
+        sqlValues.append(", ").append(operation.getAmmount()).append(",")
+                .append(operation.getAccount().getId()).append(",")
+                .append(operation.getRate());
     }
 
-    private void buildQueryInterest(Interest operation, String sqlFields, String sqlValues) {
-        sqlFields+= ", `ammount`,`account_id`) ";
-        sqlValues+= ", "+operation.getAmmount()+","+
-                operation.getAccount().getId()+")";
+    private void buildQueryInterest(Interest operation, StringBuilder sqlFields, StringBuilder sqlValues) {
+        sqlFields.append(", `ammount`,`account_id`");
+        sqlValues.append(", ").append(operation.getAmmount()).append(",")
+                .append(operation.getAccount().getId());
     }
 
-    private void buildQueryLogOperation(LogOperation operation, String sqlFields, String sqlValues) {
-        sqlFields+= " )";
-        sqlValues+= " )";
+    private void buildQueryLogOperation(LogOperation operation, StringBuilder sqlFields, StringBuilder sqlValues) {
     }
 
 
@@ -10,19 +10,40 @@ import java.sql.*;
  */
 public class SQLiteDB {
 
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
     public static DAO createDAO() throws ClassNotFoundException, SQLException {
         String url = "jdbc:sqlite:./bank.db";
         return createDAO(url);
     }
 
+    /**
+     * Opens two connections to the file: one for single statements and one for
+     * transactions. In WAL mode readers on either do not block the writer, and a
+     * writer waits for the other one for up to BUSY_TIMEOUT_MILLIS. An empty file
+     * gets the current schema, an older one is migrated to it. The checked-in
+     * bank.db is already in WAL mode and at the current version, so opening it
+     * does not rewrite the file.
+     */
     public static DAO createDAO(String url) throws ClassNotFoundException, SQLException {
         Class.forName("org.sqlite.JDBC");
-        Connection conn = DriverManager.getConnection(url);
         DAOImpl dao = new DAOImpl();
-        dao.db = conn;
+        dao.db = open(url);
+        dao.transactions = open(url);
+        if (SchemaMigration.isEmpty(dao.transactions)) createSchema(dao.transactions);
+        else SchemaMigration.migrate(dao.transactions);
         return dao;
     }
 
+    private static Connection open(String url) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+            st.execute("PRAGMA journal_mode = WAL");
+        }
+        return conn;
+    }
+
     public static void initializeDB() throws ClassNotFoundException, SQLException {
         initializeDB("jdbc:sqlite:./bank.db");
     }
@@ -30,7 +51,26 @@ public class SQLiteDB {
 
     public static void initializeDB(String connectionString) throws ClassNotFoundException, SQLException {
         Class.forName("org.sqlite.JDBC");
-        Connection conn = DriverManager.getConnection("jdbc:sqlite:./bank.db");
+        Connection conn = DriverManager.getConnection(connectionString);
+        createSchema(conn);
+        conn.close();
+    }
+
+    private static void createSchema(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            createTables(conn);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void createTables(Connection conn) throws SQLException {
         String sql;
         Statement st = conn.createStatement();
 
@@ -58,6 +98,7 @@ public class SQLiteDB {
                 " `id`\tINTEGER PRIMARY KEY AUTOINCREMENT, " +
                 " `owner_id` INTEGER, " +
                 " `ammount` REAL, " +
+                " `currency` TEXT NOT NULL DEFAULT 'pln', " +
                 "FOREIGN KEY(`owner_id`) REFERENCES User(id) " +
                 ")";
         st.executeUpdate(sql);
@@ -70,18 +111,22 @@ public class SQLiteDB {
                 " `user_id` INTEGER," +
                 " `account_id` INTEGER," +
                 " `type` INTEGER," +
+                " `rate` REAL," +
                 "FOREIGN KEY(`type`) REFERENCES Operation_Types ( id ), "+
                 "FOREIGN KEY(`user_id`) REFERENCES User ( id ), "+
                 "FOREIGN KEY(`account_id`) REFERENCES Account ( id ) "+
                 ")";
         st.executeUpdate(sql);
+        st.executeUpdate(SchemaMigration.CREATE_OPERATION_INDEX);
 
         sql = "CREATE TABLE `History` ( " +
                 " `operation_id` INTEGER, " +
                 " `succesfull` INTEGER NOT NULL, " +
+                " `hash` TEXT, " +
                 " FOREIGN KEY(`operation_id`) REFERENCES Operation(id) " +
                 ")";
         st.executeUpdate(sql);
+        st.executeUpdate(SchemaMigration.CREATE_HISTORY_INDEX);
 
         sql= "CREATE TABLE `Operation_Types` ( " +
                 " `id` INTEGER, " +
@@ -91,19 +136,23 @@ public class SQLiteDB {
 
         st.executeUpdate(sql);
 
+        st.executeUpdate(SchemaMigration.CREATE_PERMISSION);
+        st.executeUpdate(SchemaMigration.CREATE_STANDING_ORDER);
+        st.executeUpdate(SchemaMigration.CREATE_PAYMENT_KEY);
+
         sql = "INSERT INTO Operation_Types " +
                 " (`id`, `name`) VALUES " +
                 " (?,?)";
         PreparedStatement pst = conn.prepareStatement(sql);
 
         for (OperationType type : OperationType.values()) {
-            pst.setString(type.getId(),type.name());
+            pst.setInt(1, type.getId());
+            pst.setString(2, type.name());
             pst.execute();
         }
         pst.close();
 
-
+        st.executeUpdate("PRAGMA user_version = " + SchemaMigration.VERSION);
         st.close();
-        conn.close();
     }
 }
@@ -0,0 +1,153 @@
+package db.dao.impl;
+
+import db.chain.HashChain;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings a bank.db created by an older version up to the current schema, in
+ * one transaction. Every step checks what is already there, so any database can
+ * be migrated. PRAGMA user_version records the result, so a current file skips
+ * the migration. Tables that are not there are left to be created; an empty
+ * file gets the whole schema from {@link SQLiteDB}.
+ */
+class SchemaMigration {
+
+    static final int VERSION = 2;
+
+    static final String CREATE_PERMISSION = "CREATE TABLE IF NOT EXISTS `Permission` ( " +
+            " `role_id` INTEGER NOT NULL, " +
+            " `operation_type` INTEGER NOT NULL, " +
+            " `owner_only` INTEGER NOT NULL DEFAULT 0, " +
+            " PRIMARY KEY(role_id, operation_type), " +
+            " FOREIGN KEY(`role_id`) REFERENCES Role(id), " +
+            " FOREIGN KEY(`operation_type`) REFERENCES Operation_Types(id) " +
+            ")";
+
+    static final String CREATE_STANDING_ORDER = "CREATE TABLE IF NOT EXISTS `StandingOrder` ( " +
+            " `id` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            " `user_id` INTEGER NOT NULL, " +
+            " `source_account_id` INTEGER NOT NULL, " +
+            " `dest_account_id` INTEGER NOT NULL, " +
+            " `ammount` REAL NOT NULL, " +
+            " `description` TEXT NOT NULL, " +
+            " `next_run` INTEGER NOT NULL, " +
+            " `interval_millis` INTEGER NOT NULL DEFAULT 0, " +
+            " `active` INTEGER NOT NULL DEFAULT 1, " +
+            " FOREIGN KEY(`user_id`) REFERENCES User(id), " +
+            " FOREIGN KEY(`source_account_id`) REFERENCES Account(id), " +
+            " FOREIGN KEY(`dest_account_id`) REFERENCES Account(id) " +
+            ")";
+
+    static final String CREATE_PAYMENT_KEY = "CREATE TABLE IF NOT EXISTS `PaymentKey` ( " +
+            " `idempotency_key` TEXT PRIMARY KEY, " +
+            " `request` TEXT NOT NULL DEFAULT '', " +
+            " `result` TEXT NOT NULL, " +
+            " `created` INTEGER NOT NULL " +
+            ")";
+
+    static final String CREATE_OPERATION_INDEX =
+            "CREATE INDEX IF NOT EXISTS `Operation_account` ON `Operation` (`account_id`, `id`)";
+    static final String CREATE_HISTORY_INDEX =
+            "CREATE INDEX IF NOT EXISTS `History_operation` ON `History` (`operation_id`)";
+
+    static void migrate(Connection conn) throws SQLException {
+        if (version(conn) >= VERSION) return;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement st = conn.createStatement()) {
+            if (lacksColumn(conn, "Account", "currency")) {
+                st.executeUpdate("ALTER TABLE `Account` ADD COLUMN `currency` TEXT NOT NULL DEFAULT 'pln'");
+            }
+            if (lacksColumn(conn, "Operation", "rate")) {
+                st.executeUpdate("ALTER TABLE `Operation` ADD COLUMN `rate` REAL");
+            }
+            boolean unchained = lacksColumn(conn, "History", "hash");
+            if (unchained) st.executeUpdate("ALTER TABLE `History` ADD COLUMN `hash` TEXT");
+            if (hasTable(conn, "Operation")) st.executeUpdate(CREATE_OPERATION_INDEX);
+            if (hasTable(conn, "History")) st.executeUpdate(CREATE_HISTORY_INDEX);
+            st.executeUpdate(CREATE_PERMISSION);
+            st.executeUpdate(CREATE_STANDING_ORDER);
+            st.executeUpdate(CREATE_PAYMENT_KEY);
+            if (lacksColumn(conn, "PaymentKey", "request")) {
+                st.executeUpdate("ALTER TABLE `PaymentKey` ADD COLUMN `request` TEXT NOT NULL DEFAULT ''");
+            }
+            if (unchained) chainHistory(conn);
+            st.executeUpdate("PRAGMA user_version = " + VERSION);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    static int version(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @return whether the file has no tables yet
+     */
+    static boolean isEmpty(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT count(*) FROM sqlite_master WHERE type = 'table'")) {
+            return rs.next() && rs.getInt(1) == 0;
+        }
+    }
+
+    private static boolean hasTable(Connection conn, String table) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            st.setString(1, table);
+            try (ResultSet rs = st.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // a table that is not there is not altered
+    private static boolean lacksColumn(Connection conn, String table, String column) throws SQLException {
+        return hasTable(conn, table) && !hasColumn(conn, table, column);
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA table_info(`" + table + "`)")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+            return false;
+        }
+    }
+
+    // hashes the existing rows in order, as if they had been chained when logged
+    private static void chainHistory(Connection conn) throws SQLException {
+        HashChain chain = new HashChain();
+        List<String> hashes = new ArrayList<>();
+        byte[][] previous = {HashChain.GENESIS};
+        DAOImpl.scanHistory(conn, record -> {
+            previous[0] = chain.link(previous[0], record.getFields());
+            hashes.add(HashChain.encode(previous[0]));
+        });
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT rowid FROM History ORDER BY rowid");
+             PreparedStatement update = conn.prepareStatement("UPDATE History SET hash = ? WHERE rowid = ?")) {
+            for (int i = 0; rs.next(); i++) {
+                update.setString(1, hashes.get(i));
+                update.setLong(2, rs.getLong(1));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package exchange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the rates of another provider.
+ * <p>
+ * Every pair has its own time to live. Within the stale window after it the
+ * cached rate is still served while one background refresh runs; past it callers
+ * wait for the refresh. Concurrent refreshes are coalesced into a single fetch.
+ */
+public class CachingRateProvider implements RateProvider {
+
+    private final RateProvider delegate;
+    private final long defaultTtl;
+    private final long staleWindow;
+    private final LongSupplier clock;
+    private final Executor executor;
+    private final Map<String, Map<String, Long>> ttls = new ConcurrentHashMap<>();
+    private final List<Consumer<List<Rate>>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot = null;
+
+    public CachingRateProvider(RateProvider delegate, Duration defaultTtl, Duration staleWindow) {
+        this(delegate, defaultTtl, staleWindow, System::nanoTime,
+                Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "rate-refresh");
+                    t.setDaemon(true);
+                    return t;
+                }));
+    }
+
+    public CachingRateProvider(RateProvider delegate, Duration defaultTtl, Duration staleWindow,
+                               LongSupplier nanoClock, Executor executor) {
+        this.delegate = delegate;
+        this.defaultTtl = defaultTtl.toNanos();
+        this.staleWindow = staleWindow.toNanos();
+        this.clock = nanoClock;
+        this.executor = executor;
+    }
+
+    public void setTtl(String from, String to, Duration ttl) {
+        ttls.computeIfAbsent(from, k -> new ConcurrentHashMap<>()).put(to, ttl.toNanos());
+        ttls.computeIfAbsent(to, k -> new ConcurrentHashMap<>()).put(from, ttl.toNanos());
+    }
+
+    /**
+     * Called with every newly fetched list of rates.
+     */
+    public void addListener(Consumer<List<Rate>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public List<Rate> loadRates() throws IOException {
+        return current(defaultTtl).rates;
+    }
+
+    /**
+     * @return a rate table fresh enough for the given pair
+     */
+    public RateTable tableFor(String from, String to) throws IOException {
+        return current(ttl(from, to)).table;
+    }
+
+    private Snapshot current(long ttl) throws IOException {
+        Snapshot s = snapshot;
+        if (s == null) return await(refresh());
+        long age = clock.getAsLong() - s.loadedAt;
+        if (age <= ttl) return s;
+        if (age <= ttl + staleWindow) {
+            refresh();
+            return s;
+        }
+        return await(refresh());
+    }
+
+    private long ttl(String from, String to) {
+        Map<String, Long> row = ttls.get(from);
+        if (row == null) return defaultTtl;
+        Long ttl = row.get(to);
+        return ttl == null ? defaultTtl : ttl;
+    }
+
+    private CompletableFuture<Snapshot> refresh() {
+        while (true) {
+            CompletableFuture<Snapshot> running = inFlight.get();
+            if (running != null) return running;
+            CompletableFuture<Snapshot> future = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, future)) {
+                fetch(future);
+                return future;
+            }
+        }
+    }
+
+    private void fetch(CompletableFuture<Snapshot> future) {
+        executor.execute(() -> {
+            try {
+                List<Rate> rates = delegate.loadRates();
+                Snapshot s = new Snapshot(rates, RateTable.compile(rates), clock.getAsLong());
+                snapshot = s;
+                for (Consumer<List<Rate>> listener : listeners) listener.accept(rates);
+                inFlight.set(null);
+                future.complete(s);
+            } catch (Throwable e) {
+                inFlight.set(null);
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static Snapshot await(CompletableFuture<Snapshot> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for rates", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw new IOException("Rate refresh failed", cause);
+        }
+    }
+
+    private static class Snapshot {
+        final List<Rate> rates;
+        final RateTable table;
+        final long loadedAt;
+
+        Snapshot(List<Rate> rates, RateTable table, long loadedAt) {
+            this.rates = rates;
+            this.table = table;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,31 +1,75 @@
 package exchange;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CurrencyExchange {
 
-    private List<Rate> rates = null;
+    private RateTable rates = null;
+    private CachingRateProvider cache = null;
+    private RateHistory history = new RateHistory();
 
     public void infitFromFile(String fileName) throws IOException {
-        String content = Files.readString(Paths.get(fileName), StandardCharsets.UTF_8);
-        ObjectMapper objectMapper = new ObjectMapper();
-        rates = objectMapper.readValue(content, new TypeReference<List<Rate>>(){});
+        initFromProvider(new FileRateProvider(fileName));
+    }
+
+    /**
+     * Loads the rates once; they stay fixed until the next init.
+     */
+    public void initFromProvider(RateProvider provider) throws IOException {
+        List<Rate> list = provider.loadRates();
+        rates = RateTable.compile(list);
+        cache = null;
+        record(list);
+    }
+
+    /**
+     * Serves rates from the cache, which refreshes them as they expire.
+     */
+    public void useCache(CachingRateProvider cache) {
+        cache.addListener(this::record);
+        this.cache = cache;
+    }
+
+    private void record(List<Rate> list) {
+        Instant now = Instant.now();
+        for (Rate rate : list) history.append(rate, now);
+    }
+
+    public RateHistory getHistory() {
+        return history;
+    }
+
+    public void setHistory(RateHistory history) {
+        this.history = history;
+    }
+
+    public double rate(String from, String to) throws Exception{
+        RateTable table = cache != null ? cache.tableFor(from, to) : rates;
+        if (table == null) throw new CurrencyExchangeIsNotInitialized();
+        double rate = table.rate(from, to);
+        if (Double.isNaN(rate)) throw UnknownCurrencyException.INSTANCE;
+        return rate;
     }
 
-    private double rate(String from, String to) throws Exception{
-        if (rates == null) throw new CurrencyExchangeIsNotInitialized();
-        for (Rate rate : rates) {
-            if (rate.getFrom().equals(from) && rate.getTo().equals(to)) { return rate.getRate(); }
-            if (rate.getFrom().equals(to) && rate.getTo().equals(from)) { return rate.getReverse(); }
+    /**
+     * Like {@link #exchange(String, String, double)} but reports failures as a result.
+     */
+    public ExchangeResult tryExchange(String from, String to, double value) {
+        if (value < 0) return ExchangeResult.NEGATIVE_VALUE;
+        RateTable table;
+        try {
+            table = cache != null ? cache.tableFor(from, to) : rates;
+        } catch (IOException e) {
+            return ExchangeResult.RATES_UNAVAILABLE;
         }
-        throw new Exception("Unknown currency from " + from + " to " + to);
+        if (table == null) return ExchangeResult.NOT_INITIALIZED;
+        double rate = table.rate(from, to);
+        if (Double.isNaN(rate)) return ExchangeResult.UNKNOWN_PAIR;
+        return new ExchangeResult.Converted(rate*value, rate);
     }
 
     public double exchange(String from, String to, double value) throws Exception {
@@ -33,4 +77,79 @@ public class CurrencyExchange {
         double rate = rate(from,to);
         return rate*value;
     }
+
+    /**
+     * Converts with the rate that was in force at the given instant.
+     */
+    public double exchange(String from, String to, double value, Instant at) throws Exception {
+        if (value < 0) throw new IllegalArgumentException("Value must be positive");
+        double rate = history.rate(from, to, at);
+        if (Double.isNaN(rate)) throw new Exception("Unknown currency from " + from + " to " + to + " at " + at);
+        return rate*value;
+    }
+
+    public double[] exchange(String from, String to, double[] values) throws Exception {
+        double[] result = new double[values.length];
+        exchange(from, to, values, result);
+        return result;
+    }
+
+    public void exchange(String from, String to, double[] values, double[] result) throws Exception {
+        if (result.length < values.length) throw new IllegalArgumentException("Result array is too short");
+        checkNotNegative(values);
+        double rate = rate(from, to);
+        // plain counted loop over primitives, C2 turns it into SIMD multiplies
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * rate;
+        }
+    }
+
+    /**
+     * Converts amounts kept in minor units (grosze, cents), rounding half up.
+     */
+    public long[] exchange(String from, String to, long[] values) throws Exception {
+        long min = 0;
+        for (long value : values) min = Math.min(min, value);
+        if (min < 0) throw new IllegalArgumentException("Value must be positive");
+        double rate = rate(from, to);
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Math.round(values[i] * rate);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a column of amounts, each in its own currency, into one target currency.
+     */
+    public double[] exchange(String[] currencies, double[] values, String to) throws Exception {
+        if (currencies.length != values.length) throw new IllegalArgumentException("Columns differ in length");
+        checkNotNegative(values);
+        double[] result = new double[values.length];
+        Map<String, Double> resolved = new HashMap<>();
+        String lastCurrency = null;
+        double lastRate = 0;
+        for (int i = 0; i < currencies.length; i++) {
+            if (!currencies[i].equals(lastCurrency)) {
+                lastCurrency = currencies[i];
+                Double rate = resolved.get(lastCurrency);
+                if (rate == null) {
+                    rate = lastCurrency.equals(to) ? 1.0 : rate(lastCurrency, to);
+                    resolved.put(lastCurrency, rate);
+                }
+                lastRate = rate;
+            }
+            result[i] = lastRate;
+        }
+        for (int i = 0; i < values.length; i++) {
+            result[i] *= values[i];
+        }
+        return result;
+    }
+
+    private static void checkNotNegative(double[] values) {
+        double min = 0;
+        for (double value : values) min = Math.min(min, value);
+        if (min < 0) throw new IllegalArgumentException("Value must be positive");
+    }
 }
@@ -0,0 +1,25 @@
+package exchange;
+
+/**
+ * Outcome of a conversion that does not throw on the expected failures.
+ */
+public sealed interface ExchangeResult {
+
+    Rejected NOT_INITIALIZED = new Rejected(Reason.NOT_INITIALIZED);
+    Rejected UNKNOWN_PAIR = new Rejected(Reason.UNKNOWN_PAIR);
+    Rejected NEGATIVE_VALUE = new Rejected(Reason.NEGATIVE_VALUE);
+    Rejected RATES_UNAVAILABLE = new Rejected(Reason.RATES_UNAVAILABLE);
+
+    record Converted(double value, double rate) implements ExchangeResult {
+    }
+
+    record Rejected(Reason reason) implements ExchangeResult {
+    }
+
+    enum Reason {
+        NOT_INITIALIZED,
+        UNKNOWN_PAIR,
+        NEGATIVE_VALUE,
+        RATES_UNAVAILABLE
+    }
+}
@@ -0,0 +1,56 @@
+package exchange;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Polls a rate feed serving the same JSON as the rates file. Polls are conditional
+ * on the last ETag, so an unchanged feed answers 304 and is not parsed again.
+ */
+public class FeedRateProvider implements RateProvider {
+
+    private final URI uri;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String etag = null;
+    private List<Rate> lastRates = null;
+
+    public FeedRateProvider(URI uri) {
+        this(uri, Duration.ofSeconds(5));
+    }
+
+    public FeedRateProvider(URI uri, Duration timeout) {
+        this.uri = uri;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public synchronized List<Rate> loadRates() throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).GET();
+        if (etag != null && lastRates != null) request.header("If-None-Match", etag);
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while polling " + uri, e);
+        }
+        if (response.statusCode() == 304 && lastRates != null) return lastRates;
+        if (response.statusCode() != 200) {
+            throw new IOException("Rate feed " + uri + " answered " + response.statusCode());
+        }
+        lastRates = objectMapper.readValue(response.body(), new TypeReference<List<Rate>>(){});
+        etag = response.headers().firstValue("ETag").orElse(null);
+        return lastRates;
+    }
+}
@@ -0,0 +1,26 @@
+package exchange;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class FileRateProvider implements RateProvider {
+
+    private final String fileName;
+
+    public FileRateProvider(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @Override
+    public List<Rate> loadRates() throws IOException {
+        String content = Files.readString(Paths.get(fileName), StandardCharsets.UTF_8);
+        ObjectMapper objectMapper = new ObjectMapper();
+        return objectMapper.readValue(content, new TypeReference<List<Rate>>(){});
+    }
+}
@@ -0,0 +1,182 @@
+package exchange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historical rates per currency pair, kept as primitive columns sorted by time.
+ * A lookup returns the rate that was in force at the given instant.
+ */
+public class RateHistory {
+
+    private static final int MAGIC = 0x52484953; // "RHIS"
+    private static final int VERSION = 1;
+
+    private final Map<String, Map<String, Series>> series = new ConcurrentHashMap<>();
+
+    public void append(Rate rate, Instant at) {
+        append(rate.getFrom(), rate.getTo(), rate.getRate(), rate.getReverse(), at);
+    }
+
+    public void append(String from, String to, double rate, double reverse, Instant at) {
+        series.computeIfAbsent(from, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(to, k -> new Series())
+                .append(at.toEpochMilli(), rate, reverse);
+    }
+
+    /**
+     * @return the rate from -> to in force at the given instant or NaN when there is none
+     */
+    public double rate(String from, String to, Instant at) {
+        long time = at.toEpochMilli();
+        Series direct = find(from, to);
+        if (direct != null) {
+            double rate = direct.rateAt(time, false);
+            if (!Double.isNaN(rate)) return rate;
+        }
+        Series reverse = find(to, from);
+        if (reverse != null) return reverse.rateAt(time, true);
+        return Double.NaN;
+    }
+
+    public int size(String from, String to) {
+        Series s = find(from, to);
+        return s == null ? 0 : s.size();
+    }
+
+    private Series find(String from, String to) {
+        Map<String, Series> row = series.get(from);
+        return row == null ? null : row.get(to);
+    }
+
+    /**
+     * Writes every pair as a block of three columns: timestamps, rates and reverse rates.
+     */
+    public void save(Path file) throws IOException {
+        List<String[]> pairs = new ArrayList<>();
+        List<Series> columns = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Series>> row : series.entrySet()) {
+            for (Map.Entry<String, Series> cell : row.getValue().entrySet()) {
+                pairs.add(new String[]{row.getKey(), cell.getKey()});
+                columns.add(cell.getValue().copy());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pairs.size());
+            for (int i = 0; i < pairs.size(); i++) {
+                Series s = columns.get(i);
+                out.writeUTF(pairs.get(i)[0]);
+                out.writeUTF(pairs.get(i)[1]);
+                out.writeInt(s.size);
+                for (int j = 0; j < s.size; j++) out.writeLong(s.times[j]);
+                for (int j = 0; j < s.size; j++) out.writeDouble(s.rates[j]);
+                for (int j = 0; j < s.size; j++) out.writeDouble(s.reverses[j]);
+            }
+        }
+    }
+
+    public static RateHistory load(Path file) throws IOException {
+        RateHistory history = new RateHistory();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a rate history file " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported rate history version " + version);
+            int pairs = in.readInt();
+            for (int i = 0; i < pairs; i++) {
+                String from = in.readUTF();
+                String to = in.readUTF();
+                int size = in.readInt();
+                Series s = new Series(Math.max(size, Series.INITIAL_CAPACITY));
+                for (int j = 0; j < size; j++) s.times[j] = in.readLong();
+                for (int j = 0; j < size; j++) s.rates[j] = in.readDouble();
+                for (int j = 0; j < size; j++) s.reverses[j] = in.readDouble();
+                s.size = size;
+                history.series.computeIfAbsent(from, k -> new ConcurrentHashMap<>()).put(to, s);
+            }
+        }
+        return history;
+    }
+
+    private static class Series {
+        static final int INITIAL_CAPACITY = 16;
+
+        long[] times;
+        double[] rates;
+        double[] reverses;
+        int size;
+
+        Series() {
+            this(INITIAL_CAPACITY);
+        }
+
+        Series(int capacity) {
+            times = new long[capacity];
+            rates = new double[capacity];
+            reverses = new double[capacity];
+        }
+
+        synchronized void append(long time, double rate, double reverse) {
+            int index = size;
+            // rates normally arrive in order, so the common case is a plain append
+            if (size > 0 && times[size - 1] >= time) {
+                index = Arrays.binarySearch(times, 0, size, time);
+                if (index >= 0) {
+                    rates[index] = rate;
+                    reverses[index] = reverse;
+                    return;
+                }
+                index = -index - 1;
+            }
+            if (size == times.length) grow();
+            if (index < size) {
+                System.arraycopy(times, index, times, index + 1, size - index);
+                System.arraycopy(rates, index, rates, index + 1, size - index);
+                System.arraycopy(reverses, index, reverses, index + 1, size - index);
+            }
+            times[index] = time;
+            rates[index] = rate;
+            reverses[index] = reverse;
+            size++;
+        }
+
+        synchronized double rateAt(long time, boolean reverse) {
+            int index = Arrays.binarySearch(times, 0, size, time);
+            if (index < 0) index = -index - 2;
+            if (index < 0) return Double.NaN;
+            return reverse ? reverses[index] : rates[index];
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized Series copy() {
+            Series s = new Series(Math.max(size, INITIAL_CAPACITY));
+            System.arraycopy(times, 0, s.times, 0, size);
+            System.arraycopy(rates, 0, s.rates, 0, size);
+            System.arraycopy(reverses, 0, s.reverses, 0, size);
+            s.size = size;
+            return s;
+        }
+
+        private void grow() {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            rates = Arrays.copyOf(rates, capacity);
+            reverses = Arrays.copyOf(reverses, capacity);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package exchange;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of the current exchange rates.
+ */
+public interface RateProvider {
+    List<Rate> loadRates() throws IOException;
+}
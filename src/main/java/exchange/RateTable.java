@@ -0,0 +1,38 @@
+package exchange;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rates resolved once into a from -> to -> rate lookup, so converting does not
+ * scan the whole rate list for every value.
+ */
+public class RateTable {
+
+    private final Map<String, Map<String, Double>> table;
+
+    private RateTable(Map<String, Map<String, Double>> table) {
+        this.table = table;
+    }
+
+    public static RateTable compile(List<Rate> rates) {
+        Map<String, Map<String, Double>> table = new HashMap<>();
+        for (Rate rate : rates) {
+            // the first matching rate wins, in either direction, as in the list scan
+            table.computeIfAbsent(rate.getFrom(), k -> new HashMap<>()).putIfAbsent(rate.getTo(), rate.getRate());
+            table.computeIfAbsent(rate.getTo(), k -> new HashMap<>()).putIfAbsent(rate.getFrom(), rate.getReverse());
+        }
+        return new RateTable(table);
+    }
+
+    /**
+     * @return the rate from -> to or NaN when the pair is unknown
+     */
+    public double rate(String from, String to) {
+        Map<String, Double> row = table.get(from);
+        if (row == null) return Double.NaN;
+        Double rate = row.get(to);
+        return rate == null ? Double.NaN : rate;
+    }
+}
@@ -0,0 +1,14 @@
+package exchange;
+
+/**
+ * Thrown for a currency pair without a rate. A single instance without a stack
+ * trace is reused, so rejecting bad pairs costs no more than converting.
+ */
+public class UnknownCurrencyException extends Exception {
+
+    static final UnknownCurrencyException INSTANCE = new UnknownCurrencyException();
+
+    private UnknownCurrencyException() {
+        super("Unknown currency pair", null, false, false);
+    }
+}
@@ -7,6 +7,7 @@ public class Account {
     private int id;
     private double ammount;
     private User owner;
+    private String currency;
 
     public boolean income(double ammount){
         if (ammount<0) return false;
@@ -43,4 +44,12 @@ public class Account {
     public void setOwner(User owner) {
         this.owner = owner;
     }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
 }
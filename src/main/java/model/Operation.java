@@ -21,6 +21,14 @@ public abstract class Operation {
         this.type=operationType;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public OperationType getType() {
         return type;
     }
@@ -36,4 +44,8 @@ public abstract class Operation {
     public Date getDate() {
         return date;
     }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
 }
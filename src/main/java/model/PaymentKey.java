@@ -0,0 +1,44 @@
+package model;
+
+/**
+ * One row of the PaymentKey table: the request made under an idempotency key
+ * and its result, PENDING while the payment runs.
+ */
+public class PaymentKey {
+    private String key;
+    private String request;
+    private String result;
+    private long created;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public void setRequest(String request) {
+        this.request = request;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(long created) {
+        this.created = created;
+    }
+}
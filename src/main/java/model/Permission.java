@@ -0,0 +1,37 @@
+package model;
+
+import model.operations.OperationType;
+
+/**
+ * One row of the Permission table: a role may invoke an operation type,
+ * optionally only on its own behalf.
+ */
+public class Permission {
+    private int roleId;
+    private OperationType operationType;
+    private boolean ownerOnly;
+
+    public int getRoleId() {
+        return roleId;
+    }
+
+    public void setRoleId(int roleId) {
+        this.roleId = roleId;
+    }
+
+    public OperationType getOperationType() {
+        return operationType;
+    }
+
+    public void setOperationType(OperationType operationType) {
+        this.operationType = operationType;
+    }
+
+    public boolean isOwnerOnly() {
+        return ownerOnly;
+    }
+
+    public void setOwnerOnly(boolean ownerOnly) {
+        this.ownerOnly = ownerOnly;
+    }
+}
@@ -0,0 +1,95 @@
+package model;
+
+/**
+ * One row of the StandingOrder table: a transfer made at nextRun and, when
+ * the interval is positive, repeated every interval after it.
+ */
+public class StandingOrder {
+    private int id;
+    private User user;
+    private int sourceAccountId;
+    private int destAccountId;
+    private double ammount;
+    private String description;
+    private long nextRun;
+    private long intervalMillis;
+    private boolean active = true;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public int getSourceAccountId() {
+        return sourceAccountId;
+    }
+
+    public void setSourceAccountId(int sourceAccountId) {
+        this.sourceAccountId = sourceAccountId;
+    }
+
+    public int getDestAccountId() {
+        return destAccountId;
+    }
+
+    public void setDestAccountId(int destAccountId) {
+        this.destAccountId = destAccountId;
+    }
+
+    public double getAmmount() {
+        return ammount;
+    }
+
+    public void setAmmount(double ammount) {
+        this.ammount = ammount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return epoch millis of the next transfer
+     */
+    public long getNextRun() {
+        return nextRun;
+    }
+
+    public void setNextRun(long nextRun) {
+        this.nextRun = nextRun;
+    }
+
+    /**
+     * @return millis between transfers, 0 for a single future-dated transfer
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+}
@@ -0,0 +1,17 @@
+package model.exceptions;
+
+/**
+ * Login refused before checking credentials because of too many attempts.
+ */
+public class LoginThrottledException extends UserUnnkownOrBadPasswordException {
+    private final long retryAfterMillis;
+
+    public LoginThrottledException(long retryAfterMillis) {
+        super("Too many logins, try again");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
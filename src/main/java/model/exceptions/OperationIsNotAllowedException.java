@@ -4,7 +4,22 @@ package model.exceptions;
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class OperationIsNotAllowedException extends Exception{
+
+    /**
+     * Shared, stackless instances for the rejection paths.
+     */
+    public static final OperationIsNotAllowedException UNAUTHORIZED =
+            new OperationIsNotAllowedException("Unauthorized operation", false);
+    public static final OperationIsNotAllowedException NO_SESSION =
+            new OperationIsNotAllowedException("Session expired or unknown", false);
+    public static final OperationIsNotAllowedException VELOCITY_LIMIT =
+            new OperationIsNotAllowedException("Payment limit exceeded, try again later", false);
+
     public OperationIsNotAllowedException(String msg) {
         super(msg);
     }
+
+    protected OperationIsNotAllowedException(String msg, boolean writableStackTrace) {
+        super(msg, null, false, writableStackTrace);
+    }
 }
@@ -11,6 +11,7 @@ public abstract class Payment extends Operation{
 
     private double ammount;
     private Account account;
+    private double rate = 1;
 
     public Payment(User user, double ammount, String description, Account account, OperationType operationType) {
         super(user, description, operationType);
@@ -25,4 +26,15 @@ public abstract class Payment extends Operation{
     public Account getAccount() {
         return account;
     }
+
+    /**
+     * Exchange rate applied when the payment crossed currencies, 1 otherwise.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
 }
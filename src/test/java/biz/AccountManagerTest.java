@@ -1,26 +1,47 @@
 package biz;
 
+import biz.batch.PayrollLine;
+import biz.batch.PayrollResult;
+import biz.batch.Transfer;
+import biz.engine.CommandEngine;
+import biz.hot.HotAccounts;
+import biz.schedule.StandingOrderEngine;
+import biz.session.TokenClaims;
+import biz.velocity.VelocityLimits;
 import db.dao.DAO;
+import exchange.CurrencyExchange;
 import model.Account;
 import model.Operation;
 import model.Role;
 import model.User;
 import model.exceptions.OperationIsNotAllowedException;
 import model.exceptions.UserUnnkownOrBadPasswordException;
+import model.operations.Payment;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import java.lang.reflect.Field;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -156,6 +177,500 @@ class AccountManagerTest {
         assertEquals(1000.0, account.getAmmount());
     }
 
+    @Test
+    @DisplayName("tryPaymentOut - nieautoryzowana operacja zwraca odrzucenie bez wyjątku")
+    void tryPaymentOut_unauthorizedReturnsRejection() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 1000.0, user);
+
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(false);
+
+        // When
+        PaymentResult result = accountManager.tryPaymentOut(user, 300.0, "Wypłata", 1);
+
+        // Then
+        assertSame(PaymentResult.UNAUTHORIZED, result);
+        assertEquals(1000.0, account.getAmmount());
+        verify(mockHistory).logUnauthorizedOperation(any(), eq(false));
+        verify(mockDao, never()).updateAccountState(any());
+    }
+
+    @Test
+    @DisplayName("tryPaymentOut - z prawdziwą historią odrzucenie jest zapisywane jako nieudana operacja")
+    void tryPaymentOut_unauthorizedWithRealHistory() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 1000.0, user);
+        setField(accountManager, "history", new BankHistory(mockDao));
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(false);
+
+        // When
+        PaymentResult result = accountManager.tryPaymentOut(user, 300.0, "Wypłata", 1);
+
+        // Then
+        assertSame(PaymentResult.UNAUTHORIZED, result);
+        verify(mockDao).logOperation(any(Withdraw.class), eq(false));
+    }
+
+    @Test
+    @DisplayName("tryPaymentOut - wypłaty odrzucone z braku środków nie zużywają limitu")
+    void tryPaymentOut_declinedDoesNotUseVelocity() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 0.0, user);
+        accountManager.getVelocityGuard().setLimits(1, new VelocityLimits(2, 10_000, 100, 10_000));
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockDao.findAccountById(2)).thenReturn(createAccount(2, 0.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+
+        // When
+        PaymentResult first = accountManager.tryPaymentOut(user, 100.0, "Wypłata", 1);
+        PaymentResult second = accountManager.tryPaymentOut(user, 100.0, "Wypłata", 1);
+        PaymentResult transfer = accountManager.tryInternalPayment(user, 100.0, "Transfer", 1, 2);
+
+        // Then
+        assertSame(PaymentResult.FAILURE, first);
+        assertSame(PaymentResult.FAILURE, second);
+        assertSame(PaymentResult.FAILURE, transfer);
+        assertTrue(accountManager.getVelocityGuard().tryAcquire(user, 1, 100.0));
+        assertTrue(accountManager.getVelocityGuard().tryAcquire(user, 1, 100.0));
+    }
+
+    @Test
+    @DisplayName("tryInternalPayment - powodzenie transferu")
+    void tryInternalPayment_success() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account sourceAccount = createAccount(1, 1000.0, user);
+        Account destAccount = createAccount(2, 500.0, user);
+
+        when(mockDao.findAccountById(1)).thenReturn(sourceAccount);
+        when(mockDao.findAccountById(2)).thenReturn(destAccount);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.updateAccountState(any())).thenReturn(true);
+
+        // When
+        PaymentResult result = accountManager.tryInternalPayment(user, 300.0, "Transfer", 1, 2);
+
+        // Then
+        assertSame(PaymentResult.SUCCESS, result);
+        assertEquals(700.0, sourceAccount.getAmmount());
+    }
+
+    @Test
+    @DisplayName("tryPaymentOut - przekroczony limit wypłat na minutę jest odrzucany bez zmiany salda")
+    void tryPaymentOut_velocityLimitReturnsRejection() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 1000.0, user);
+        accountManager.getVelocityGuard().setLimits(1, new VelocityLimits(2, 10_000, 100, 10_000));
+
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.updateAccountState(any())).thenReturn(true);
+
+        // When
+        accountManager.tryPaymentOut(user, 100.0, "Wypłata", 1);
+        accountManager.tryPaymentOut(user, 100.0, "Wypłata", 1);
+        PaymentResult result = accountManager.tryPaymentOut(user, 100.0, "Wypłata", 1);
+
+        // Then
+        assertSame(PaymentResult.VELOCITY_LIMIT, result);
+        assertEquals(800.0, account.getAmmount());
+        verify(mockDao, times(2)).updateAccountState(account);
+        assertThrows(OperationIsNotAllowedException.class,
+                () -> accountManager.internalPayment(user, 100.0, "Transfer", 1, 2));
+    }
+
+    @Test
+    @DisplayName("paymentIn - gorące konto zmienia saldo w pamięci, bez zapisu wiersza przy każdej wpłacie")
+    void paymentIn_hotAccountSkipsRowWrite() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        accountManager.promoteHotAccount(1);
+
+        // When
+        boolean first = accountManager.paymentIn(user, 100.0, "Wpłata", 1);
+        boolean second = accountManager.paymentIn(user, 50.0, "Wpłata", 1);
+
+        // Then
+        assertTrue(first && second);
+        assertEquals(1150.0, accountManager.findHotAccount(1).getAmmount(), 0.0001);
+        verify(mockDao, times(1)).findAccountById(1);
+        verify(mockDao, never()).updateAccountState(any());
+    }
+
+    @Test
+    @DisplayName("idempotentPaymentIn - ponowienie z tym samym kluczem nie wpłaca drugi raz")
+    void idempotentPaymentIn_retryAppliedOnce() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 1000.0, user);
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockDao.updateAccountState(account)).thenReturn(true);
+
+        // When
+        boolean first = accountManager.idempotentPaymentIn("k1", user, 100.0, "Wpłata", 1);
+        boolean retry = accountManager.idempotentPaymentIn("k1", user, 100.0, "Wpłata", 1);
+
+        // Then
+        assertTrue(first && retry);
+        assertEquals(1100.0, account.getAmmount());
+        verify(mockDao, times(1)).updateAccountState(account);
+        verify(mockDao).insertPaymentKey(eq("1:k1"), eq("in:1:100.0"), eq("PENDING"), anyLong());
+        verify(mockDao).updatePaymentKey("1:k1", "SUCCESS");
+    }
+
+    @Test
+    @DisplayName("idempotentPaymentIn - klucz użyty dla innej kwoty jest odrzucany")
+    void idempotentPaymentIn_otherRequestRejected() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 1000.0, user);
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockDao.updateAccountState(account)).thenReturn(true);
+        accountManager.idempotentPaymentIn("k1", user, 100.0, "Wpłata", 1);
+
+        // When
+        assertThrows(IllegalArgumentException.class,
+                () -> accountManager.idempotentPaymentIn("k1", user, 500.0, "Wpłata", 1));
+
+        // Then
+        assertEquals(1100.0, account.getAmmount());
+        verify(mockDao, times(1)).updateAccountState(account);
+    }
+
+    @Test
+    @DisplayName("internalPayments - paczka przelewów: wyniki w kolejności, konta czytane raz, zapis falami")
+    void internalPayments_batchInWaves() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account a = createAccount(1, 100.0, user);
+        Account b = createAccount(2, 0.0, user);
+        Account c = createAccount(3, 0.0, user);
+        Account d = createAccount(4, 50.0, user);
+        when(mockDao.findAccountById(1)).thenReturn(a);
+        when(mockDao.findAccountById(2)).thenReturn(b);
+        when(mockDao.findAccountById(3)).thenReturn(c);
+        when(mockDao.findAccountById(4)).thenReturn(d);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        List<Transfer> transfers = List.of(
+                new Transfer(user, 80.0, "t1", 1, 2),
+                new Transfer(user, 60.0, "t2", 2, 3),
+                new Transfer(user, 60.0, "t3", 4, 3),
+                new Transfer(user, 30.0, "t4", 1, 3));
+
+        // When
+        List<PaymentResult> results = accountManager.internalPayments(transfers);
+
+        // Then
+        assertEquals(List.of(PaymentResult.SUCCESS, PaymentResult.SUCCESS, PaymentResult.FAILURE, PaymentResult.FAILURE), results);
+        assertEquals(20.0, a.getAmmount());
+        assertEquals(20.0, b.getAmmount());
+        assertEquals(60.0, c.getAmmount());
+        assertEquals(50.0, d.getAmmount());
+        verify(mockDao, times(1)).findAccountById(1);
+        verify(mockDao, never()).updateAccountState(any());
+        verify(mockDao, atLeast(2)).updateAccountStates(any());
+    }
+
+    @Test
+    @DisplayName("internalPayments - nieautoryzowany przelew w fali nie przerywa paczki, cała fala jest logowana")
+    void internalPayments_unauthorizedInWave() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        User attacker = createUser(2, "Ewa");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 100.0, user));
+        when(mockDao.findAccountById(2)).thenReturn(createAccount(2, 0.0, user));
+        when(mockDao.findAccountById(3)).thenReturn(createAccount(3, 100.0, user));
+        when(mockDao.findAccountById(4)).thenReturn(createAccount(4, 0.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        setField(accountManager, "history", new BankHistory(mockDao));
+        List<Transfer> transfers = List.of(
+                new Transfer(user, 80.0, "t1", 1, 2),
+                new Transfer(attacker, 60.0, "t2", 3, 4));
+
+        // When
+        List<PaymentResult> results = accountManager.internalPayments(transfers);
+
+        // Then
+        assertEquals(List.of(PaymentResult.SUCCESS, PaymentResult.UNAUTHORIZED), results);
+        verify(mockDao, times(2)).logOperation(any(), eq(true));
+        verify(mockDao, times(1)).logOperation(any(), eq(false));
+    }
+
+    @Test
+    @DisplayName("startEngine - płatności idą przez silnik poleceń, bez zapisów pojedynczych sald")
+    void engineMode_routesPayments(@TempDir Path directory) throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 100.0, user));
+        when(mockDao.findAccountById(2)).thenReturn(createAccount(2, 0.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        doAnswer(invocation -> {
+            DAO.BalanceHandler handler = invocation.getArgument(0);
+            handler.accept(1, 100.0);
+            handler.accept(2, 0.0);
+            return null;
+        }).when(mockDao).scanBalances(any());
+        accountManager.startEngine(new CommandEngine(directory, 64, 16, 1_000, false));
+
+        // When
+        boolean in = accountManager.paymentIn(user, 50.0, "Wpłata", 1);
+        PaymentResult transfer = accountManager.tryInternalPayment(user, 120.0, "Transfer", 1, 2);
+        boolean out = accountManager.paymentOut(user, 100.0, "Wypłata", 1);
+        accountManager.stopEngine();
+
+        // Then
+        assertTrue(in);
+        assertSame(PaymentResult.SUCCESS, transfer);
+        assertFalse(out);
+        verify(mockDao, never()).updateAccountState(any());
+        verify(mockHistory, times(4)).logOperation(any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("tryInternalPayment - błąd dziennika silnika zgłaszany jako SQLException")
+    void engineMode_journalFailureIsSQLException() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 100.0, user));
+        when(mockDao.findAccountById(2)).thenReturn(createAccount(2, 0.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        CommandEngine engine = mock(CommandEngine.class);
+        when(engine.submit(any())).thenReturn(CompletableFuture.failedFuture(new IOException("disk full")));
+        accountManager.startEngine(engine);
+
+        // When
+        SQLException thrown = assertThrows(SQLException.class,
+                () -> accountManager.tryInternalPayment(user, 10.0, "Transfer", 1, 2));
+
+        // Then
+        assertInstanceOf(IOException.class, thrown.getCause());
+    }
+
+    @Test
+    @DisplayName("shutdown - historia opróżniana dopiero po zatrzymaniu pozostałych wątków")
+    void shutdown_drainsHistoryLast() throws Exception {
+        // Given
+        HotAccounts hotAccounts = mock(HotAccounts.class);
+        StandingOrderEngine standingOrders = mock(StandingOrderEngine.class);
+        CommandEngine engine = mock(CommandEngine.class);
+        accountManager.hotAccounts = hotAccounts;
+        accountManager.standingOrders = standingOrders;
+        accountManager.engine = engine;
+
+        // When
+        accountManager.shutdown();
+
+        // Then
+        InOrder order = inOrder(hotAccounts, standingOrders, engine, mockHistory);
+        order.verify(hotAccounts).stop();
+        order.verify(standingOrders).stop();
+        order.verify(engine).stop();
+        order.verify(mockHistory).stopAsync();
+    }
+
+    @Test
+    @DisplayName("payroll - jedno obciążenie sumą i jeden zapis wszystkich uznań")
+    void payroll_debitsTotalOnce() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.fanOut(any(), any())).thenReturn(new int[0]);
+        List<PayrollLine> lines = List.of(
+                new PayrollLine(2, 100.10, "Pensja"),
+                new PayrollLine(3, 200.20, "Pensja"),
+                new PayrollLine(4, 300.30, "Pensja"));
+
+        // When
+        PayrollResult result = accountManager.payroll(user, 1, "Wypłaty", lines);
+
+        // Then
+        assertTrue(result.isSuccess());
+        ArgumentCaptor<Withdraw> debit = ArgumentCaptor.forClass(Withdraw.class);
+        verify(mockDao, times(1)).fanOut(debit.capture(), argThat(credits -> credits.size() == 3));
+        assertEquals(600.60, debit.getValue().getAmmount(), 0.0001);
+        verify(mockDao, times(1)).findAccountById(anyInt());
+        verify(mockDao, never()).updateAccountState(any());
+        verify(mockHistory, never()).logOperation(any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("payroll - kwoty z ułamkiem grosza zaokrąglane tak samo dla obciążenia i uznań")
+    void payroll_subCentLinesRoundedConsistently() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.fanOut(any(), any())).thenReturn(new int[0]);
+        List<PayrollLine> lines = List.of(
+                new PayrollLine(2, 10.005, "Pensja"),
+                new PayrollLine(3, 10.005, "Pensja"),
+                new PayrollLine(4, 0.014, "Pensja"));
+
+        // When
+        PayrollResult result = accountManager.payroll(user, 1, "Wypłaty", lines);
+
+        // Then
+        assertTrue(result.isSuccess());
+        ArgumentCaptor<Withdraw> debit = ArgumentCaptor.forClass(Withdraw.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PaymentIn>> credits = ArgumentCaptor.forClass(List.class);
+        verify(mockDao).fanOut(debit.capture(), credits.capture());
+        long creditedCents = 0;
+        for (PaymentIn credit : credits.getValue()) {
+            double cents = credit.getAmmount() * 100;
+            assertEquals(Math.round(cents), cents, 1e-6);
+            creditedCents += Math.round(cents);
+        }
+        assertEquals(Math.round(debit.getValue().getAmmount() * 100), creditedCents);
+    }
+
+    @Test
+    @DisplayName("payroll - liczona we własnym limicie, a nie w limicie pojedynczych płatności")
+    void payroll_ownVelocityLimit() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 100_000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.fanOut(any(), any())).thenReturn(new int[0]);
+        accountManager.getVelocityGuard().setLimits(1, new VelocityLimits(10, 10_000, 60, 50_000));
+        accountManager.getPayrollVelocityGuard().setLimits(1, new VelocityLimits(2, 40_000, 10, 100_000));
+        List<PayrollLine> lines = List.of(
+                new PayrollLine(2, 8_000, "Pensja"),
+                new PayrollLine(3, 7_000, "Pensja"));
+
+        // When
+        PayrollResult first = accountManager.payroll(user, 1, "Wypłaty", lines);
+        PayrollResult second = accountManager.payroll(user, 1, "Wypłaty", lines);
+        PayrollResult third = accountManager.payroll(user, 1, "Wypłaty", lines);
+
+        // Then
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertSame(PaymentResult.VELOCITY_LIMIT, third.getResult());
+        verify(mockDao, times(2)).fanOut(any(), any());
+    }
+
+    @Test
+    @DisplayName("payroll - brak uprawnień zwraca odrzucenie, z prawdziwą historią")
+    void payroll_unauthorizedReturnsRejection() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(false);
+        setField(accountManager, "history", new BankHistory(mockDao));
+
+        // When
+        PayrollResult result = accountManager.payroll(user, 1, "Wypłaty", List.of(new PayrollLine(2, 10.0, "Pensja")));
+
+        // Then
+        assertSame(PaymentResult.UNAUTHORIZED, result.getResult());
+        verify(mockDao, never()).fanOut(any(), any());
+        verify(mockDao).logOperation(any(Withdraw.class), eq(false));
+    }
+
+    @Test
+    @DisplayName("payroll - nieudana lub odrzucona wypłata nie zużywa limitu")
+    void payroll_failedRunDoesNotUseVelocity() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.fanOut(any(), any())).thenReturn(new int[]{0}, null, new int[0], new int[0]);
+        accountManager.getPayrollVelocityGuard().setLimits(1, new VelocityLimits(2, 40_000, 10, 100_000));
+        List<PayrollLine> lines = List.of(new PayrollLine(2, 10.0, "Pensja"));
+
+        // When
+        PayrollResult invalid = accountManager.payroll(user, 1, "Wypłaty", lines);
+        PayrollResult failed = accountManager.payroll(user, 1, "Wypłaty", lines);
+        PayrollResult first = accountManager.payroll(user, 1, "Wypłaty", lines);
+        PayrollResult second = accountManager.payroll(user, 1, "Wypłaty", lines);
+
+        // Then
+        assertFalse(invalid.isSuccess());
+        assertSame(PaymentResult.FAILURE, failed.getResult());
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+    }
+
+    @Test
+    @DisplayName("payroll - z cache usuwani tylko właściciele kont biorących udział")
+    void payroll_evictsOnlyInvolvedOwners() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        User payee = createUser(2, "Anna Nowak");
+        User other = createUser(3, "Ewa");
+        Account source = createAccount(1, 1000.0, user);
+        when(mockDao.findAccountById(1)).thenReturn(source);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.fanOut(any(), any())).thenReturn(new int[0]);
+        accountManager.cache.putAccounts(1, List.of(source), accountManager.cache.version(1));
+        accountManager.cache.putAccounts(2, List.of(createAccount(2, 0.0, payee)), accountManager.cache.version(2));
+        accountManager.cache.putAccounts(3, List.of(createAccount(3, 0.0, other)), accountManager.cache.version(3));
+
+        // When
+        accountManager.payroll(user, 1, "Wypłaty", List.of(new PayrollLine(2, 10.0, "Pensja")));
+
+        // Then
+        assertNull(accountManager.cache.accounts(1));
+        assertNull(accountManager.cache.accounts(2));
+        assertNotNull(accountManager.cache.accounts(3));
+    }
+
+    @Test
+    @DisplayName("payroll - błędne pozycje są zgłaszane i nic nie jest wypłacane")
+    void payroll_invalidLinesPayNothing() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.fanOut(any(), any())).thenReturn(new int[]{1});
+        List<PayrollLine> invalid = List.of(
+                new PayrollLine(2, 0.0, "Pensja"),
+                new PayrollLine(1, 10.0, "Pensja"),
+                new PayrollLine(3, 10.0, "Pensja"));
+        List<PayrollLine> unknownAccount = List.of(
+                new PayrollLine(2, 10.0, "Pensja"),
+                new PayrollLine(99, 10.0, "Pensja"));
+
+        // When
+        PayrollResult first = accountManager.payroll(user, 1, "Wypłaty", invalid);
+        PayrollResult second = accountManager.payroll(user, 1, "Wypłaty", unknownAccount);
+
+        // Then
+        assertFalse(first.isSuccess());
+        assertEquals(List.of(0, 1), List.copyOf(first.getLineErrors().keySet()));
+        assertFalse(second.isSuccess());
+        assertEquals(List.of(1), List.copyOf(second.getLineErrors().keySet()));
+        verify(mockDao, times(1)).fanOut(any(), any());
+    }
+
+    @Test
+    @DisplayName("paymentOut - wyjątek odrzucenia jest współdzielony i bez stosu wywołań")
+    void paymentOut_unauthorizedExceptionIsPreallocated() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        when(mockDao.findAccountById(1)).thenReturn(createAccount(1, 1000.0, user));
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(false);
+
+        // When
+        OperationIsNotAllowedException first = assertThrows(OperationIsNotAllowedException.class,
+                () -> accountManager.paymentOut(user, 300.0, "Wypłata", 1));
+        OperationIsNotAllowedException second = assertThrows(OperationIsNotAllowedException.class,
+                () -> accountManager.paymentOut(user, 300.0, "Wypłata", 1));
+
+        // Then
+        assertSame(first, second);
+        assertEquals(0, first.getStackTrace().length);
+    }
+
     @Test
     @DisplayName("paymentOut - niewystarczające środki")
     void paymentOut_insufficientFunds() throws Exception {
@@ -261,6 +776,163 @@ class AccountManagerTest {
         verify(mockDao, never()).updateAccountState(destAccount);
     }
 
+    @Test
+    @DisplayName("internalPayment - przelew między walutami przelicza kwotę i zapisuje kurs")
+    void internalPayment_crossCurrencyConverts() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account sourceAccount = createAccount(1, 1000.0, user);
+        sourceAccount.setCurrency("usd");
+        Account destAccount = createAccount(2, 500.0, user);
+        destAccount.setCurrency("pln");
+        CurrencyExchange exchange = new CurrencyExchange();
+        exchange.infitFromFile("src/test/resources/test_rates.json");
+        setField(accountManager, "exchange", exchange);
+
+        when(mockDao.findAccountById(1)).thenReturn(sourceAccount);
+        when(mockDao.findAccountById(2)).thenReturn(destAccount);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+        when(mockDao.updateAccountState(any())).thenReturn(true);
+
+        // When
+        boolean result = accountManager.internalPayment(user, 100.0, "Transfer", 1, 2);
+
+        // Then
+        assertTrue(result);
+        assertEquals(900.0, sourceAccount.getAmmount(), 0.0001);
+        assertEquals(860.0, destAccount.getAmmount(), 0.0001);
+        ArgumentCaptor<Operation> operations = ArgumentCaptor.forClass(Operation.class);
+        verify(mockHistory, times(2)).logOperation(operations.capture(), eq(true));
+        Payment payment = (Payment) operations.getAllValues().get(1);
+        assertEquals(360.0, payment.getAmmount(), 0.0001);
+        assertEquals(3.6, payment.getRate(), 0.0001);
+    }
+
+    @Test
+    @DisplayName("internalPayment - nieznana para walut nie zmienia sald")
+    void internalPayment_unknownCurrencyPairFails() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account sourceAccount = createAccount(1, 1000.0, user);
+        sourceAccount.setCurrency("yen");
+        Account destAccount = createAccount(2, 500.0, user);
+        destAccount.setCurrency("pln");
+        CurrencyExchange exchange = new CurrencyExchange();
+        exchange.infitFromFile("src/test/resources/test_rates.json");
+        setField(accountManager, "exchange", exchange);
+
+        when(mockDao.findAccountById(1)).thenReturn(sourceAccount);
+        when(mockDao.findAccountById(2)).thenReturn(destAccount);
+        when(mockAuth.canInvokeOperation(any(), eq(user))).thenReturn(true);
+
+        // When
+        boolean result = accountManager.internalPayment(user, 100.0, "Transfer", 1, 2);
+
+        // Then
+        assertFalse(result);
+        assertEquals(1000.0, sourceAccount.getAmmount());
+        assertEquals(500.0, destAccount.getAmmount());
+        verify(mockDao, never()).updateAccountState(any());
+        verify(mockHistory, times(2)).logOperation(any(), eq(false));
+    }
+
+    @Test
+    @DisplayName("openSession - dwie równoległe sesje wykonują wypłaty jako właściwi użytkownicy")
+    void sessions_twoUsersAtOnce() throws Exception {
+        // Given
+        User adam = createUser(1, "Adam");
+        User ewa = createUser(2, "Ewa");
+        Account account = createAccount(1, 1000.0, adam);
+        when(mockAuth.logIn("adam", "a".toCharArray())).thenReturn(adam);
+        when(mockAuth.logIn("ewa", "e".toCharArray())).thenReturn(ewa);
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockDao.updateAccountState(account)).thenReturn(true);
+        when(mockAuth.canInvokeOperation(any(), eq(adam))).thenReturn(true);
+        when(mockAuth.canInvokeOperation(any(), eq(ewa))).thenReturn(false);
+
+        // When
+        String adamSession = accountManager.openSession("adam", "a".toCharArray());
+        String ewaSession = accountManager.openSession("ewa", "e".toCharArray());
+
+        // Then
+        assertTrue(accountManager.sessionPaymentOut(adamSession, 100.0, "Wypłata", 1));
+        assertSame(PaymentResult.UNAUTHORIZED, accountManager.trySessionPaymentOut(ewaSession, 100.0, "Wypłata", 1));
+        assertEquals(900.0, account.getAmmount());
+    }
+
+    @Test
+    @DisplayName("sessionPaymentOut - zamknięta sesja jest odrzucana")
+    void sessions_closedSessionRejected() throws Exception {
+        // Given
+        User adam = createUser(1, "Adam");
+        when(mockAuth.logIn("adam", "a".toCharArray())).thenReturn(adam);
+        when(mockAuth.logOut(adam)).thenReturn(true);
+        String session = accountManager.openSession("adam", "a".toCharArray());
+
+        // When
+        assertTrue(accountManager.closeSession(session));
+
+        // Then
+        assertThrows(OperationIsNotAllowedException.class,
+                () -> accountManager.sessionPaymentOut(session, 100.0, "Wypłata", 1));
+        assertThrows(OperationIsNotAllowedException.class,
+                () -> accountManager.sessionPaymentIn(session, 100.0, "Wpłata", 1));
+        verify(mockDao, never()).findAccountById(anyInt());
+    }
+
+    @Test
+    @DisplayName("tokenPaymentOut - wypłata autoryzowana podpisanym tokenem bez sięgania po sesję")
+    void token_paymentOutAuthorizedByClaims() throws Exception {
+        // Given
+        TokenClaims claims = new TokenClaims(1, 1, false, Long.MAX_VALUE);
+        Account account = createAccount(1, 1000.0, createUser(1, "Adam"));
+        when(mockAuth.verifyToken("token")).thenReturn(claims);
+        when(mockAuth.canTokenInvokeOperation(any(), eq(claims))).thenReturn(true);
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockDao.updateAccountState(account)).thenReturn(true);
+
+        // When
+        boolean result = accountManager.tokenPaymentOut("token", 100.0, "Wypłata", 1);
+
+        // Then
+        assertTrue(result);
+        assertEquals(900.0, account.getAmmount());
+        verify(mockAuth, never()).canInvokeOperation(any(), any(User.class));
+    }
+
+    @Test
+    @DisplayName("tryTokenPaymentOut - nieważny token jest odrzucany")
+    void token_invalidRejected() throws Exception {
+        // Given
+        when(mockAuth.verifyToken("bad")).thenReturn(null);
+
+        // When/Then
+        assertSame(PaymentResult.NO_SESSION, accountManager.tryTokenPaymentOut("bad", 100.0, "Wypłata", 1));
+        assertThrows(OperationIsNotAllowedException.class,
+                () -> accountManager.tokenPaymentIn("bad", 100.0, "Wpłata", 1));
+        verify(mockDao, never()).findAccountById(anyInt());
+    }
+
+    @Test
+    @DisplayName("getAccounts - odczyt z cache do czasu zmiany konta")
+    void getAccounts_cachedUntilChanged() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        Account account = createAccount(1, 1000.0, user);
+        when(mockDao.findAccountsByOwner(user)).thenReturn(java.util.List.of(account));
+        when(mockDao.findAccountById(1)).thenReturn(account);
+        when(mockDao.updateAccountState(account)).thenReturn(true);
+
+        // When
+        accountManager.getAccounts(user);
+        accountManager.getAccounts(user);
+        accountManager.paymentIn(user, 100.0, "Wpłata", 1);
+        accountManager.getAccounts(user);
+
+        // Then
+        verify(mockDao, times(2)).findAccountsByOwner(user);
+    }
+
     @Test
     @DisplayName("logIn - powodzenie logowania")
     void logIn_success() throws Exception {
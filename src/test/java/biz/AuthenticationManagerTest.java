@@ -1,11 +1,15 @@
 package biz;
 
+import biz.password.PasswordEngine;
+import biz.session.TokenClaims;
 import db.dao.DAO;
 import model.Account;
 import model.Operation;
 import model.Password;
+import model.Permission;
 import model.Role;
 import model.User;
+import model.exceptions.LoginThrottledException;
 import model.exceptions.UserUnnkownOrBadPasswordException;
 import model.operations.Interest;
 import model.operations.LogIn;
@@ -61,6 +65,121 @@ class AuthenticationManagerTest {
         verify(mockHistory).logLoginSuccess(user);
     }
 
+    @Test
+    @DisplayName("logInForToken - token autoryzuje wypłatę właściciela bez bazy danych")
+    void logInForToken_authorizesOwnWithdraw() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski", "User");
+        User other = createUser(2, "Anna Nowak", "User");
+        Password password = new Password();
+        password.setUserId(1);
+        password.setPasswd(AuthenticationManager.hashPassword("password123".toCharArray()));
+        when(mockDao.findUserByName("jan")).thenReturn(user);
+        when(mockDao.findPasswordForUser(user)).thenReturn(password);
+
+        // When
+        String token = authManager.logInForToken("jan", "password123".toCharArray());
+        TokenClaims claims = authManager.verifyToken(token);
+
+        // Then
+        assertEquals(1, claims.getUserId());
+        assertFalse(claims.isAdmin());
+        assertTrue(authManager.canTokenInvokeOperation(new Withdraw(user, 10, "", new Account()), claims));
+        assertFalse(authManager.canTokenInvokeOperation(new Withdraw(other, 10, "", new Account()), claims));
+        verify(mockDao, times(1)).findUserByName("jan");
+    }
+
+    @Test
+    @DisplayName("logIn - stary hash SHA-256 jest po zalogowaniu zamieniany na PBKDF2")
+    void logIn_upgradesLegacyHash() throws Exception {
+        // Given
+        authManager = new AuthenticationManager(mockDao, mockHistory, PasswordEngine.withCost(1000));
+        User user = createUser(1, "Jan Kowalski", "User");
+        String legacy = AuthenticationManager.hashPassword("password123".toCharArray());
+        Password password = new Password();
+        password.setUserId(1);
+        password.setPasswd(legacy);
+        when(mockDao.findUserByName("jan")).thenReturn(user);
+        when(mockDao.findPasswordForUser(user)).thenReturn(password);
+
+        // When
+        authManager.logIn("jan", "password123".toCharArray());
+
+        // Then
+        verify(mockDao).setUserPassword(eq(user), startsWith("pbkdf2$1000$"), eq(legacy));
+        verify(mockHistory).logLoginSuccess(user);
+    }
+
+    @Test
+    @DisplayName("logIn - po serii nieudanych prób logowanie jest blokowane bez sięgania do bazy")
+    void logIn_throttledAfterFailures() throws Exception {
+        // Given
+        when(mockDao.findUserByName("ghost")).thenReturn(null);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(UserUnnkownOrBadPasswordException.class,
+                    () -> authManager.logIn("ghost", "x".toCharArray(), "10.0.0.1"));
+        }
+
+        // When
+        LoginThrottledException ex = assertThrows(LoginThrottledException.class,
+                () -> authManager.logIn("ghost", "x".toCharArray(), "10.0.0.1"));
+
+        // Then
+        assertTrue(ex.getRetryAfterMillis() > 0);
+        verify(mockDao, times(5)).findUserByName("ghost");
+        verify(mockHistory, times(5)).logLoginFailure(null, "Zła nazwa użytkownika ghost");
+    }
+
+    @Test
+    @DisplayName("logIn - nieznana nazwa odrzucona przez filtr bez zapytania do bazy i wpisu w historii")
+    void logIn_unknownNameRejectedByFilter() throws Exception {
+        // Given
+        when(mockDao.findAllUserNames()).thenReturn(java.util.List.of("jan", "anna"));
+        authManager.loadUserNames(0.001);
+
+        // When/Then
+        assertThrows(UserUnnkownOrBadPasswordException.class,
+                () -> authManager.logIn("ghost", "password".toCharArray()));
+        verify(mockDao, never()).findUserByName(any());
+        verifyNoInteractions(mockHistory);
+    }
+
+    @Test
+    @DisplayName("createUser - nowy użytkownik trafia do filtra nazw")
+    void createUser_addedToFilter() throws Exception {
+        // Given
+        authManager = new AuthenticationManager(mockDao, mockHistory, PasswordEngine.withCost(1000));
+        when(mockDao.findAllUserNames()).thenReturn(java.util.List.of("jan"));
+        authManager.loadUserNames(0.001);
+        Role role = new Role();
+        role.setId(1);
+
+        // When
+        authManager.createUser("nowy", role, "haslo".toCharArray());
+
+        // Then
+        assertTrue(authManager.getUserNameFilter().mightContain("nowy"));
+        verify(mockDao).createUser(eq("nowy"), eq(role), startsWith("pbkdf2$1000$"));
+    }
+
+    @Test
+    @DisplayName("createUser - nieudany zapis nie dodaje nazwy do filtra")
+    void createUser_failedInsertNotInFilter() throws Exception {
+        // Given
+        authManager = new AuthenticationManager(mockDao, mockHistory, PasswordEngine.withCost(1000));
+        when(mockDao.findAllUserNames()).thenReturn(java.util.List.of("jan"));
+        authManager.loadUserNames(0.001);
+        Role role = new Role();
+        role.setId(1);
+        when(mockDao.createUser(eq("nowy"), eq(role), anyString())).thenThrow(new SQLException("UNIQUE"));
+
+        // When
+        assertThrows(SQLException.class, () -> authManager.createUser("nowy", role, "haslo".toCharArray()));
+
+        // Then
+        assertFalse(authManager.getUserNameFilter().mightContain("nowy"));
+    }
+
     @Test
     @DisplayName("logIn - niepowodzenie z błędnym hasłem")
     void logIn_failureWithWrongPassword() throws Exception {
@@ -204,6 +323,26 @@ class AuthenticationManagerTest {
         assertFalse(result);
     }
 
+    @Test
+    @DisplayName("reloadPermissions - zmiany w tabeli uprawnień działają bez restartu")
+    void reloadPermissions_appliesAtRuntime() throws Exception {
+        // Given
+        User user = createUser(2, "Regular User", "User");
+        Operation interest = new Interest(user, 10, "", new Account());
+        Permission permission = new Permission();
+        permission.setRoleId(2);
+        permission.setOperationType(OperationType.INTEREST);
+        assertFalse(authManager.canInvokeOperation(interest, user));
+
+        // When
+        when(mockDao.findPermissions()).thenReturn(java.util.List.of(permission));
+        authManager.reloadPermissions();
+
+        // Then
+        assertTrue(authManager.canInvokeOperation(interest, user));
+        assertFalse(authManager.canInvokeOperation(mockPaymentIn(), user));
+    }
+
     @Test
     @DisplayName("hashPassword - generuje hash dla hasła")
     void hashPassword_generatesHash() {
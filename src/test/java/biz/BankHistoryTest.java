@@ -24,6 +24,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
 
@@ -43,6 +44,64 @@ class BankHistoryTest {
         bankHistory = new BankHistory(mockDao);
     }
 
+    @Test
+    @DisplayName("startAsync - operacje trafiają do bazy przez bufor pierścieniowy")
+    void startAsync_writesThroughRing() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        java.util.List<Operation> seen = new java.util.concurrent.CopyOnWriteArrayList<>();
+        bankHistory.startAsync(16, (event, end) -> seen.add(event.getOperation()));
+
+        // When
+        bankHistory.logLoginSuccess(user);
+        bankHistory.logLogOut(user);
+        bankHistory.stopAsync();
+
+        // Then
+        verify(mockDao).logOperation(any(LogIn.class), eq(true));
+        verify(mockDao).logOperation(any(LogOut.class), eq(true));
+        assertEquals(2, seen.size());
+    }
+
+    @Test
+    @DisplayName("startAsync - nieudany zapis ponawiany, trwały błąd liczony")
+    void startAsync_retriesAndCountsFailures() throws Exception {
+        // Given
+        User user = createUser(1, "Jan Kowalski");
+        doThrow(new SQLException("busy")).doNothing().when(mockDao).logOperation(any(LogIn.class), anyBoolean());
+        doThrow(new SQLException("disk I/O error")).when(mockDao).logOperation(any(LogOut.class), anyBoolean());
+        bankHistory.startAsync(16);
+
+        // When
+        bankHistory.logLoginSuccess(user);
+        bankHistory.logLogOut(user);
+        bankHistory.stopAsync();
+
+        // Then
+        verify(mockDao, times(2)).logOperation(any(LogIn.class), eq(true));
+        verify(mockDao, times(3)).logOperation(any(LogOut.class), eq(true));
+        assertEquals(1, bankHistory.getFailedEvents());
+    }
+
+    @Test
+    @DisplayName("getRecentOperations - zalogowane operacje czytane z pamięci, baza odpytana raz")
+    void getRecentOperations_servedFromMemory() throws Exception {
+        // Given
+        Account account = new Account();
+        account.setId(5);
+        Operation operation = new PaymentIn(createUser(1, "Jan Kowalski"), 10, "Wpłata", account);
+        bankHistory.logOperation(operation, true);
+        when(mockDao.findRecentOperations(5, 20)).thenReturn(java.util.List.of());
+
+        // When
+        bankHistory.getRecentOperations(5, 20);
+        java.util.List<Operation> recent = bankHistory.getRecentOperations(5, 20);
+
+        // Then
+        assertEquals(java.util.List.of(operation), recent);
+        verify(mockDao, times(1)).findRecentOperations(5, 20);
+    }
+
      @Test
     @DisplayName("logLoginSuccess - loguje pomyślne logowanie")
     void logLoginSuccess() throws Exception {
@@ -194,17 +253,18 @@ class BankHistoryTest {
     }
 
     @Test
-    @DisplayName("logUnauthorizedOperation - rzuca RuntimeException")
-    void logUnauthorizedOperation_throwsException() {
+    @DisplayName("logUnauthorizedOperation - zapisuje operację jako nieudaną")
+    void logUnauthorizedOperation_loggedAsFailed() throws Exception {
         // Given
         User user = createUser(1, "Attacker");
         Account account = createAccount(1, 1000.0);
         Operation operation = new Withdraw(user, 300.0, "Unauthorized", account);
 
-        // When/Then
-        assertThrows(RuntimeException.class, () -> {
-            bankHistory.logUnauthorizedOperation(operation, false);
-        });
+        // When
+        bankHistory.logUnauthorizedOperation(operation, false);
+
+        // Then
+        verify(mockDao).logOperation(operation, false);
     }
 
     @Test
@@ -367,17 +427,16 @@ void logPaymentOut_throwsRuntimeException() {
 }
 
 @Test
-@DisplayName("logUnauthorizedOperation - rzuca RuntimeException mimo że jest wywoływane")
-void logUnauthorizedOperation_throwsButIsCalled() {
+@DisplayName("logUnauthorizedOperation - nie rzuca wyjątku, choć jest wywoływane przy każdym odrzuceniu")
+void logUnauthorizedOperation_doesNotThrow() {
     User user = new User();
     user.setId(1);
 
     model.operations.Withdraw operation =
             new model.operations.Withdraw(user, 100.0, "Test", mockAccount);
 
-    assertThrows(RuntimeException.class,
-            () -> bankHistory.logUnauthorizedOperation(operation, false),
-            "logUnauthorizedOperation rzuca RuntimeException; jeśli metoda jest wywoływana w kodzie, spowoduje awarię");
+    assertDoesNotThrow(() -> bankHistory.logUnauthorizedOperation(operation, false),
+            "logUnauthorizedOperation zapisuje odrzuconą operację zamiast przerywać płatność");
 }
 
 @Test
@@ -0,0 +1,119 @@
+package biz;
+
+import biz.password.PasswordEngine;
+import db.dao.DAO;
+import model.Password;
+import model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoginCoalescerTest {
+
+    private static final int LOGINS = 8;
+
+    @Mock
+    private DAO mockDao;
+
+    @Mock
+    private PasswordEngine mockPasswords;
+
+    private LoginCoalescer coalescer;
+    private User user;
+    private Password password;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        coalescer = new LoginCoalescer(mockDao, mockPasswords);
+        user = new User();
+        user.setId(1);
+        user.setName("jan");
+        password = new Password();
+        password.setPasswd("stored");
+    }
+
+    @Test
+    @DisplayName("lookUp - równoczesne logowania tego samego użytkownika czytają bazę raz")
+    void concurrentLookupsShareOneQuery() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockDao.findUserByName("jan")).thenAnswer(inv -> {
+            release.await();
+            return user;
+        });
+        when(mockDao.findPasswordForUser(user)).thenReturn(password);
+        ExecutorService pool = Executors.newFixedThreadPool(LOGINS);
+
+        // When
+        List<Future<LoginCoalescer.Credentials>> results = new ArrayList<>();
+        for (int i = 0; i < LOGINS; i++) results.add(pool.submit(() -> coalescer.lookUp("jan")));
+        while (coalescer.getCoalescedLookups() < LOGINS - 1) Thread.yield();
+        release.countDown();
+
+        // Then
+        for (Future<LoginCoalescer.Credentials> result : results) {
+            assertSame(user, result.get().getUser());
+            assertSame(password, result.get().getPassword());
+        }
+        pool.shutdown();
+        verify(mockDao, times(1)).findUserByName("jan");
+        verify(mockDao, times(1)).findPasswordForUser(user);
+        assertEquals(1, coalescer.getLookups());
+    }
+
+    @Test
+    @DisplayName("verify - identyczne hasła weryfikowane raz, różne osobno")
+    void identicalCredentialsShareOneVerification() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockPasswords.verify(any(), eq("stored"))).thenAnswer(inv -> {
+            release.await();
+            return "stored";
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(LOGINS);
+
+        // When
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < LOGINS; i++) {
+            results.add(pool.submit(() -> coalescer.verify("secret".toCharArray(), "stored")));
+        }
+        while (coalescer.getCoalescedVerifications() < LOGINS - 1) Thread.yield();
+        release.countDown();
+        for (Future<String> result : results) assertEquals("stored", result.get());
+        coalescer.verify("other".toCharArray(), "stored");
+
+        // Then
+        pool.shutdown();
+        verify(mockPasswords, times(2)).verify(any(), eq("stored"));
+        assertEquals(2, coalescer.getVerifications());
+        assertEquals(LOGINS - 1, coalescer.getCoalescedVerifications());
+    }
+
+    @Test
+    @DisplayName("lookUp - kolejne logowania po zakończeniu poprzedniego czytają bazę ponownie")
+    void sequentialLookupsAreNotCached() throws Exception {
+        // Given
+        when(mockDao.findUserByName("jan")).thenReturn(user);
+
+        // When
+        coalescer.lookUp("jan");
+        coalescer.lookUp("jan");
+
+        // Then
+        verify(mockDao, times(2)).findUserByName("jan");
+        assertEquals(0, coalescer.getCoalescedLookups());
+    }
+}
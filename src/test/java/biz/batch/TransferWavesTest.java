@@ -0,0 +1,71 @@
+package biz.batch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferWavesTest {
+
+    @Test
+    @DisplayName("plan - niezależne przelewy trafiają do jednej fali")
+    void independentTransfersShareWave() {
+        // Given
+        List<Transfer> transfers = List.of(transfer(1, 2), transfer(3, 4), transfer(5, 6));
+
+        // When
+        int[][] waves = TransferWaves.plan(transfers);
+
+        // Then
+        assertEquals(1, waves.length);
+        assertArrayEquals(new int[]{0, 1, 2}, waves[0]);
+    }
+
+    @Test
+    @DisplayName("plan - przelewy na wspólnym koncie zachowują kolejność w kolejnych falach")
+    void conflictingTransfersKeepOrder() {
+        // Given
+        List<Transfer> transfers = List.of(transfer(1, 2), transfer(2, 3), transfer(4, 5), transfer(3, 1), transfer(4, 6));
+
+        // When
+        int[][] waves = TransferWaves.plan(transfers);
+
+        // Then
+        assertEquals(3, waves.length);
+        assertArrayEquals(new int[]{0, 2}, waves[0]);
+        assertArrayEquals(new int[]{1, 4}, waves[1]);
+        assertArrayEquals(new int[]{3}, waves[2]);
+    }
+
+    @Test
+    @DisplayName("plan - w żadnej fali dwa przelewy nie dotykają tego samego konta")
+    void wavesTouchDisjointAccounts() {
+        // Given
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) transfers.add(transfer(i % 97, (i * 31) % 89 + 100));
+
+        // When
+        int[][] waves = TransferWaves.plan(transfers);
+
+        // Then
+        int planned = 0;
+        for (int[] wave : waves) {
+            Set<Integer> accounts = new HashSet<>();
+            for (int index : wave) {
+                assertTrue(accounts.add(transfers.get(index).getSourceAccountId()));
+                assertTrue(accounts.add(transfers.get(index).getDestAccountId()));
+            }
+            planned += wave.length;
+        }
+        assertEquals(10_000, planned);
+    }
+
+    private static Transfer transfer(int source, int dest) {
+        return new Transfer(null, 1, "przelew", source, dest);
+    }
+}
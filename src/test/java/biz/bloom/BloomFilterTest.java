@@ -0,0 +1,58 @@
+package biz.bloom;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("mightContain - dodane nazwy są zawsze rozpoznawane")
+    void noFalseNegatives() {
+        // Given
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        // When
+        for (int i = 0; i < 10_000; i++) filter.put("user" + i);
+
+        // Then
+        for (int i = 0; i < 10_000; i++) assertTrue(filter.mightContain("user" + i));
+    }
+
+    @Test
+    @DisplayName("mightContain - odsetek fałszywych trafień bliski zadanemu")
+    void falsePositiveRateNearTarget() {
+        // Given
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("user" + i);
+
+        // When
+        int hits = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("ghost" + i)) hits++;
+        }
+
+        // Then
+        assertTrue(hits < 2_000, "fałszywe trafienia: " + hits);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    @DisplayName("memoryBytes - rozmiar zależy od zadanego odsetka fałszywych trafień")
+    void memoryFollowsRate() {
+        BloomFilter loose = new BloomFilter(10_000, 0.05);
+        BloomFilter tight = new BloomFilter(10_000, 0.001);
+
+        assertTrue(loose.memoryBytes() < tight.memoryBytes());
+        assertTrue(tight.memoryBytes() < 20_000);
+        assertEquals(tight.bitCount() / 8, tight.memoryBytes());
+    }
+
+    @Test
+    @DisplayName("BloomFilter - niepoprawne parametry są odrzucane")
+    void invalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.0));
+    }
+}
@@ -0,0 +1,130 @@
+package biz.cache;
+
+import biz.BankHistory;
+import db.dao.DAO;
+import model.Account;
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PrefetcherTest {
+
+    @Mock
+    private DAO mockDao;
+
+    @Mock
+    private BankHistory mockHistory;
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final ReadCache cache = new ReadCache();
+    private ExecutorService executor;
+    private Prefetcher prefetcher;
+    private User user;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newSingleThreadExecutor();
+        prefetcher = new Prefetcher(mockDao, cache, mockHistory, 5, 100, now::get, executor);
+        user = new User();
+        user.setId(1);
+        account = new Account();
+        account.setId(10);
+        account.setOwner(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("prefetch - konta trafiają do cache, a ich ostatnie operacje do historii")
+    void prefetchFillsCache() throws Exception {
+        // Given
+        when(mockDao.findAccountsByOwner(user)).thenReturn(List.of(account));
+
+        // When
+        prefetcher.prefetch(user).get(1, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(List.of(account), cache.accounts(1));
+        verify(mockHistory).getRecentOperations(10, 5);
+    }
+
+    @Test
+    @DisplayName("prefetch - po upływie terminu kolejne zapytania są pomijane")
+    void deadlineStopsPrefetch() throws Exception {
+        // Given
+        when(mockDao.findAccountsByOwner(user)).thenAnswer(inv -> {
+            now.addAndGet(200);
+            return List.of(account);
+        });
+
+        // When
+        prefetcher.prefetch(user).get(1, TimeUnit.SECONDS);
+
+        // Then
+        assertNull(cache.accounts(1));
+        verify(mockHistory, never()).getRecentOperations(anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("cancel - wylogowanie przerywa trwający prefetch")
+    void cancelStopsPrefetch() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockDao.findAccountsByOwner(user)).thenAnswer(inv -> {
+            started.countDown();
+            release.await();
+            return List.of(account);
+        });
+        Future<?> future = prefetcher.prefetch(user);
+        started.await();
+
+        // When
+        prefetcher.cancel(user);
+
+        // Then
+        assertThrows(CancellationException.class, () -> future.get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertNull(cache.accounts(1));
+    }
+
+    @Test
+    @DisplayName("prefetch - konta odczytane przed zmianą nie trafiają do cache")
+    void changeDuringReadIsNotCached() throws Exception {
+        // Given
+        when(mockDao.findAccountsByOwner(user)).thenAnswer(inv -> {
+            cache.invalidate(account);
+            return List.of(account);
+        });
+
+        // When
+        prefetcher.prefetch(user).get(1, TimeUnit.SECONDS);
+
+        // Then
+        assertNull(cache.accounts(1));
+        assertTrue(cache.putAccounts(1, List.of(account), cache.version(1)));
+        assertEquals(List.of(account), cache.accounts(1));
+    }
+}
@@ -0,0 +1,173 @@
+package biz.engine;
+
+import biz.BankHistory;
+import biz.PaymentResult;
+import db.dao.DAO;
+import model.Account;
+import model.User;
+import model.operations.Interest;
+import model.operations.PaymentIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CommandEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private final User user = new User();
+    private DAO dao;
+    private CommandEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        user.setId(1);
+        dao = mock(DAO.class);
+        doAnswer(invocation -> {
+            DAO.BalanceHandler handler = invocation.getArgument(0);
+            handler.accept(1, 100.0);
+            handler.accept(2, 0.0);
+            return null;
+        }).when(dao).scanBalances(any());
+        engine = new CommandEngine(directory, 64, 16, 1_000, false);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.stop();
+    }
+
+    @Test
+    @DisplayName("submit - polecenia są stosowane w kolejności zgłoszenia, odrzucone nie zmieniają sald")
+    void appliesInOrder() throws Exception {
+        // Given
+        engine.start(dao, null);
+
+        // When
+        List<CompletableFuture<PaymentResult>> results = new ArrayList<>();
+        results.add(engine.submit(Command.paymentIn(user, 50.0, "wpłata", 1)));
+        results.add(engine.submit(Command.internalPayment(user, 120.0, "przelew", 1, 2, 1)));
+        results.add(engine.submit(Command.paymentOut(user, 200.0, "wypłata", 1)));
+        results.add(engine.submit(Command.interest(user, 0.5, "odsetki", 2)));
+        results.add(engine.submit(Command.paymentIn(user, 10.0, "wpłata", 99)));
+        List<PaymentResult> outcomes = new ArrayList<>();
+        for (CompletableFuture<PaymentResult> result : results) outcomes.add(result.join());
+        engine.stop();
+
+        // Then
+        assertEquals(List.of(PaymentResult.SUCCESS, PaymentResult.SUCCESS, PaymentResult.FAILURE,
+                PaymentResult.SUCCESS, PaymentResult.FAILURE), outcomes);
+        assertEquals(30.0, engine.balance(1), 0.0001);
+        assertEquals(180.0, engine.balance(2), 0.0001);
+        assertEquals(5, engine.getSequence());
+        verify(dao, never()).updateAccountState(any());
+    }
+
+    @Test
+    @DisplayName("submit - odsetki logowane jak w trybie zwykłym: wpłata i odsetki")
+    void interestLoggedAsPaymentAndInterest() throws Exception {
+        // Given
+        BankHistory history = mock(BankHistory.class);
+        engine.start(dao, history);
+
+        // When
+        engine.submit(Command.interest(user, 0.5, "odsetki", 2)).join();
+        engine.stop();
+
+        // Then
+        verify(history).logOperation(any(PaymentIn.class), eq(true));
+        verify(history).logOperation(any(Interest.class), eq(true));
+        verify(history, times(2)).logOperation(any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("stop - migawka sald trafia do tabeli Account")
+    void stopWritesBalancesBack() throws Exception {
+        // Given
+        engine.start(dao, null);
+        engine.submit(Command.internalPayment(user, 40.0, "przelew", 1, 2, 1)).join();
+
+        // When
+        engine.stop();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Account>> written = ArgumentCaptor.forClass(List.class);
+        verify(dao, times(2)).updateAccountStates(written.capture());
+        Map<Integer, Double> balances = new HashMap<>();
+        for (Account account : written.getValue()) balances.put(account.getId(), account.getAmmount());
+        assertEquals(Map.of(1, 60.0, 2, 40.0), balances);
+    }
+
+    @Test
+    @DisplayName("start - stan odtwarzany z migawki i dziennika, niepełny ostatni zapis jest pomijany")
+    void recoversFromSnapshotAndJournal() throws Exception {
+        // Given
+        BalanceTable base = new BalanceTable(2);
+        base.put(1, 500.0);
+        base.put(2, 0.0);
+        new Snapshot(10, base).write(directory);
+        CommandJournal journal = new CommandJournal(directory, false);
+        journal.open(11);
+        Command[] commands = {
+                Command.paymentOut(user, 100.0, "wypłata", 1),
+                Command.internalPayment(user, 200.0, "przelew", 1, 2, 0.5),
+                Command.interest(user, 0.1, "odsetki", 2)};
+        for (int i = 0; i < commands.length; i++) {
+            commands[i].sequence = 11 + i;
+            journal.append(commands[i]);
+        }
+        journal.close();
+        Path segment = directory.resolve(String.format("journal-%020d.log", 11));
+        Files.write(segment, new byte[]{0, 0, 0, 0, 0, 0, 0, 14, 1}, StandardOpenOption.APPEND);
+
+        // When
+        engine.start(dao, null);
+        long sequence = engine.getSequence();
+        engine.stop();
+
+        // Then
+        assertEquals(13, sequence);
+        assertEquals(200.0, engine.balance(1), 0.0001);
+        assertEquals(110.0, engine.balance(2), 0.0001);
+    }
+
+    @Test
+    @DisplayName("start - po ponownym uruchomieniu sekwencja i salda są kontynuowane")
+    void restartContinues() throws Exception {
+        // Given
+        engine.start(dao, null);
+        engine.submit(Command.paymentOut(user, 30.0, "wypłata", 1)).join();
+        engine.stop();
+
+        // When
+        CommandEngine restarted = new CommandEngine(directory, 64, 16, 1_000, false);
+        restarted.start(dao, null);
+        PaymentResult result = restarted.submit(Command.paymentOut(user, 80.0, "wypłata", 1)).join();
+        restarted.stop();
+
+        // Then
+        assertSame(PaymentResult.FAILURE, result);
+        assertEquals(70.0, restarted.balance(1), 0.0001);
+        assertEquals(2, restarted.getSequence());
+    }
+}
@@ -0,0 +1,139 @@
+package biz.history;
+
+import model.Operation;
+import model.User;
+import model.operations.LogIn;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryRingBufferTest {
+
+    @Test
+    @DisplayName("drain - zdarzenia odbierane partiami w kolejności publikacji")
+    void drainInOrder() {
+        // Given
+        HistoryRingBuffer ring = new HistoryRingBuffer(8, 3);
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Operation operation = new LogIn(new User(), "op" + i);
+            operations.add(operation);
+            assertTrue(ring.tryPublish(operation, i % 2 == 0));
+        }
+        List<Operation> received = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+
+        // When
+        int first = ring.drain((event, end) -> {
+            received.add(event.getOperation());
+            ends.add(end);
+        });
+        int second = ring.drain((event, end) -> {
+            received.add(event.getOperation());
+            ends.add(end);
+        });
+
+        // Then
+        assertEquals(3, first);
+        assertEquals(2, second);
+        assertEquals(operations, received);
+        assertEquals(List.of(false, false, true, false, true), ends);
+        assertEquals(0, ring.backlog());
+    }
+
+    @Test
+    @DisplayName("drain - zdarzenie z błędem ujścia liczone i pominięte")
+    void sinkFailuresCounted() {
+        // Given
+        HistoryRingBuffer ring = new HistoryRingBuffer(4, 4);
+        for (int i = 0; i < 3; i++) ring.publish(new LogIn(null, "op" + i), true);
+        List<String> received = new ArrayList<>();
+
+        // When
+        int drained = ring.drain((event, end) -> {
+            if (event.getOperation().getDescription().equals("op1")) throw new IllegalStateException();
+            received.add(event.getOperation().getDescription());
+        });
+
+        // Then
+        assertEquals(3, drained);
+        assertEquals(List.of("op0", "op2"), received);
+        assertEquals(1, ring.failures());
+    }
+
+    @Test
+    @DisplayName("tryPublish - pełny bufor odmawia do czasu opróżnienia")
+    void fullRingRejects() {
+        // Given
+        HistoryRingBuffer ring = new HistoryRingBuffer(4, 4);
+        for (int i = 0; i < 4; i++) assertTrue(ring.tryPublish(new LogIn(null, ""), true));
+
+        // Then
+        assertFalse(ring.tryPublish(new LogIn(null, ""), true));
+        ring.drain((event, end) -> { });
+        assertTrue(ring.tryPublish(new LogIn(null, ""), true));
+    }
+
+    @Test
+    @DisplayName("drain - sloty są wielokrotnie używane, bez alokacji na zdarzenie")
+    void slotsAreReused() {
+        // Given
+        HistoryRingBuffer ring = new HistoryRingBuffer(4, 4);
+        Set<HistoryEvent> slots = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // When
+        for (int i = 0; i < 40; i++) {
+            ring.publish(new LogIn(null, ""), true);
+            ring.drain((event, end) -> {
+                slots.add(event);
+                assertNotNull(event.getOperation());
+            });
+        }
+
+        // Then
+        assertEquals(4, slots.size());
+    }
+
+    @Test
+    @DisplayName("start - wielu producentów, każde zdarzenie dostarczone raz i w kolejności producenta")
+    void manyProducers() throws Exception {
+        // Given
+        int producers = 4;
+        int perProducer = 10_000;
+        HistoryRingBuffer ring = new HistoryRingBuffer(64, 16);
+        Map<String, List<Integer>> received = new HashMap<>();
+        ring.start((event, end) -> {
+            String[] parts = event.getOperation().getDescription().split(":");
+            received.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(Integer.parseInt(parts[1]));
+        });
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String name = "p" + p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) ring.publish(new LogIn(null, name + ":" + i), true);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // When
+        for (Thread thread : threads) thread.join();
+        ring.stop();
+
+        // Then
+        assertEquals(producers, received.size());
+        for (List<Integer> sequence : received.values()) {
+            assertEquals(perProducer, sequence.size());
+            for (int i = 0; i < perProducer; i++) assertEquals(i, sequence.get(i));
+        }
+    }
+}
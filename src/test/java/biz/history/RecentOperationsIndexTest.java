@@ -0,0 +1,110 @@
+package biz.history;
+
+import model.Account;
+import model.Operation;
+import model.User;
+import model.operations.LogIn;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentOperationsIndexTest {
+
+    private final User user = new User();
+
+    @Test
+    @DisplayName("recent - najnowsze operacje konta, od najnowszej, najwyżej pojemność pierścienia")
+    void newestFirstBounded() throws Exception {
+        // Given
+        RecentOperationsIndex index = new RecentOperationsIndex(3, 100);
+        Account account = account(1);
+        List<Operation> logged = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Operation operation = new PaymentIn(user, i, "op" + i, account);
+            logged.add(operation);
+            index.append(operation);
+        }
+
+        // When
+        List<Operation> recent = index.recent(1, 20, (id, limit) -> List.of());
+
+        // Then
+        assertEquals(List.of(logged.get(4), logged.get(3), logged.get(2)), recent);
+        assertEquals(List.of(logged.get(4)), index.recent(1, 1, (id, limit) -> List.of()));
+    }
+
+    @Test
+    @DisplayName("recent - pierwszy odczyt dociąga starsze operacje z bazy tylko raz")
+    void warmedOnceFromDatabase() throws Exception {
+        // Given
+        RecentOperationsIndex index = new RecentOperationsIndex(3, 100);
+        Account account = account(1);
+        Operation stored1 = withId(new Withdraw(user, 1, "old1", account), 1);
+        Operation stored2 = withId(new Withdraw(user, 2, "old2", account), 2);
+        Operation fresh = new PaymentIn(user, 3, "new", account);
+        index.append(fresh);
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        List<Operation> recent = index.recent(1, 20, (id, limit) -> {
+            loads.incrementAndGet();
+            return List.of(stored2, stored1);
+        });
+        index.recent(1, 20, (id, limit) -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+
+        // Then
+        assertEquals(List.of(fresh, stored2, stored1), recent);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("recent - operacja zapisana już w bazie nie jest dublowana")
+    void noDuplicatesAfterWarm() throws Exception {
+        // Given
+        RecentOperationsIndex index = new RecentOperationsIndex(5, 100);
+        Operation logged = withId(new PaymentIn(user, 3, "new", account(1)), 7);
+        index.append(logged);
+
+        // When
+        List<Operation> recent = index.recent(1, 20, (id, limit) -> List.of(withId(new PaymentIn(user, 3, "new", account(1)), 7)));
+
+        // Then
+        assertEquals(List.of(logged), recent);
+    }
+
+    @Test
+    @DisplayName("append - operacje bez konta są pomijane, liczba kont ograniczona")
+    void boundedAccounts() {
+        // Given
+        RecentOperationsIndex index = new RecentOperationsIndex(2, 32);
+
+        // When
+        index.append(new LogIn(user, "login"));
+        for (int i = 0; i < 1000; i++) index.append(new PaymentIn(user, 1, "", account(i)));
+
+        // Then
+        assertTrue(index.size() <= 32);
+        assertTrue(index.size() > 0);
+    }
+
+    private static Account account(int id) {
+        Account account = new Account();
+        account.setId(id);
+        return account;
+    }
+
+    private static Operation withId(Operation operation, int id) {
+        operation.setId(id);
+        return operation;
+    }
+}
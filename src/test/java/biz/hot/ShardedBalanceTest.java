@@ -0,0 +1,155 @@
+package biz.hot;
+
+import db.dao.DAO;
+import model.Account;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ShardedBalanceTest {
+
+    @Test
+    @DisplayName("credit - równoległe wpłaty sumują się bez strat")
+    void concurrentCredits() throws Exception {
+        // Given
+        ShardedBalance balance = new ShardedBalance(8, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) balance.credit(1);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(80_000, balance.balance());
+    }
+
+    @Test
+    @DisplayName("debit - pożycza z innych slotów, a bez pokrycia niczego nie zmienia")
+    void debitBorrowsAcrossSlots() throws Exception {
+        // Given
+        ShardedBalance balance = new ShardedBalance(4, 100);
+        Thread other = new Thread(() -> balance.credit(50));
+        other.start();
+        other.join();
+
+        // When
+        boolean covered = balance.debit(120);
+        boolean uncovered = balance.debit(31);
+
+        // Then
+        assertTrue(covered);
+        assertFalse(uncovered);
+        assertEquals(30, balance.balance());
+    }
+
+    @Test
+    @DisplayName("debit - równoległe obciążenia nigdy nie schodzą poniżej zera")
+    void concurrentDebitsNeverOverdraw() throws Exception {
+        // Given
+        ShardedBalance balance = new ShardedBalance(8, 1_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger debited = new AtomicInteger();
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    balance.credit(1);
+                    if (balance.debit(3)) debited.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(1_000 + 4_000 - 3L * debited.get(), balance.balance());
+        assertTrue(balance.balance() >= 0);
+    }
+
+    @Test
+    @DisplayName("fold - przenosi sloty do pierwszego bez zmiany salda")
+    void foldKeepsBalance() throws Exception {
+        // Given
+        ShardedBalance balance = new ShardedBalance(4, 10);
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> balance.credit(5));
+            thread.start();
+            thread.join();
+        }
+
+        // When
+        balance.fold();
+
+        // Then
+        assertEquals(30, balance.balance());
+    }
+
+    @Test
+    @DisplayName("HotAccounts - saldo gorącego konta jest zapisywane przy flush i degradacji")
+    void hotAccountWrittenBack() throws Exception {
+        // Given
+        DAO dao = mock(DAO.class);
+        Account account = new Account();
+        account.setId(3);
+        account.setAmmount(100.25);
+        when(dao.findAccountById(3)).thenReturn(account);
+        HotAccounts hotAccounts = new HotAccounts(dao, 4);
+        HotAccount hot = hotAccounts.promote(3);
+
+        // When
+        hot.income(10);
+        hot.outcome(0.25);
+        hotAccounts.flush();
+        hotAccounts.demote(3);
+
+        // Then
+        assertEquals(110.0, hot.getAmmount(), 0.0001);
+        verify(dao, times(2)).updateAccountState(hot);
+        assertNull(hotAccounts.find(3));
+        assertFalse(hot.outcome(1000));
+    }
+
+    @Test
+    @DisplayName("HotAccounts - stop degraduje wszystkie konta, kolejny stop niczego nie nadpisuje")
+    void stopDemotesEverything() throws Exception {
+        // Given
+        DAO dao = mock(DAO.class);
+        Account account = new Account();
+        account.setId(3);
+        account.setAmmount(100.0);
+        when(dao.findAccountById(3)).thenReturn(account);
+        HotAccounts hotAccounts = new HotAccounts(dao, 4);
+        HotAccount hot = hotAccounts.promote(3);
+        hot.income(10);
+
+        // When
+        hotAccounts.stop();
+        hotAccounts.stop();
+
+        // Then
+        verify(dao, times(1)).updateAccountState(hot);
+        assertNull(hotAccounts.find(3));
+    }
+}
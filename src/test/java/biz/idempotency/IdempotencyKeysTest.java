@@ -0,0 +1,196 @@
+package biz.idempotency;
+
+import biz.PaymentResult;
+import db.dao.DAO;
+import model.PaymentKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeysTest {
+
+    private static final String REQUEST = "in:1:100.0";
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final AtomicInteger runs = new AtomicInteger();
+    private DAO dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = mock(DAO.class);
+    }
+
+    @Test
+    @DisplayName("execute - ponowienie z tym samym kluczem zwraca pierwszy wynik bez ponownej płatności")
+    void retryReturnsFirstResult() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+
+        // When
+        PaymentResult first = keys.execute("1:abc", REQUEST, this::pay);
+        PaymentResult retry = keys.execute("1:abc", REQUEST, this::pay);
+
+        // Then
+        assertSame(PaymentResult.SUCCESS, first);
+        assertSame(PaymentResult.SUCCESS, retry);
+        assertEquals(1, runs.get());
+        verify(dao, times(1)).findPaymentKey("1:abc");
+        verify(dao).insertPaymentKey("1:abc", REQUEST, "PENDING", 1_000_000L);
+        verify(dao).updatePaymentKey("1:abc", "SUCCESS");
+    }
+
+    @Test
+    @DisplayName("execute - po wygaśnięciu w pamięci wynik jest brany z tabeli")
+    void expiredEntryServedFromTable() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+        keys.execute("1:abc", REQUEST, this::pay);
+        when(dao.findPaymentKey("1:abc")).thenReturn(stored(REQUEST, "SUCCESS"));
+
+        // When
+        now.addAndGet(61_000);
+        keys.execute("1:other", REQUEST, this::pay);
+        PaymentResult retry = keys.execute("1:abc", REQUEST, this::pay);
+
+        // Then
+        assertSame(PaymentResult.SUCCESS, retry);
+        assertEquals(2, runs.get());
+        verify(dao, times(1)).insertPaymentKey(eq("1:abc"), any(), any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("execute - odrzucenie nie jest zapamiętywane, ponowienie wykonuje płatność")
+    void rejectionNotRecorded() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+
+        // When
+        PaymentResult rejected = keys.execute("1:abc", REQUEST, () -> PaymentResult.VELOCITY_LIMIT);
+        PaymentResult retry = keys.execute("1:abc", REQUEST, this::pay);
+
+        // Then
+        assertSame(PaymentResult.VELOCITY_LIMIT, rejected);
+        assertSame(PaymentResult.SUCCESS, retry);
+        assertEquals(1, runs.get());
+        verify(dao).deletePaymentKey("1:abc");
+    }
+
+    @Test
+    @DisplayName("execute - klucz zapisany jako PENDING przed płatnością, po awarii płatność nie jest powtarzana")
+    void pendingKeyNotRunAgain() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+        when(dao.findPaymentKey("1:abc")).thenReturn(stored(REQUEST, "PENDING"));
+
+        // When
+        assertThrows(IllegalStateException.class, () -> keys.execute("1:abc", REQUEST, this::pay));
+
+        // Then
+        assertEquals(0, runs.get());
+        verify(dao, never()).insertPaymentKey(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("execute - ten sam klucz z innym żądaniem jest odrzucany, w pamięci i w tabeli")
+    void otherRequestRejected() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+        keys.execute("1:abc", REQUEST, this::pay);
+        when(dao.findPaymentKey("1:old")).thenReturn(stored(REQUEST, "SUCCESS"));
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> keys.execute("1:abc", "in:1:500.0", this::pay));
+        assertThrows(IllegalArgumentException.class, () -> keys.execute("1:old", "out:1:100.0", this::pay));
+
+        // Then
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    @DisplayName("execute - błąd płatności zwalnia klucz")
+    void failedPaymentReleasesKey() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+
+        // When
+        assertThrows(SQLException.class, () -> keys.execute("1:abc", REQUEST, () -> {
+            throw new SQLException("busy");
+        }));
+        PaymentResult retry = keys.execute("1:abc", REQUEST, this::pay);
+
+        // Then
+        assertSame(PaymentResult.SUCCESS, retry);
+        verify(dao).deletePaymentKey("1:abc");
+    }
+
+    @Test
+    @DisplayName("execute - równoczesne ponowienia czekają na pierwsze wykonanie")
+    void concurrentRetriesWait() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 100, 60_000, now::get);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        Future<PaymentResult> first = executor.submit(() -> keys.execute("1:abc", REQUEST, () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            return pay();
+        }));
+        running.await();
+        Future<PaymentResult> second = executor.submit(() -> keys.execute("1:abc", REQUEST, this::pay));
+        Future<PaymentResult> third = executor.submit(() -> keys.execute("1:abc", REQUEST, this::pay));
+        Thread.sleep(50);
+        release.countDown();
+
+        // Then
+        assertSame(PaymentResult.SUCCESS, first.get(5, TimeUnit.SECONDS));
+        assertSame(PaymentResult.SUCCESS, second.get(5, TimeUnit.SECONDS));
+        assertSame(PaymentResult.SUCCESS, third.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("execute - pamięć podręczna jest ograniczona")
+    void cacheBounded() throws Exception {
+        // Given
+        IdempotencyKeys keys = new IdempotencyKeys(dao, 64, 60_000, now::get);
+
+        // When
+        for (int i = 0; i < 1_000; i++) keys.execute("1:" + i, REQUEST, this::pay);
+
+        // Then
+        assertTrue(keys.size() <= 64);
+    }
+
+    private static PaymentKey stored(String request, String result) {
+        PaymentKey key = new PaymentKey();
+        key.setRequest(request);
+        key.setResult(result);
+        return key;
+    }
+
+    private PaymentResult pay() throws SQLException {
+        runs.incrementAndGet();
+        return PaymentResult.SUCCESS;
+    }
+}
@@ -0,0 +1,109 @@
+package biz.password;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordEngineTest {
+
+    private static final int COST = 1000;
+
+    private ExecutorService executor;
+    private PasswordEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        executor = PasswordEngine.newExecutor(2, 4);
+        engine = new PasswordEngine(new Pbkdf2PasswordHasher(COST), executor, new Sha256PasswordHasher());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("hash - PBKDF2 z osobną solą dla każdego hasła")
+    void hash_saltedPerPassword() {
+        // When
+        String first = engine.hash("secret".toCharArray());
+        String second = engine.hash("secret".toCharArray());
+
+        // Then
+        assertTrue(first.startsWith("pbkdf2$1000$"));
+        assertNotEquals(first, second);
+        assertEquals(first, engine.verify("secret".toCharArray(), first));
+        assertNull(engine.verify("wrong".toCharArray(), first));
+    }
+
+    @Test
+    @DisplayName("verify - stary hash SHA-256 jest akceptowany i zastępowany przez PBKDF2")
+    void verify_legacyHashUpgraded() {
+        // Given
+        String legacy = new Sha256PasswordHasher().hash("Adam".toCharArray());
+
+        // When
+        String upgraded = engine.verify("Adam".toCharArray(), legacy);
+
+        // Then
+        assertNotNull(upgraded);
+        assertTrue(upgraded.startsWith("pbkdf2$"));
+        assertEquals(upgraded, engine.verify("Adam".toCharArray(), upgraded));
+        assertNull(engine.verify("Ewa".toCharArray(), legacy));
+    }
+
+    @Test
+    @DisplayName("verify - hash z bazy bank.db pozostaje zgodny")
+    void verify_legacyHashFromDatabase() {
+        assertNotNull(engine.verify("Adam".toCharArray(), "PwybA+jjmwN3PH6nYhA1y2/JR81BynxEBW1+e7rrs9Q="));
+    }
+
+    @Test
+    @DisplayName("verify - hash o niższym koszcie jest przeliczany")
+    void verify_cheaperHashRehashed() {
+        // Given
+        String cheap = new Pbkdf2PasswordHasher(10).hash("secret".toCharArray());
+
+        // When
+        String result = engine.verify("secret".toCharArray(), cheap);
+
+        // Then
+        assertTrue(result.startsWith("pbkdf2$1000$"));
+    }
+
+    @Test
+    @DisplayName("verify - czyści tablicę hasła")
+    void verify_clearsPassword() {
+        char[] password = "secret".toCharArray();
+        engine.verify(password, engine.hash("secret".toCharArray()));
+        assertArrayEquals("aaaaaa".toCharArray(), password);
+    }
+
+    @Test
+    @DisplayName("verify - pełna kolejka odrzuca logowanie zamiast czekać")
+    void verify_saturatedPoolRejects() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 6; i++) {
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+        }
+
+        // Then
+        try {
+            assertThrows(RejectedExecutionException.class,
+                    () -> engine.verify("secret".toCharArray(), "x"));
+        } finally {
+            release.countDown();
+        }
+    }
+}
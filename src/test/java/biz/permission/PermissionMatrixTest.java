@@ -0,0 +1,78 @@
+package biz.permission;
+
+import model.Account;
+import model.Permission;
+import model.User;
+import model.operations.Interest;
+import model.operations.OperationType;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionMatrixTest {
+
+    private static final int CLIENT = 1;
+    private static final int ADMIN = 2;
+
+    private PermissionMatrix matrix;
+    private User owner;
+    private User other;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        matrix = PermissionMatrix.compile(List.of(
+                permission(ADMIN, OperationType.PAYMENT_IN, false),
+                permission(ADMIN, OperationType.WITHDRAW, false),
+                permission(ADMIN, OperationType.INTEREST, false),
+                permission(CLIENT, OperationType.PAYMENT_IN, false),
+                permission(CLIENT, OperationType.WITHDRAW, true)));
+        owner = user(1);
+        other = user(2);
+        account = new Account();
+        account.setOwner(owner);
+    }
+
+    @Test
+    @DisplayName("allows - klient wypłaca tylko z własnego konta")
+    void clientWithdrawsOwnAccountOnly() {
+        assertTrue(matrix.allows(new Withdraw(owner, 10, "", account), owner.getId(), CLIENT));
+        assertFalse(matrix.allows(new Withdraw(other, 10, "", account), other.getId(), CLIENT));
+        assertFalse(matrix.allows(new Withdraw(owner, 10, "", account), other.getId(), CLIENT));
+    }
+
+    @Test
+    @DisplayName("allows - administrator wypłaca z dowolnego konta")
+    void adminWithdrawsAnyAccount() {
+        assertTrue(matrix.allows(new Withdraw(other, 10, "", account), other.getId(), ADMIN));
+    }
+
+    @Test
+    @DisplayName("allows - brak wpisu w tabeli oznacza odmowę")
+    void missingEntryDenied() {
+        assertFalse(matrix.allows(new Interest(owner, 10, "", account), owner.getId(), CLIENT));
+        assertTrue(matrix.allows(new Interest(owner, 10, "", account), owner.getId(), ADMIN));
+        assertFalse(matrix.allows(new PaymentIn(owner, 10, "", account), owner.getId(), 7));
+        assertFalse(matrix.allows(new PaymentIn(owner, 10, "", account), owner.getId(), -1));
+    }
+
+    private static Permission permission(int roleId, OperationType type, boolean ownerOnly) {
+        Permission permission = new Permission();
+        permission.setRoleId(roleId);
+        permission.setOperationType(type);
+        permission.setOwnerOnly(ownerOnly);
+        return permission;
+    }
+
+    private static User user(int id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,120 @@
+package biz.reconcile;
+
+import db.dao.DAO;
+import model.operations.OperationType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ReconcilerTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final List<Object[]> postings = new ArrayList<>();
+    private final Map<Integer, Double> balances = new LinkedHashMap<>();
+
+    @Test
+    @DisplayName("reconcile - salda zgodne z sumą wpłat i wypłat na wielu kontach")
+    void balancedAcrossManyAccounts() throws Exception {
+        // Given
+        for (int account = 1; account <= 5_000; account++) {
+            post(account, OperationType.PAYMENT_IN, 100);
+            post(account, OperationType.WITHDRAW, 30.5);
+            post(account, OperationType.PAYMENT_IN, account);
+            balances.put(account, 69.5 + account);
+        }
+
+        // When
+        ReconciliationReport report = new Reconciler(dao(), pool, 4, 256).reconcile();
+
+        // Then
+        assertTrue(report.isBalanced());
+        assertEquals(5_000, report.getAccounts());
+        assertEquals(15_000, report.getPostings());
+    }
+
+    @Test
+    @DisplayName("reconcile - raportuje konto z rozbieżnym saldem i różnicę")
+    void reportsDifference() throws Exception {
+        // Given
+        post(1, OperationType.PAYMENT_IN, 100);
+        post(2, OperationType.PAYMENT_IN, 50);
+        post(2, OperationType.WITHDRAW, 20);
+        balances.put(1, 100.0);
+        balances.put(2, 40.0);
+
+        // When
+        ReconciliationReport report = new Reconciler(dao(), pool, 2, 1).reconcile();
+
+        // Then
+        assertEquals(1, report.getDiscrepancies().size());
+        Discrepancy discrepancy = report.getDiscrepancies().get(0);
+        assertEquals(2, discrepancy.getAccountId());
+        assertEquals(30, discrepancy.getExpected(), 0.0001);
+        assertEquals(10, discrepancy.getDifference(), 0.0001);
+        assertEquals(2, discrepancy.getOperations());
+    }
+
+    @Test
+    @DisplayName("reconcile - saldo bez operacji i operacje bez konta są rozbieżnościami")
+    void missingOperationsAndMissingAccount() throws Exception {
+        // Given
+        balances.put(1, 10.0);
+        post(7, OperationType.PAYMENT_IN, 5);
+
+        // When
+        ReconciliationReport report = new Reconciler(dao(), pool, 3, 16).reconcile();
+
+        // Then
+        assertEquals(2, report.getDiscrepancies().size());
+        assertEquals(1, report.getDiscrepancies().get(0).getAccountId());
+        assertFalse(report.getDiscrepancies().get(0).isAccountMissing());
+        assertEquals(7, report.getDiscrepancies().get(1).getAccountId());
+        assertTrue(report.getDiscrepancies().get(1).isAccountMissing());
+    }
+
+    @Test
+    @DisplayName("reconcile - odsetki i różnice poniżej pół grosza nie zmieniają wyniku")
+    void interestAndRoundingIgnored() throws Exception {
+        // Given
+        post(1, OperationType.PAYMENT_IN, 0.1);
+        post(1, OperationType.PAYMENT_IN, 0.2);
+        post(1, OperationType.INTEREST, 0.3);
+        balances.put(1, 0.301);
+
+        // When
+        ReconciliationReport report = new Reconciler(dao(), pool, 1, 16).reconcile();
+
+        // Then
+        assertTrue(report.isBalanced());
+        assertEquals(2, report.getPostings());
+    }
+
+    private void post(int accountId, OperationType type, double ammount) {
+        postings.add(new Object[]{accountId, type, ammount});
+    }
+
+    private DAO dao() throws Exception {
+        DAO dao = mock(DAO.class);
+        doAnswer(invocation -> {
+            DAO.PostingHandler handler = invocation.getArgument(0);
+            for (Object[] p : postings) handler.accept((Integer) p[0], (OperationType) p[1], (Double) p[2]);
+            return null;
+        }).when(dao).scanPostings(any());
+        doAnswer(invocation -> {
+            DAO.BalanceHandler handler = invocation.getArgument(0);
+            balances.forEach(handler::accept);
+            return null;
+        }).when(dao).scanBalances(any());
+        return dao;
+    }
+}
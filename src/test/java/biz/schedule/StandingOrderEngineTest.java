@@ -0,0 +1,179 @@
+package biz.schedule;
+
+import biz.AccountManager;
+import biz.PaymentResult;
+import db.dao.DAO;
+import model.PaymentKey;
+import model.StandingOrder;
+import model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StandingOrderEngineTest {
+
+    private static final long DAY = 86_400_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000_000L);
+    private final User user = new User();
+    private AccountManager accountManager;
+    private DAO dao;
+    private StandingOrderEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        accountManager = mock(AccountManager.class);
+        dao = mock(DAO.class);
+        when(accountManager.tryInternalPayment(any(), anyDouble(), any(), anyInt(), anyInt()))
+                .thenReturn(PaymentResult.SUCCESS);
+        engine = new StandingOrderEngine(accountManager, dao, 1000, now::get);
+    }
+
+    @Test
+    @DisplayName("tick - przelew z datą przyszłą wykonuje się raz, w swoim terminie")
+    void futureDatedRunsOnce() throws Exception {
+        // Given
+        engine.add(order(1, 1, 2, now.get() + 5_000, 0));
+
+        // When
+        int before = engine.tick();
+        now.addAndGet(5_000);
+        int due = engine.tick();
+        now.addAndGet(DAY);
+        int after = engine.tick();
+
+        // Then
+        assertEquals(0, before);
+        assertEquals(1, due);
+        assertEquals(0, after);
+        assertEquals(0, engine.size());
+        verify(accountManager, times(1)).tryInternalPayment(user, 10.0, "zlecenie", 1, 2);
+    }
+
+    @Test
+    @DisplayName("tick - zlecenia z jednego ticka idą razem, pogrupowane po koncie źródłowym, zapis jedną paczką")
+    void dueOrdersGroupedBySource() throws Exception {
+        // Given
+        engine.add(order(1, 3, 9, now.get(), DAY));
+        engine.add(order(2, 1, 9, now.get(), DAY));
+        engine.add(order(3, 3, 8, now.get(), DAY));
+        engine.add(order(4, 1, 8, now.get(), DAY));
+
+        // When
+        now.addAndGet(1_000);
+        int due = engine.tick();
+
+        // Then
+        assertEquals(4, due);
+        InOrder inOrder = inOrder(accountManager);
+        inOrder.verify(accountManager, times(2)).tryInternalPayment(any(), anyDouble(), any(), eq(1), anyInt());
+        inOrder.verify(accountManager, times(2)).tryInternalPayment(any(), anyDouble(), any(), eq(3), anyInt());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<StandingOrder>> written = ArgumentCaptor.forClass(List.class);
+        verify(dao).updateStandingOrders(written.capture());
+        assertEquals(4, written.getValue().size());
+        assertEquals(now.get() - 1_000 + DAY, written.getValue().get(0).getNextRun());
+    }
+
+    @Test
+    @DisplayName("load - po przestoju zaległe wystąpienia są nadrabiane po jednym na tick")
+    void catchUpAfterDowntime() throws Exception {
+        // Given
+        StandingOrder stored = order(7, 1, 2, now.get() - 3 * DAY + 1, DAY);
+        when(dao.findActiveStandingOrders()).thenReturn(List.of(stored));
+        engine.load();
+
+        // When
+        int total = 0;
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(1_000);
+            total += engine.tick();
+        }
+
+        // Then
+        assertEquals(4, total);
+        assertTrue(stored.getNextRun() > now.get());
+        assertEquals(4, engine.getExecuted());
+    }
+
+    @Test
+    @DisplayName("tick - wystąpienie zajęte przed awarią nie jest płacone drugi raz")
+    void claimedRunNotRepeated() throws Exception {
+        // Given
+        StandingOrder stored = order(8, 1, 2, now.get(), DAY);
+        when(dao.findActiveStandingOrders()).thenReturn(List.of(stored));
+        when(dao.findPaymentKey("order:8:" + now.get())).thenReturn(new PaymentKey());
+        engine.load();
+
+        // When
+        now.addAndGet(1_000);
+        int due = engine.tick();
+
+        // Then
+        assertEquals(1, due);
+        verify(accountManager, never()).tryInternalPayment(any(), anyDouble(), any(), anyInt(), anyInt());
+        assertEquals(now.get() - 1_000 + DAY, stored.getNextRun());
+        InOrder inOrder = inOrder(dao);
+        inOrder.verify(dao).updateStandingOrders(List.of(stored));
+        inOrder.verify(dao).deletePaymentKey("order:8:" + (now.get() - 1_000));
+    }
+
+    @Test
+    @DisplayName("tick - wystąpienie zajmowane przed przelewem, zwalniane po zapisie następnego terminu")
+    void runClaimedAroundTransfer() throws Exception {
+        // Given
+        long nextRun = now.get();
+        engine.add(order(9, 1, 2, nextRun, DAY));
+
+        // When
+        now.addAndGet(1_000);
+        engine.tick();
+
+        // Then
+        InOrder inOrder = inOrder(dao, accountManager);
+        inOrder.verify(dao).insertPaymentKey("order:9:" + nextRun, "", "PENDING", now.get());
+        inOrder.verify(accountManager).tryInternalPayment(user, 10.0, "zlecenie", 1, 2);
+        inOrder.verify(dao).updateStandingOrders(anyList());
+        inOrder.verify(dao).deletePaymentKey("order:9:" + nextRun);
+    }
+
+    @Test
+    @DisplayName("cancel - anulowane zlecenie nie jest wykonywane")
+    void cancelledOrderSkipped() throws Exception {
+        // Given
+        engine.add(order(5, 1, 2, now.get() + 1_000, DAY));
+
+        // When
+        boolean cancelled = engine.cancel(5);
+        now.addAndGet(2_000);
+        int due = engine.tick();
+
+        // Then
+        assertTrue(cancelled);
+        assertEquals(0, due);
+        verify(accountManager, never()).tryInternalPayment(any(), anyDouble(), any(), anyInt(), anyInt());
+    }
+
+    private StandingOrder order(int id, int source, int dest, long nextRun, long interval) throws Exception {
+        StandingOrder order = new StandingOrder();
+        order.setId(id);
+        order.setUser(user);
+        order.setSourceAccountId(source);
+        order.setDestAccountId(dest);
+        order.setAmmount(10.0);
+        order.setDescription("zlecenie");
+        order.setNextRun(nextRun);
+        order.setIntervalMillis(interval);
+        when(dao.createStandingOrder(order)).thenReturn(order);
+        return order;
+    }
+}
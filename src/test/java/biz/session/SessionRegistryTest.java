@@ -0,0 +1,164 @@
+package biz.session;
+
+import model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionRegistryTest {
+
+    private static final long IDLE = 60_000;
+    private static final long ABSOLUTE = 600_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SessionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SessionRegistry(IDLE, ABSOLUTE, 8, now::get);
+    }
+
+    @Test
+    @DisplayName("open/find - wielu użytkowników ma równoległe sesje")
+    void concurrentSessionsForManyUsers() {
+        // Given
+        User adam = createUser(1, "Adam");
+        User ewa = createUser(2, "Ewa");
+
+        // When
+        String adamToken = registry.open(adam);
+        String ewaToken = registry.open(ewa);
+
+        // Then
+        assertNotEquals(adamToken, ewaToken);
+        assertSame(adam, registry.find(adamToken));
+        assertSame(ewa, registry.find(ewaToken));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    @DisplayName("onExpiry - słuchacz dostaje sesje wygasłe, ale nie zamknięte")
+    void expiryListenerSeesExpiredSessions() {
+        // Given
+        List<User> expired = new ArrayList<>();
+        registry.onExpiry(session -> expired.add(session.getUser()));
+        User adam = createUser(1, "Adam");
+        User ewa = createUser(2, "Ewa");
+        registry.open(adam);
+        registry.close(registry.open(ewa));
+
+        // When
+        now.addAndGet(IDLE + 1000);
+        registry.expire();
+
+        // Then
+        assertEquals(List.of(adam), expired);
+    }
+
+    @Test
+    @DisplayName("find - nieznany token zwraca null")
+    void unknownToken() {
+        assertNull(registry.find("nope"));
+        assertNull(registry.find(null));
+    }
+
+    @Test
+    @DisplayName("expire - nieużywana sesja wygasa po czasie bezczynności")
+    void idleSessionExpires() {
+        // Given
+        String token = registry.open(createUser(1, "Adam"));
+
+        // When
+        now.addAndGet(IDLE + 1000);
+        int removed = registry.expire();
+
+        // Then
+        assertEquals(1, removed);
+        assertEquals(0, registry.size());
+        assertNull(registry.find(token));
+    }
+
+    @Test
+    @DisplayName("expire - używana sesja żyje dalej, ale nie dłużej niż limit bezwzględny")
+    void activeSessionLivesUntilAbsoluteTimeout() {
+        // Given
+        User adam = createUser(1, "Adam");
+        String token = registry.open(adam);
+
+        // When / Then
+        for (long t = 0; t < ABSOLUTE - IDLE; t += IDLE / 2) {
+            now.addAndGet(IDLE / 2);
+            registry.expire();
+            assertSame(adam, registry.find(token));
+        }
+        now.addAndGet(IDLE);
+        registry.expire();
+        assertNull(registry.find(token));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    @DisplayName("find - wygasła sesja jest odrzucana także między tyknięciami zegara")
+    void expiredSessionRejectedBeforeTick() {
+        // Given
+        String token = registry.open(createUser(1, "Adam"));
+
+        // When
+        now.addAndGet(IDLE);
+
+        // Then
+        assertNull(registry.find(token));
+    }
+
+    @Test
+    @DisplayName("close - zamknięta sesja nie jest już dostępna")
+    void closedSession() {
+        // Given
+        User adam = createUser(1, "Adam");
+        String token = registry.open(adam);
+
+        // When
+        Session session = registry.close(token);
+
+        // Then
+        assertSame(adam, session.getUser());
+        assertNull(registry.find(token));
+        now.addAndGet(IDLE + 1000);
+        assertEquals(0, registry.expire());
+    }
+
+    @Test
+    @DisplayName("expire - duża liczba sesji wygasa w całości")
+    void manySessionsExpire() {
+        // Given
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            tokens.add(registry.open(createUser(i, "user" + i)));
+            if (i % 1000 == 0) now.addAndGet(100);
+        }
+        assertEquals(100_000, tokens.size());
+
+        // When
+        now.addAndGet(IDLE + 2000);
+        int removed = registry.expire();
+
+        // Then
+        assertEquals(100_000, removed);
+        assertEquals(0, registry.size());
+    }
+
+    private User createUser(int id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+}
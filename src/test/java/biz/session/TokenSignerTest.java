@@ -0,0 +1,93 @@
+package biz.session;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenSignerTest {
+
+    private static final long TTL = 60_000;
+    private static final long WINDOW = 10_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private TokenSigner signer;
+
+    @BeforeEach
+    void setUp() {
+        signer = new TokenSigner("first-secret".getBytes(StandardCharsets.UTF_8), TTL, WINDOW, now::get);
+    }
+
+    @Test
+    @DisplayName("issue/verify - token zawiera id użytkownika, rolę i czas ważności")
+    void issueAndVerify() {
+        // When
+        TokenClaims claims = signer.verify(signer.issue(7, 1, false));
+
+        // Then
+        assertNotNull(claims);
+        assertEquals(7, claims.getUserId());
+        assertEquals(1, claims.getRoleId());
+        assertFalse(claims.isAdmin());
+        assertEquals(now.get() + TTL, claims.getExpiresAt());
+        assertEquals(7, claims.toUser().getId());
+    }
+
+    @Test
+    @DisplayName("verify - zmieniony token jest odrzucany")
+    void tamperedTokenRejected() {
+        // Given
+        byte[] bytes = Base64.getUrlDecoder().decode(signer.issue(7, 1, false));
+        bytes[4] ^= 1; // inny użytkownik
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        // Then
+        assertNull(signer.verify(forged));
+        assertNull(signer.verify("not-a-token"));
+        assertNull(signer.verify(null));
+    }
+
+    @Test
+    @DisplayName("verify - token podpisany innym kluczem jest odrzucany")
+    void foreignKeyRejected() {
+        TokenSigner other = new TokenSigner("other-secret".getBytes(StandardCharsets.UTF_8), TTL, WINDOW, now::get);
+        assertNull(signer.verify(other.issue(7, 2, true)));
+    }
+
+    @Test
+    @DisplayName("verify - token po czasie ważności jest odrzucany")
+    void expiredTokenRejected() {
+        // Given
+        String token = signer.issue(7, 1, false);
+
+        // When
+        now.addAndGet(TTL);
+
+        // Then
+        assertNull(signer.verify(token));
+    }
+
+    @Test
+    @DisplayName("rotate - stary klucz działa tylko w oknie rotacji")
+    void rotationWindow() {
+        // Given
+        String oldToken = signer.issue(7, 2, true);
+
+        // When
+        signer.rotate("second-secret".getBytes(StandardCharsets.UTF_8));
+        String newToken = signer.issue(8, 1, false);
+
+        // Then
+        now.addAndGet(WINDOW);
+        assertNotNull(signer.verify(oldToken));
+        assertTrue(signer.verify(oldToken).isAdmin());
+        now.addAndGet(1);
+        assertNull(signer.verify(oldToken));
+        assertEquals(8, signer.verify(newToken).getUserId());
+    }
+}
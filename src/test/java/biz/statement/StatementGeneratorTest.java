@@ -0,0 +1,130 @@
+package biz.statement;
+
+import db.dao.DAO;
+import model.operations.OperationType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatementGeneratorTest {
+
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+    private static final YearMonth MARCH = YearMonth.of(2018, 3);
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @Test
+    @DisplayName("generate - saldo otwarcia z operacji sprzed miesiąca, zamknięcia po operacjach z miesiąca")
+    void openingAndClosingBalance() throws Exception {
+        // Given
+        row(1, OperationType.PAYMENT_IN, 100, "luty", day(2018, 2, 10));
+        row(1, OperationType.WITHDRAW, 30, "marzec", day(2018, 3, 5));
+        row(1, OperationType.INTEREST, 7, "odsetki", day(2018, 3, 6));
+        row(1, OperationType.PAYMENT_IN, 15, "marzec2", day(2018, 3, 31));
+        row(1, OperationType.PAYMENT_IN, 1000, "kwiecień", day(2018, 4, 1));
+        List<String> events = new ArrayList<>();
+
+        // When
+        int statements = new StatementGenerator(dao(1), ZONE, pool, 1).generate(MARCH, i -> recorder(events));
+
+        // Then
+        assertEquals(1, statements);
+        assertEquals(List.of("open 1 100.0", "line marzec", "line marzec2", "close 85.0"), events);
+    }
+
+    @Test
+    @DisplayName("generate - konto bez operacji w miesiącu dostaje wyciąg z niezmienionym saldem")
+    void accountWithoutOperationsInMonth() throws Exception {
+        // Given
+        row(1, OperationType.PAYMENT_IN, 50, "styczeń", day(2018, 1, 10));
+        row(2, OperationType.PAYMENT_IN, 20, "kwiecień", day(2018, 4, 10));
+        List<String> events = new ArrayList<>();
+
+        // When
+        int statements = new StatementGenerator(dao(2), ZONE, pool, 1).generate(MARCH, i -> recorder(events));
+
+        // Then
+        assertEquals(1, statements);
+        assertEquals(List.of("open 1 50.0", "close 50.0"), events);
+    }
+
+    @Test
+    @DisplayName("generate - zakresy kont są przetwarzane równolegle, każdy do własnego wyjścia")
+    void partitionsWriteSeparately() throws Exception {
+        // Given
+        for (int account = 1; account <= 100; account++) {
+            row(account, OperationType.PAYMENT_IN, account, "wpłata", day(2018, 3, 1));
+        }
+        StringWriter[] outputs = new StringWriter[4];
+
+        // When
+        int statements = new StatementGenerator(dao(100), ZONE, pool, 4).generate(MARCH, i -> {
+            outputs[i] = new StringWriter();
+            return new TextStatementWriter(outputs[i], ZONE);
+        });
+
+        // Then
+        assertEquals(100, statements);
+        assertTrue(outputs[0].toString().startsWith("Statement 2018-03 account 1\nOpening balance 0.00\n"
+                + "2018-03-01 12:00:00 PAYMENT_IN 1.00 wpłata\nClosing balance 1.00\n"));
+        assertTrue(outputs[3].toString().contains("Statement 2018-03 account 100\n"));
+        assertFalse(outputs[3].toString().contains("account 75\n"));
+    }
+
+    private void row(int accountId, OperationType type, double ammount, String description, long date) {
+        rows.add(new Object[]{accountId, type, ammount, description, date});
+    }
+
+    private static long day(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atTime(12, 0).atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static StatementWriter recorder(List<String> events) {
+        return new StatementWriter() {
+            public void open(int accountId, YearMonth month, double openingBalance) {
+                events.add("open " + accountId + " " + openingBalance);
+            }
+
+            public void line(OperationType type, double ammount, String description, long dateMillis) {
+                events.add("line " + description);
+            }
+
+            public void close(double closingBalance) {
+                events.add("close " + closingBalance);
+            }
+        };
+    }
+
+    private DAO dao(int maxAccountId) throws Exception {
+        DAO dao = mock(DAO.class);
+        when(dao.findMaxAccountId()).thenReturn(maxAccountId);
+        doAnswer(invocation -> {
+            int from = invocation.getArgument(0);
+            int to = invocation.getArgument(1);
+            DAO.StatementRowHandler handler = invocation.getArgument(2);
+            for (Object[] r : rows) {
+                int account = (Integer) r[0];
+                if (account < from || account > to) continue;
+                handler.accept(account, (OperationType) r[1], (Double) r[2], (String) r[3], (Long) r[4]);
+            }
+            return null;
+        }).when(dao).scanStatementRows(anyInt(), anyInt(), any());
+        return dao;
+    }
+}
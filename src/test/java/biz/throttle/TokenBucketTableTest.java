@@ -0,0 +1,156 @@
+package biz.throttle;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTableTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private TokenBucketTable table(int burst, int maxEntries) {
+        return new TokenBucketTable(burst, 100, 3, 1000, 8000, 10_000, maxEntries, 4, now::get);
+    }
+
+    @Test
+    @DisplayName("acquire - po wyczerpaniu limitu zwraca czas oczekiwania")
+    void burstThenWait() {
+        // Given
+        TokenBucketTable table = table(3, 100);
+
+        // When/Then
+        assertEquals(0, table.acquire("adam"));
+        assertEquals(0, table.acquire("adam"));
+        assertEquals(0, table.acquire("adam"));
+        assertEquals(100, table.acquire("adam"));
+        assertEquals(0, table.acquire("ewa"));
+    }
+
+    @Test
+    @DisplayName("acquire - limit odnawia się z upływem czasu bez wątku w tle")
+    void lazyRefill() {
+        // Given
+        TokenBucketTable table = table(2, 100);
+        table.acquire("adam");
+        table.acquire("adam");
+
+        // When
+        now.addAndGet(150);
+
+        // Then
+        assertEquals(0, table.acquire("adam"));
+        assertEquals(50, table.acquire("adam"));
+    }
+
+    @Test
+    @DisplayName("failure - kolejne błędy wydłużają blokadę dwukrotnie, sukces ją zdejmuje")
+    void progressiveLockout() {
+        // Given
+        TokenBucketTable table = table(100, 100);
+        table.failure("adam");
+        table.failure("adam");
+        assertEquals(0, table.acquire("adam"));
+
+        // When/Then
+        table.failure("adam");
+        assertEquals(1000, table.acquire("adam"));
+        table.failure("adam");
+        assertEquals(2000, table.acquire("adam"));
+        for (int i = 0; i < 10; i++) table.failure("adam");
+        assertEquals(8000, table.acquire("adam"));
+
+        table.success("adam");
+        assertEquals(0, table.acquire("adam"));
+    }
+
+    @Test
+    @DisplayName("acquire - liczba kubełków jest ograniczona, nieużywane są usuwane")
+    void boundedMemory() {
+        // Given
+        TokenBucketTable table = table(1, 8);
+
+        // When
+        for (int i = 0; i < 1000; i++) table.acquire("user" + i);
+
+        // Then
+        assertTrue(table.size() <= 8);
+        now.addAndGet(20_000);
+        table.acquire("fresh");
+        assertTrue(table.size() <= 8);
+        assertEquals(0, table.acquire("fresh2"));
+    }
+
+    @Test
+    @DisplayName("failure - zalew nowych nazw wypiera odblokowane klucze, ale nie blokuje innych użytkowników")
+    void floodDoesNotLockOutOthers() {
+        // Given
+        TokenBucketTable table = table(100, 4);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            table.acquire("random" + i);
+            table.failure("random" + i);
+        }
+        table.acquire("adam");
+        for (int i = 0; i < 5; i++) table.failure("mallory");
+
+        // Then
+        assertEquals(0, table.acquire("adam"));
+        assertTrue(table.acquire("mallory") > 0);
+        assertTrue(table.size() <= 4);
+    }
+
+    @Test
+    @DisplayName("failure - wspólny kubełek przepełnienia nigdy nie blokuje")
+    void overflowNeverLocksOut() {
+        // Given
+        TokenBucketTable table = table(100, 4);
+        for (int i = 0; table.size() < 4; i++) {
+            for (int j = 0; j < 3; j++) table.failure("locked" + i);
+        }
+
+        // When
+        for (int i = 0; i < 10; i++) table.failure("attacker" + i);
+
+        // Then
+        assertEquals(0, table.acquire("adam"));
+    }
+
+    @Test
+    @DisplayName("acquire - równoległe wątki nie przekraczają limitu")
+    void concurrentAcquire() throws Exception {
+        // Given
+        TokenBucketTable table = table(50, 100);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (table.acquire("adam") == 0) admitted.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // When
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        // Then
+        assertEquals(50, admitted.get());
+    }
+}
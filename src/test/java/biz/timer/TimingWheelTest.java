@@ -0,0 +1,80 @@
+package biz.timer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    @DisplayName("advance - element wygasa dopiero po swoim terminie")
+    void itemExpiresAtDeadline() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(10, 3, 0);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule("a", 55);
+
+        // When / Then
+        wheel.advance(49, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(50, expired::add);
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("advance - elementy z wyższych poziomów spływają w dół we właściwej kolejności")
+    void cascadesFromHigherLevels() {
+        // Given
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 3, 0);
+        long[] deadlines = {1, 63, 64, 65, 4095, 4096, 4097, 100_000, 262_143};
+        for (long deadline : deadlines) wheel.schedule(deadline, deadline);
+        List<Long> expired = new ArrayList<>();
+
+        // When
+        for (long now = 0; now <= 262_143; now += 7) {
+            int before = expired.size();
+            wheel.advance(now, expired::add);
+            // Then - nic nie wygasa przed czasem ani z opóźnieniem
+            for (int i = before; i < expired.size(); i++) {
+                assertTrue(expired.get(i) <= now && expired.get(i) > now - 7, "wygasł " + expired.get(i) + " przy " + now);
+            }
+        }
+        wheel.advance(262_143, expired::add);
+        assertEquals(deadlines.length, expired.size());
+    }
+
+    @Test
+    @DisplayName("advance - termin poza zasięgiem koła jest obsłużony")
+    void deadlineBeyondRange() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(1, 1, 0);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule("far", 1000);
+
+        // When / Then
+        wheel.advance(999, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(1000, expired::add);
+        assertEquals(List.of("far"), expired);
+    }
+
+    @Test
+    @DisplayName("schedule - termin w przeszłości wygasa przy najbliższym advance")
+    void pastDeadlineExpiresImmediately() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(10, 2, 1000);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule("late", 500);
+
+        // When
+        wheel.advance(1000, expired::add);
+
+        // Then
+        assertEquals(List.of("late"), expired);
+    }
+}
@@ -0,0 +1,141 @@
+package biz.velocity;
+
+import model.Role;
+import model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityGuardTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    @DisplayName("tryAcquire - limit liczby wypłat na minutę, po minucie okno się przesuwa")
+    void countPerMinute() {
+        // Given
+        VelocityGuard guard = new VelocityGuard(now::get);
+        guard.setLimits(1, new VelocityLimits(3, 1_000_000, 100, 1_000_000));
+        User user = user(1, 1);
+
+        // When
+        boolean first = guard.tryAcquire(user, 10, 1);
+        boolean second = guard.tryAcquire(user, 10, 1);
+        boolean third = guard.tryAcquire(user, 10, 1);
+        boolean fourth = guard.tryAcquire(user, 10, 1);
+        now.addAndGet(61_000);
+        boolean later = guard.tryAcquire(user, 10, 1);
+
+        // Then
+        assertTrue(first && second && third);
+        assertFalse(fourth);
+        assertTrue(later);
+    }
+
+    @Test
+    @DisplayName("release - oddana wypłata nie liczy się do limitu")
+    void releasedPaymentNotCounted() {
+        // Given
+        VelocityGuard guard = new VelocityGuard(now::get);
+        guard.setLimits(1, new VelocityLimits(2, 1_000_000, 100, 1_000_000));
+        User user = user(1, 1);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertTrue(guard.tryAcquire(user, 10, 1));
+            guard.release(user, 10, 1);
+        }
+        boolean first = guard.tryAcquire(user, 10, 1);
+        boolean second = guard.tryAcquire(user, 10, 1);
+        boolean third = guard.tryAcquire(user, 10, 1);
+
+        // Then
+        assertTrue(first && second);
+        assertFalse(third);
+    }
+
+    @Test
+    @DisplayName("tryAcquire - limit kwoty na godzinę liczony dla użytkownika na wszystkich kontach")
+    void amountPerHourPerUser() {
+        // Given
+        VelocityGuard guard = new VelocityGuard(now::get);
+        guard.setLimits(1, new VelocityLimits(100, 1_000, 100, 1_500));
+        User user = user(1, 1);
+
+        // When
+        boolean first = guard.tryAcquire(user, 10, 900);
+        now.addAndGet(120_000);
+        boolean second = guard.tryAcquire(user, 11, 700);
+        boolean smaller = guard.tryAcquire(user, 11, 600);
+        now.addAndGet(3_600_000);
+        boolean nextHour = guard.tryAcquire(user, 11, 700);
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+        assertTrue(smaller);
+        assertTrue(nextHour);
+    }
+
+    @Test
+    @DisplayName("tryAcquire - rola bez limitów nie jest ograniczana")
+    void roleWithoutLimits() {
+        // Given
+        VelocityGuard guard = new VelocityGuard(now::get);
+        guard.setLimits(1, new VelocityLimits(1, 1, 1, 1));
+        User admin = user(2, 2);
+
+        // When / Then
+        for (int i = 0; i < 100; i++) assertTrue(guard.tryAcquire(admin, 10, 1_000));
+    }
+
+    @Test
+    @DisplayName("tryAcquire - równoległe wypłaty nie przekraczają limitu")
+    void concurrentPaymentsRespectLimit() throws Exception {
+        // Given
+        VelocityGuard guard = new VelocityGuard(now::get);
+        guard.setLimits(1, new VelocityLimits(50, 1_000_000, 50, 1_000_000));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger admitted = new AtomicInteger();
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            int userId = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (guard.tryAcquire(user(100 + userId, 1), 10, 1)) admitted.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertTrue(admitted.get() <= 50);
+        assertTrue(admitted.get() > 0);
+    }
+
+    private static User user(int id, int roleId) {
+        Role role = new Role();
+        role.setId(roleId);
+        User user = new User();
+        user.setId(id);
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,108 @@
+package db.chain;
+
+import db.dao.DAO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ChainVerifierTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    @DisplayName("verify - nienaruszony łańcuch przechodzi w wielu porcjach i segmentach")
+    void intactChain() throws Exception {
+        // Given
+        List<ChainRecord> records = chain(10_000);
+
+        // When
+        ChainVerifier.Result result = new ChainVerifier(3_000, pool).verify(dao(records));
+
+        // Then
+        assertTrue(result.isIntact());
+        assertEquals(10_000, result.getRecords());
+        assertEquals(-1, result.getFirstBroken());
+    }
+
+    @Test
+    @DisplayName("verify - zmiana kwoty w jednym wierszu wskazuje ten wiersz")
+    void tamperedRecord() throws Exception {
+        // Given
+        List<ChainRecord> records = chain(10_000);
+        ChainRecord original = records.get(7_777);
+        String[] fields = original.getFields().clone();
+        fields[5] = "1000000.0";
+        records.set(7_777, new ChainRecord(fields, original.getHash()));
+
+        // When
+        ChainVerifier.Result result = new ChainVerifier(3_000, pool).verify(dao(records));
+
+        // Then
+        assertFalse(result.isIntact());
+        assertEquals(7_777, result.getFirstBroken());
+        assertEquals("7777", result.getFirstBrokenOperationId());
+    }
+
+    @Test
+    @DisplayName("verify - zamiana kolejności lub usunięcie wiersza przerywa łańcuch")
+    void reorderedAndRemoved() throws Exception {
+        // Given
+        List<ChainRecord> swapped = chain(5_000);
+        Collections.swap(swapped, 2_000, 2_001);
+        List<ChainRecord> removed = chain(5_000);
+        removed.remove(4_500);
+
+        // When
+        ChainVerifier.Result swappedResult = new ChainVerifier(1_024, pool).verify(dao(swapped));
+        ChainVerifier.Result removedResult = new ChainVerifier(1_024, pool).verify(dao(removed));
+
+        // Then
+        assertEquals(2_000, swappedResult.getFirstBroken());
+        assertEquals(4_500, removedResult.getFirstBroken());
+    }
+
+    @Test
+    @DisplayName("verify - pusta historia jest nienaruszona")
+    void emptyHistory() throws Exception {
+        // When
+        ChainVerifier.Result result = new ChainVerifier(1_024, pool).verify(dao(new ArrayList<>()));
+
+        // Then
+        assertTrue(result.isIntact());
+        assertEquals(0, result.getRecords());
+    }
+
+    private static List<ChainRecord> chain(int size) {
+        HashChain chain = new HashChain();
+        List<ChainRecord> records = new ArrayList<>(size);
+        byte[] previous = HashChain.GENESIS;
+        for (int i = 0; i < size; i++) {
+            String[] fields = {String.valueOf(i), "PAYMENT_IN", "op" + i, "Sun Mar 11 22:18:12 CET 2018",
+                    "1", i + ".0", "1", "1.0", "true"};
+            previous = chain.link(previous, fields);
+            records.add(new ChainRecord(fields, HashChain.encode(previous)));
+        }
+        return records;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DAO dao(List<ChainRecord> records) throws Exception {
+        DAO dao = mock(DAO.class);
+        doAnswer(invocation -> {
+            Consumer<ChainRecord> consumer = invocation.getArgument(0);
+            records.forEach(consumer);
+            return null;
+        }).when(dao).scanHistory(any());
+        return dao;
+    }
+}
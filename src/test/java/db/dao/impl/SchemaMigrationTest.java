@@ -0,0 +1,92 @@
+package db.dao.impl;
+
+import db.chain.ChainVerifier;
+import db.dao.DAO;
+import model.Account;
+import model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("createDAO - stara baza dostaje nowe kolumny, tabele i łańcuch skrótów")
+    void upgradesLegacyDatabase() throws Exception {
+        // Given
+        String url = "jdbc:sqlite:" + directory.resolve("legacy.db");
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement st = conn.createStatement()) {
+            st.executeUpdate("CREATE TABLE `Role` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, `name` TEXT NOT NULL UNIQUE)");
+            st.executeUpdate("CREATE TABLE `User` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, `name` TEXT NOT NULL UNIQUE, `role_id` INTEGER NOT NULL)");
+            st.executeUpdate("CREATE TABLE `Account` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, `owner_id` INTEGER, `ammount` REAL)");
+            st.executeUpdate("CREATE TABLE `Operation` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, `ammount` REAL, " +
+                    "`description` TEXT NOT NULL, `date` TEXT NOT NULL, `user_id` INTEGER, `account_id` INTEGER, `type` INTEGER)");
+            st.executeUpdate("CREATE TABLE `History` (`operation_id` INTEGER, `succesfull` INTEGER NOT NULL)");
+            st.executeUpdate("INSERT INTO Role VALUES (1, 'User')");
+            st.executeUpdate("INSERT INTO User VALUES (1, 'Adam', 1)");
+            st.executeUpdate("INSERT INTO Account VALUES (1, 1, 100.0)");
+            st.executeUpdate("INSERT INTO Operation VALUES (1, 10.0, 'wpłata', 'Mon Oct 19 10:00:00 CEST 2026', 1, 1, 'PAYMENT_IN')");
+            st.executeUpdate("INSERT INTO History VALUES (1, 'true')");
+            st.executeUpdate("CREATE TABLE `PaymentKey` (`idempotency_key` TEXT PRIMARY KEY, `result` TEXT NOT NULL, `created` INTEGER NOT NULL)");
+            st.executeUpdate("INSERT INTO PaymentKey VALUES ('1:k1', 'SUCCESS', 5)");
+        }
+
+        // When
+        DAO dao = SQLiteDB.createDAO(url);
+        User owner = new User();
+        owner.setId(1);
+        List<Account> accounts = dao.findAccountsByOwner(owner);
+        boolean intact = new ChainVerifier().verify(dao).isIntact();
+        String request = dao.findPaymentKey("1:k1").getRequest();
+        int keys = dao.deletePaymentKeys(Long.MAX_VALUE);
+        int orders = dao.findActiveStandingOrders().size();
+        dao.close();
+        DAO reopened = SQLiteDB.createDAO(url);
+        boolean stillIntact = new ChainVerifier().verify(reopened).isIntact();
+        reopened.close();
+
+        // Then
+        assertEquals("pln", accounts.get(0).getCurrency());
+        assertTrue(intact && stillIntact);
+        assertEquals("", request);
+        assertEquals(1, keys);
+        assertEquals(0, orders);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigration.VERSION, SchemaMigration.version(conn));
+        }
+    }
+
+    @Test
+    @DisplayName("createDAO - pusty plik dostaje cały aktualny schemat")
+    void createsSchemaInEmptyFile() throws Exception {
+        // Given
+        String url = "jdbc:sqlite:" + directory.resolve("empty.db");
+
+        // When
+        DAO dao = SQLiteDB.createDAO(url);
+        List<String> names = dao.findAllUserNames();
+        int orders = dao.findActiveStandingOrders().size();
+        boolean intact = new ChainVerifier().verify(dao).isIntact();
+        dao.close();
+
+        // Then
+        assertTrue(names.isEmpty());
+        assertEquals(0, orders);
+        assertTrue(intact);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            assertEquals(SchemaMigration.VERSION, SchemaMigration.version(conn));
+        }
+    }
+}
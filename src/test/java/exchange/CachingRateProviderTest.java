@@ -0,0 +1,144 @@
+package exchange;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachingRateProviderTest {
+
+    AtomicLong now = new AtomicLong();
+    AtomicInteger fetches = new AtomicInteger();
+    volatile double usdRate = 3.6;
+    volatile CountDownLatch gate = null;
+    RateProvider source = () -> {
+        fetches.incrementAndGet();
+        CountDownLatch g = gate;
+        if (g != null) {
+            try {
+                g.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        return List.of(rate("usd", "pln", usdRate, 1 / usdRate), rate("eur", "pln", 4.12, 0.25));
+    };
+    CachingRateProvider target;
+
+    @BeforeEach
+    void setUp() {
+        target = new CachingRateProvider(source, Duration.ofSeconds(10), Duration.ofSeconds(5),
+                now::get, Runnable::run);
+    }
+
+    @Test
+    void freshRatesAreNotFetchedAgain() throws Exception {
+        target.tableFor("usd", "pln");
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        target.tableFor("usd", "pln");
+
+        assertEquals(1, fetches.get());
+    }
+
+    //Po TTL, w oknie "stale" zwracany jest stary kurs, a odświeżenie idzie w tle
+    @Test
+    void staleRateIsServedWhileRefreshing() throws Exception {
+        List<Runnable> background = new ArrayList<>();
+        AtomicInteger immediate = new AtomicInteger(1);
+        target = new CachingRateProvider(source, Duration.ofSeconds(10), Duration.ofSeconds(5), now::get,
+                task -> {
+                    if (immediate.getAndDecrement() > 0) task.run();
+                    else background.add(task);
+                });
+        target.tableFor("usd", "pln");
+        usdRate = 4.0;
+        now.addAndGet(Duration.ofSeconds(12).toNanos());
+
+        assertEquals(3.6, target.tableFor("usd", "pln").rate("usd", "pln"), 0.0001);
+        assertEquals(3.6, target.tableFor("usd", "pln").rate("usd", "pln"), 0.0001);
+        assertEquals(1, background.size());
+
+        background.get(0).run();
+        assertEquals(4.0, target.tableFor("usd", "pln").rate("usd", "pln"), 0.0001);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void expiredPastStaleWindowWaitsForNewRates() throws Exception {
+        target.tableFor("usd", "pln");
+        usdRate = 4.0;
+        now.addAndGet(Duration.ofSeconds(16).toNanos());
+
+        assertEquals(4.0, target.tableFor("usd", "pln").rate("usd", "pln"), 0.0001);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void ttlPerPair() throws Exception {
+        target.setTtl("usd", "pln", Duration.ofSeconds(1));
+        target.tableFor("usd", "pln");
+        usdRate = 4.0;
+        now.addAndGet(Duration.ofSeconds(7).toNanos());
+
+        assertEquals(4.12, target.tableFor("eur", "pln").rate("eur", "pln"), 0.0001);
+        assertEquals(1, fetches.get());
+        assertEquals(4.0, target.tableFor("pln", "usd").rate("usd", "pln"), 0.0001);
+        assertEquals(2, fetches.get());
+    }
+
+    //Seria wywołań exchange() podczas odświeżania powoduje jedno pobranie
+    @Test
+    void burstDuringRefreshIsCoalesced() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            gate = new CountDownLatch(1);
+            target = new CachingRateProvider(source, Duration.ofSeconds(10), Duration.ofSeconds(5),
+                    now::get, pool);
+            CurrencyExchange exchange = new CurrencyExchange();
+            exchange.useCache(target);
+
+            List<Future<Double>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(() -> exchange.exchange("usd", "pln", 100)));
+            }
+            Thread.sleep(100);
+            gate.countDown();
+            for (Future<Double> result : results) {
+                assertEquals(360, result.get(5, TimeUnit.SECONDS), 0.001);
+            }
+            assertEquals(1, fetches.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedFetchIsReported() {
+        target = new CachingRateProvider(() -> { throw new IOException("feed down"); },
+                Duration.ofSeconds(10), Duration.ofSeconds(5), now::get, Runnable::run);
+
+        assertThrows(IOException.class, () -> target.tableFor("usd", "pln"));
+    }
+
+    private static Rate rate(String from, String to, double rate, double reverse) {
+        Rate r = new Rate();
+        r.setFrom(from);
+        r.setTo(to);
+        r.setRate(rate);
+        r.setReverse(reverse);
+        return r;
+    }
+}
@@ -7,7 +7,10 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class CurrencyExchangeTest {
@@ -78,4 +81,95 @@ class CurrencyExchangeTest {
         assertThrows(IllegalArgumentException.class,
                 () ->target.exchange("pln", "eur", -100));
     }
+
+    //Wymiana całej tablicy kwot
+    @Test
+    void exchangeBatchUsdToPln() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        // Tested Operations
+        double[] result = target.exchange("usd", "pln", new double[]{100, 0, 10, 2.5});
+        // Validate results
+        assertArrayEquals(new double[]{360, 0, 36, 9}, result, 0.001, "Złe obliczenie ....");
+    }
+
+    //Wymiana kwot w groszach
+    @Test
+    void exchangeBatchMinorUnits() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        // Tested Operations
+        long[] result = target.exchange("pln", "eur", new long[]{10000, 3, 1});
+        // Validate results
+        assertArrayEquals(new long[]{2500, 1, 0}, result, "Złe obliczenie ....");
+    }
+
+    //Wymiana kolumny kwot w różnych walutach
+    @Test
+    void exchangeColumnToPln() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        // Tested Operations
+        double[] result = target.exchange(new String[]{"usd", "eur", "pln", "usd"},
+                new double[]{100, 100, 100, 10}, "pln");
+        // Validate results
+        assertArrayEquals(new double[]{360, 412, 100, 36}, result, 0.001, "Złe obliczenie ....");
+    }
+
+    @Test
+    void exchangeBatchNegativeValue() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        assertThrows(IllegalArgumentException.class,
+                () -> target.exchange("pln", "eur", new double[]{100, -1}));
+    }
+
+    @Test
+    void exchangeColumnUnknownCurrency() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        assertThrows(Exception.class,
+                () -> target.exchange(new String[]{"usd", "yen"}, new double[]{1, 1}, "pln"));
+    }
+
+    @Test
+    void noInitializationOfRatesBatch() {
+        assertThrows(CurrencyExchangeIsNotInitialized.class,
+                () -> target.exchange("usd", "pln", new double[]{1}));
+    }
+
+    @Test
+    void tryExchangeConverts() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        // Tested Operations
+        ExchangeResult result = target.tryExchange("usd", "pln", 100);
+        // Validate results
+        assertInstanceOf(ExchangeResult.Converted.class, result);
+        assertEquals(360, ((ExchangeResult.Converted) result).value(), 0.001, "Złe obliczenie ....");
+        assertEquals(3.6, ((ExchangeResult.Converted) result).rate(), 0.001, "Złe obliczenie ....");
+    }
+
+    //Odrzucenia bez wyjątków
+    @Test
+    void tryExchangeRejects() throws Exception {
+        assertSame(ExchangeResult.NOT_INITIALIZED, target.tryExchange("usd", "pln", 100));
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        assertSame(ExchangeResult.UNKNOWN_PAIR, target.tryExchange("yen", "eur", 100));
+        assertSame(ExchangeResult.NEGATIVE_VALUE, target.tryExchange("pln", "eur", -100));
+    }
+
+    //Wyjątek dla nieznanej pary jest współdzielony i nie ma stosu wywołań
+    @Test
+    void unknownCurrencyExceptionIsStackless() throws Exception {
+        //Init rates form test file
+        target.infitFromFile("src/test/resources/test_rates.json");
+        Exception first = assertThrows(UnknownCurrencyException.class,
+                () -> target.exchange("yen", "eur", 100));
+        Exception second = assertThrows(UnknownCurrencyException.class,
+                () -> target.exchange("pln", "yen", 100));
+        assertSame(first, second);
+        assertEquals(0, first.getStackTrace().length);
+    }
 }
\ No newline at end of file
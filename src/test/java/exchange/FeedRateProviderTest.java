@@ -0,0 +1,98 @@
+package exchange;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FeedRateProviderTest {
+
+    HttpServer server;
+    AtomicInteger requests = new AtomicInteger();
+    AtomicInteger notModified = new AtomicInteger();
+    volatile int status = 200;
+    URI uri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        byte[] body = Files.readAllBytes(Paths.get("src/test/resources/test_rates.json"));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/rates", exchange -> {
+            requests.incrementAndGet();
+            if ("v1".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "v1");
+            byte[] answer = status == 200 ? body : "error".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, answer.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(answer);
+            }
+        });
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/rates");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void loadsRatesFromFeed() throws Exception {
+        FeedRateProvider target = new FeedRateProvider(uri);
+
+        List<Rate> rates = target.loadRates();
+
+        assertEquals(2, rates.size());
+        assertEquals("usd", rates.get(0).getFrom());
+        assertEquals(3.6, rates.get(0).getRate(), 0.0001);
+    }
+
+    //Kolejne odpytanie bez zmian w feedzie nie parsuje odpowiedzi ponownie
+    @Test
+    void unchangedFeedAnswersNotModified() throws Exception {
+        FeedRateProvider target = new FeedRateProvider(uri);
+
+        List<Rate> first = target.loadRates();
+        List<Rate> second = target.loadRates();
+
+        assertSame(first, second);
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    void feedErrorIsReported() {
+        status = 500;
+        FeedRateProvider target = new FeedRateProvider(uri);
+
+        assertThrows(IOException.class, target::loadRates);
+    }
+
+    @Test
+    void exchangeWithFeed() throws Exception {
+        CurrencyExchange exchange = new CurrencyExchange();
+        exchange.initFromProvider(new FeedRateProvider(uri));
+
+        assertEquals(360, exchange.exchange("usd", "pln", 100), 0.001);
+    }
+}
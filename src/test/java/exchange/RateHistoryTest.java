@@ -0,0 +1,97 @@
+package exchange;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateHistoryTest {
+
+    private static final Instant T1 = Instant.parse("2018-03-01T10:00:00Z");
+    private static final Instant T2 = Instant.parse("2018-03-05T10:00:00Z");
+    private static final Instant T3 = Instant.parse("2018-03-09T10:00:00Z");
+
+    RateHistory target;
+
+    @BeforeEach
+    void setUp() {
+        target = new RateHistory();
+        target.append("usd", "pln", 3.4, 0.29, T1);
+        target.append("usd", "pln", 3.6, 0.28, T2);
+        target.append("usd", "pln", 3.5, 0.285, T3);
+    }
+
+    @Test
+    void rateInForceBetweenPoints() {
+        assertEquals(3.6, target.rate("usd", "pln", T2.plusSeconds(3600)), 0.0001);
+    }
+
+    @Test
+    void rateAtExactTimestamp() {
+        assertEquals(3.4, target.rate("usd", "pln", T1), 0.0001);
+        assertEquals(3.5, target.rate("usd", "pln", T3), 0.0001);
+    }
+
+    @Test
+    void reverseRateForOppositeDirection() {
+        assertEquals(0.28, target.rate("pln", "usd", T2), 0.0001);
+    }
+
+    //Brak kursu przed pierwszym notowaniem
+    @Test
+    void noRateBeforeFirstPoint() {
+        assertTrue(Double.isNaN(target.rate("usd", "pln", T1.minusSeconds(1))));
+        assertTrue(Double.isNaN(target.rate("eur", "pln", T2)));
+    }
+
+    //Kurs dopisany poza kolejnością trafia na właściwe miejsce
+    @Test
+    void outOfOrderAppend() {
+        target.append("usd", "pln", 3.55, 0.282, T2.plusSeconds(60));
+        target.append("usd", "pln", 3.7, 0.27, T2);
+
+        assertEquals(4, target.size("usd", "pln"));
+        assertEquals(3.7, target.rate("usd", "pln", T2.plusSeconds(30)), 0.0001);
+        assertEquals(3.55, target.rate("usd", "pln", T2.plusSeconds(90)), 0.0001);
+    }
+
+    @Test
+    void manyAppendsGrowSeries() {
+        RateHistory history = new RateHistory();
+        for (int i = 0; i < 1000; i++) {
+            history.append("eur", "pln", 4 + i / 1000.0, 0.25, T1.plusSeconds(i));
+        }
+        assertEquals(1000, history.size("eur", "pln"));
+        assertEquals(4.5, history.rate("eur", "pln", T1.plusSeconds(500)), 0.0001);
+    }
+
+    @Test
+    void saveAndLoad(@TempDir Path dir) throws Exception {
+        target.append("eur", "pln", 4.12, 0.25, T1);
+        Path file = dir.resolve("rates.bin");
+
+        target.save(file);
+        RateHistory loaded = RateHistory.load(file);
+
+        assertEquals(3, loaded.size("usd", "pln"));
+        assertEquals(3.6, loaded.rate("usd", "pln", T2), 0.0001);
+        assertEquals(0.25, loaded.rate("pln", "eur", T3), 0.0001);
+    }
+
+    @Test
+    void exchangeAtInstant() throws Exception {
+        CurrencyExchange exchange = new CurrencyExchange();
+        exchange.setHistory(target);
+
+        assertEquals(340, exchange.exchange("usd", "pln", 100, T1.plusSeconds(1)), 0.001);
+        assertEquals(360, exchange.exchange("usd", "pln", 100, T2.plusSeconds(1)), 0.001);
+        assertThrows(Exception.class,
+                () -> exchange.exchange("usd", "pln", 100, T1.minusSeconds(1)));
+    }
+}